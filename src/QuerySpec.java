@@ -10,6 +10,7 @@ public class QuerySpec {
   private String targetFileName; // Name of the file containing the target vector.
   private int threshold; // For Range: the distance D; for NN: the number K.
   private boolean useIndex; // Whether to use index or not.
+  private boolean multiProbe; // Whether the index is probed by multi-probe LSH.
   private int[] outputFields; // Field numbers to output.
 
   public QueryType getQueryType() {
@@ -52,6 +53,14 @@ public class QuerySpec {
     return useIndex;
   }
 
+  public void setMultiProbe(boolean multiProbe) {
+    this.multiProbe = multiProbe;
+  }
+
+  public boolean getMultiProbe() {
+    return multiProbe;
+  }
+
   public int[] getOutputFields() {
     return outputFields;
   }
@@ -5,6 +5,7 @@ import dbmgr.DBOP;
 import diskmgr.PCounter;
 import global.AttrType;
 import global.RID;
+import global.SystemDefs;
 import global.Vector100Dtype;
 import heap.*;
 
@@ -14,6 +15,8 @@ import java.io.IOException;
 
 public class batchcreate {
 
+  private static final int NUMBUF = 4000;
+
   public static void main(String[] args) {
     if (args.length != 2) {
       System.err.println("Usage: batchcreate <DATAFILENAME> <RELNAME>");
@@ -26,7 +29,9 @@ public class batchcreate {
     String relName = args[1];
 
 //    DBOP.cleanup("mydb");
-    DBOP.open_databaseDBNAME("mydb", 1000, 4000);
+    DBOP.open_databaseDBNAME("mydb", 1000, NUMBUF);
+    // Write pages back as the load goes, so the final flush is short.
+    SystemDefs.JavabaseBM.setWriteBehind(NUMBUF / 2);
 
     try {
       BufferedReader br = new BufferedReader(
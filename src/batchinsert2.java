@@ -18,6 +18,7 @@ import static dbmgr.DBOP.*;
 public class batchinsert2 {
 
   private static boolean DEBUG = true;
+  private static final int NUMBUF = 1000;
 
   public static void main(String[] args) {
     if (args.length != 2) {
@@ -30,7 +31,9 @@ public class batchinsert2 {
     String updateFilename = args[0];
     String relName = args[1];
 
-    DBOP.open_databaseDBNAME("mydb", 500, 1000);
+    DBOP.open_databaseDBNAME("mydb", 500, NUMBUF);
+    // Write pages back as the load goes, so the final flush is short.
+    SystemDefs.JavabaseBM.setWriteBehind(NUMBUF / 2);
 
     try {
       BufferedReader br = new BufferedReader(new FileReader(updateFilename));
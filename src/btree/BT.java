@@ -45,7 +45,7 @@ public class BT  implements GlobalConst{
    *@return return negative if key1 less than key2; positive if key1 bigger
    * than  key2; 
    * 0 if key1=key2.
-   *@exception  KeyNotMatchException key is not IntegerKey or StringKey class
+   *@exception  KeyNotMatchException key is not IntegerKey, LongKey or StringKey class
    */  
   public final static int keyCompare(KeyClass key1, KeyClass key2)
     throws KeyNotMatchException
@@ -55,6 +55,11 @@ public class BT  implements GlobalConst{
 	return  (((IntegerKey)key1).getKey()).intValue() 
 	  - (((IntegerKey)key2).getKey()).intValue();
       }
+      else if ( (key1 instanceof LongKey) && (key2 instanceof LongKey) ) {
+	// a difference of two longs does not fit in the returned int
+	return Long.compare(((LongKey)key1).getKey().longValue(),
+			    ((LongKey)key2).getKey().longValue());
+      }
       else if  ( (key1 instanceof StringKey) && (key2 instanceof StringKey)){
         return ((StringKey)key1).getKey().compareTo(((StringKey)key2).getKey());
       }
@@ -83,6 +88,8 @@ public class BT  implements GlobalConst{
     }
       else if ( key instanceof IntegerKey)
 	return 4;
+      else if ( key instanceof LongKey)
+	return 8;
       else throw new KeyNotMatchException(null, "key types do not match"); 
     }
   
@@ -168,6 +175,9 @@ public class BT  implements GlobalConst{
 	  key= new IntegerKey( new Integer 
 			       (Convert.getIntValue(offset, from)));
 	}
+	else if ( keyType== AttrType.attrLong) {
+	  key= new LongKey( Convert.getLongValue(offset, from));
+	}
 	else if (keyType== AttrType.attrString) {
 	  //System.out.println(" offset  "+ offset + "  " + length + "  "+n);
           key= new StringKey( Convert.getStrValue(offset, from, length-n));
@@ -212,6 +222,10 @@ public class BT  implements GlobalConst{
 	  Convert.setIntValue( ((IntegerKey)entry.key).getKey().intValue(),
 			       0, data);
         }
+        else if ( entry.key instanceof LongKey ) {
+	  Convert.setLongValue( ((LongKey)entry.key).getKey().longValue(),
+			       0, data);
+        }
         else if ( entry.key instanceof StringKey ) {
 	  Convert.setStrValue( ((StringKey)entry.key).getKey(),
 			       0, data);            
@@ -279,6 +293,9 @@ public class BT  implements GlobalConst{
 	  if( keyType==AttrType.attrInteger) 
 	    System.out.println(i+" (key, pageId):   ("+ 
 			       (IntegerKey)entry.key + ",  "+(IndexData)entry.data+ " )");
+	  if( keyType==AttrType.attrLong) 
+	    System.out.println(i+" (key, pageId):   ("+ 
+			       (LongKey)entry.key + ",  "+(IndexData)entry.data+ " )");
 	  if( keyType==AttrType.attrString) 
 	    System.out.println(i+" (key, pageId):   ("+ 
 			       (StringKey)entry.key + ",  "+(IndexData)entry.data+ " )");
@@ -304,6 +321,9 @@ public class BT  implements GlobalConst{
 	  if( keyType==AttrType.attrInteger) 
 	    System.out.println(i+" (key, [pageNo, slotNo]):   ("+ 
 			       (IntegerKey)entry.key+ ",  "+(LeafData)entry.data+ " )");
+	  if( keyType==AttrType.attrLong) 
+	    System.out.println(i+" (key, [pageNo, slotNo]):   ("+ 
+			       (LongKey)entry.key+ ",  "+(LeafData)entry.data+ " )");
 	  if( keyType==AttrType.attrString) 
 	    System.out.println(i+" (key, [pageNo, slotNo]):   ("+ 
 			       (StringKey)entry.key + ",  "+(LeafData)entry.data); 
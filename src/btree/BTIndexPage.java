@@ -27,7 +27,7 @@ public class BTIndexPage extends BTSortedPage{
    * also it sets the type of node to be NodeType.INDEX.
    *@param pageno Input parameter. To specify which page number the
    *  BTIndexPage will correspond to.
-   *@param keyType either AttrType.attrInteger or AttrType.attrString.
+   *@param keyType AttrType.attrInteger, AttrType.attrLong or AttrType.attrString.
    *   Input parameter.
    *@exception IOException error from the lower layer
    *@exception ConstructPageException error when BTIndexpage constructor
@@ -44,7 +44,7 @@ public class BTIndexPage extends BTSortedPage{
    * also it sets the type of node to be NodeType.INDEX.
    *@param page input parameter. To specify which page  the
    *  BTIndexPage will correspond to. 
-   *@param keyType either AttrType.attrInteger or AttrType.attrString.
+   *@param keyType AttrType.attrInteger, AttrType.attrLong or AttrType.attrString.
    *  Input parameter.    
    *@exception IOException  error from the lower layer
    *@exception ConstructPageException error when BTIndexpage constructor
@@ -59,7 +59,7 @@ public class BTIndexPage extends BTSortedPage{
   
   /* new a page, associate the BTIndexPage instance with the Page instance,
    * also it sets the type of node to be NodeType.INDEX.
-   *@param keyType either AttrType.attrInteger or AttrType.attrString.
+   *@param keyType AttrType.attrInteger, AttrType.attrLong or AttrType.attrString.
    *  Input parameter.    
    *@exception IOException  error from the lower layer
    *@exception ConstructPageException error when BTIndexpage constructor
@@ -96,6 +96,48 @@ public class BTIndexPage extends BTSortedPage{
       }
     }
   
+  /** It inserts the <key, pageNo> value of pageNo, the new right sibling
+   * of page left after a split, right after the entry of left; or first
+   * among the entries of the same key if left is the leftmost child.
+   * Entries of the same key must stay in the order of their pages on the
+   * level below, which is where an insert of that key is sent to the last
+   * of them.
+   *@key  the key value in <key, pageNO>. Input parameter. 
+   *@pageNo the pageNo  in <key, pageNO>. Input parameter.
+   *@left the page pageNo was split from. Input parameter.
+   *@return It returns the rid where the record is inserted;
+   null if no space left.
+   *@exception IndexInsertRecException error when insert
+   */
+  public RID insertKey(KeyClass key, PageId pageNo, PageId left) 
+    throws  IndexInsertRecException
+    {
+      RID rid = insertKey(key, pageNo);
+      if (rid == null)
+        return null;
+      try {
+        int i;
+        // insertRecord put it after every entry of the same key
+        for (i = rid.slotNo; i > 0; i--) {
+          KeyDataEntry before = BT.getEntryFromBytes(getpage(), getSlotOffset(i-1),
+                                                     getSlotLength(i-1), keyType,
+                                                     NodeType.INDEX);
+          if (BT.keyCompare(before.key, key) != 0
+              || ((IndexData)before.data).getData().pid == left.pid)
+            break;
+          int ln = getSlotLength(i);
+          int off = getSlotOffset(i);
+          setSlot(i, getSlotLength(i-1), getSlotOffset(i-1));
+          setSlot(i-1, ln, off);
+        }
+        rid.slotNo = i;
+        return rid;
+      }
+      catch ( Exception e) {       
+        throw new IndexInsertRecException(e, "Insert failed");
+      }
+    }
+  
   /*  OPTIONAL: fullDeletekey 
    * This is optional, and is only needed if you want to do full deletion.
    * Return its RID.  delete key may != key.  But delete key <= key,
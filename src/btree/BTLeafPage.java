@@ -24,7 +24,7 @@ public class BTLeafPage extends BTSortedPage {
    * also it sets the type to be NodeType.LEAF.
    *@param pageno Input parameter. To specify which page number the
    *  BTLeafPage will correspond to.
-   *@param keyType either AttrType.attrInteger or AttrType.attrString.
+   *@param keyType AttrType.attrInteger, AttrType.attrLong or AttrType.attrString.
    *    Input parameter.   
    *@exception IOException  error from the lower layer
    *@exception ConstructPageException BTLeafPage constructor error
@@ -41,7 +41,7 @@ public class BTLeafPage extends BTSortedPage {
    * also it sets the type to be NodeType.LEAF. 
    *@param page  input parameter. To specify which page  the
    *  BTLeafPage will correspond to.
-   *@param keyType either AttrType.attrInteger or AttrType.attrString.
+   *@param keyType AttrType.attrInteger, AttrType.attrLong or AttrType.attrString.
    *  Input parameter.    
    *@exception IOException  error from the lower layer
    *@exception ConstructPageException BTLeafPage constructor error
@@ -56,7 +56,7 @@ public class BTLeafPage extends BTSortedPage {
   
   /**new a page, associate the BTLeafPage instance with the Page instance,
    * also it sets the type to be NodeType.LEAF. 
-   *@param keyType either AttrType.attrInteger or AttrType.attrString.
+   *@param keyType AttrType.attrInteger, AttrType.attrLong or AttrType.attrString.
    *  Input parameter.
    *@exception IOException  error from the lower layer
    *@exception ConstructPageException BTLeafPage constructor error
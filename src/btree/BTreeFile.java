@@ -282,11 +282,15 @@ public class BTreeFile extends IndexFile
 			RID      rid = new RID();
 			PageId       childId;
 			KeyDataEntry entry;
+			_destroyFile(indexPage.getPrevPage());  // the leftmost child
 			for (entry = indexPage.getFirst(rid);
 			     entry != null; entry = indexPage.getNext(rid)) {
 				childId = ((IndexData)(entry.data)).getData();
 				_destroyFile(childId);
 			}
+
+			unpinPage(pageno);
+			freePage(pageno);
 		} else { // BTLeafPage
 
 			unpinPage(pageno);
@@ -362,16 +366,7 @@ public class BTreeFile extends IndexFile
 		if (BT.getKeyLength(key) > headerPage.get_maxKeySize())
 			throw new KeyTooLongException(null, "");
 
-		if ( key instanceof StringKey ) {
-			if ( headerPage.get_keyType() != AttrType.attrString ) {
-				throw new KeyNotMatchException(null, "");
-			}
-		} else if ( key instanceof IntegerKey ) {
-			if ( headerPage.get_keyType() != AttrType.attrInteger ) {
-				throw new KeyNotMatchException(null, "");
-			}
-		} else
-			throw new KeyNotMatchException(null, "");
+		checkKeyType(key);
 
 
 		// TWO CASES:
@@ -505,6 +500,219 @@ public class BTreeFile extends IndexFile
 
 
 
+	private void checkKeyType(KeyClass key)
+	throws KeyNotMatchException, IOException {
+		if ( key instanceof StringKey ) {
+			if ( headerPage.get_keyType() != AttrType.attrString ) {
+				throw new KeyNotMatchException(null, "");
+			}
+		} else if ( key instanceof IntegerKey ) {
+			if ( headerPage.get_keyType() != AttrType.attrInteger ) {
+				throw new KeyNotMatchException(null, "");
+			}
+		} else if ( key instanceof LongKey ) {
+			if ( headerPage.get_keyType() != AttrType.attrLong ) {
+				throw new KeyNotMatchException(null, "");
+			}
+		} else
+			throw new KeyNotMatchException(null, "");
+	}
+
+
+	/** Build an empty B+ tree bottom-up from (key, rid) entries that are
+	 * already sorted, with every page filled completely.
+	 *@param sortedEntries leaf entries (LeafData) in ascending key order.
+	 * Input parameter.
+	 *@exception InsertException the tree is not empty, or the entries are
+	 * not in ascending order
+	 *@exception KeyTooLongException key size exceeds the max keysize.
+	 *@exception KeyNotMatchException key type does not match the tree
+	 *@exception LeafInsertRecException insert error in leaf page
+	 *@exception IndexInsertRecException insert error in index page
+	 *@exception ConstructPageException error in BT page constructor
+	 *@exception UnpinPageException error when unpin a page
+	 *@exception PinPageException error when pin a page
+	 *@exception IOException error from the lower layer
+	 *@see #bulkLoad(java.util.Iterator, double)
+	 */
+	public void bulkLoad(java.util.Iterator<KeyDataEntry> sortedEntries)
+	throws InsertException,
+		KeyTooLongException,
+		KeyNotMatchException,
+		LeafInsertRecException,
+		IndexInsertRecException,
+		ConstructPageException,
+		UnpinPageException,
+		PinPageException,
+		IOException {
+		bulkLoad(sortedEntries, 1.0);
+	}
+
+	/** Build an empty B+ tree bottom-up from (key, rid) entries that are
+	 * already sorted in ascending key order.
+	 * Leaf pages are filled one after the other up to fillFactor of their
+	 * space and linked to their siblings; each index level keeps a single
+	 * open page on the right edge of the tree, filled the same way, which
+	 * receives the first key of every new page of the level below.  No
+	 * root-to-leaf search and no page split is done.  A fill factor below 1
+	 * leaves room for later inserts; every page takes at least one entry.
+	 *@param sortedEntries leaf entries (LeafData) in ascending key order.
+	 * Input parameter.
+	 *@param fillFactor fraction of each page to fill, in (0, 1].
+	 * Input parameter.
+	 *@exception InsertException the tree is not empty, the fill factor is
+	 * out of range, or the entries are not in ascending order
+	 *@exception KeyTooLongException key size exceeds the max keysize.
+	 *@exception KeyNotMatchException key type does not match the tree
+	 *@exception LeafInsertRecException insert error in leaf page
+	 *@exception IndexInsertRecException insert error in index page
+	 *@exception ConstructPageException error in BT page constructor
+	 *@exception UnpinPageException error when unpin a page
+	 *@exception PinPageException error when pin a page
+	 *@exception IOException error from the lower layer
+	 */
+	public void bulkLoad(java.util.Iterator<KeyDataEntry> sortedEntries,
+	                     double fillFactor)
+	throws InsertException,
+		KeyTooLongException,
+		KeyNotMatchException,
+		LeafInsertRecException,
+		IndexInsertRecException,
+		ConstructPageException,
+		UnpinPageException,
+		PinPageException,
+		IOException {
+
+		if (headerPage.get_rootId().pid != INVALID_PAGE)
+			throw new InsertException(null, "bulk load needs an empty B+ tree");
+		if (!(fillFactor > 0.0 && fillFactor <= 1.0))
+			throw new InsertException(null, "fill factor must be in (0, 1]");
+
+		if (!sortedEntries.hasNext())
+			return;
+
+		int keyType = headerPage.get_keyType();
+		// spine.get(i): the open (rightmost, pinned) index page of level i,
+		// level 0 being the one right above the leaves
+		java.util.ArrayList<BTIndexPage> spine = new java.util.ArrayList<BTIndexPage>();
+
+		BTLeafPage leaf = new BTLeafPage(keyType);
+		KeyClass lastKey = null;
+		PageId rootId;
+
+		// the open pages are unpinned however the load ends; the pages
+		// taken out of leaf and spine are unpinned by then
+		try {
+			leaf.setPrevPage(new PageId(INVALID_PAGE));
+			leaf.setNextPage(new PageId(INVALID_PAGE));
+			while (sortedEntries.hasNext()) {
+				KeyDataEntry entry = sortedEntries.next();
+				if (BT.getKeyLength(entry.key) > headerPage.get_maxKeySize())
+					throw new KeyTooLongException(null, "");
+				checkKeyType(entry.key);
+				if (lastKey != null && BT.keyCompare(entry.key, lastKey) < 0)
+					throw new InsertException(null, "bulk load entries are not in ascending key order");
+				lastKey = entry.key;
+				RID rid = ((LeafData)entry.data).getData();
+
+				if (bulkLoadPageFull(leaf, entry.key, NodeType.LEAF, fillFactor)
+				    || leaf.insertRecord(entry.key, rid) == null) {
+					// leaf full: continue on a new right sibling
+					BTLeafPage next = new BTLeafPage(keyType);
+					BTLeafPage closed = leaf;
+					leaf = next;
+					PageId leafId = closed.getCurPage();
+					PageId nextId = next.getCurPage();
+					closed.setNextPage(nextId);
+					unpinPage(leafId, true /* = DIRTY */);
+					next.setPrevPage(leafId);
+					next.setNextPage(new PageId(INVALID_PAGE));
+
+					if (leaf.insertRecord(entry.key, rid) == null)
+						throw new LeafInsertRecException(null, "entry does not fit on an empty leaf");
+					bulkLoadPushUp(spine, 0, entry.key, leafId, nextId, fillFactor);
+				}
+			}
+			rootId = spine.isEmpty() ? leaf.getCurPage()
+			                         : spine.get(spine.size() - 1).getCurPage();
+		} catch (NodeNotMatchException e) {
+			throw new LeafInsertRecException(e, "");
+		} finally {
+			bulkLoadRelease(leaf, spine);
+		}
+
+		updateHeader(rootId);
+	}
+
+	/* True if a non-empty page has no room for one more entry of this key
+	 * within fillFactor of its space.
+	 */
+	private static boolean bulkLoadPageFull(BTSortedPage page, KeyClass key,
+	                                        short nodeType, double fillFactor)
+	throws IOException, KeyNotMatchException, NodeNotMatchException {
+		if (page.numberOfRecords() == 0)
+			return false;
+		int capacity = MAX_SPACE - HFPage.DPFIXED;
+		int used = capacity - HFPage.SIZE_OF_SLOT - page.available_space();
+		int needed = BT.getKeyDataLength(key, nodeType) + HFPage.SIZE_OF_SLOT;
+		return used + needed > fillFactor * capacity;
+	}
+
+	/* Unpin the open pages of a bulk load, done or given up.  The pages of
+	 * a load given up stay allocated; the tree has no root yet, so it is
+	 * still empty.
+	 */
+	private void bulkLoadRelease(BTLeafPage leaf, java.util.ArrayList<BTIndexPage> spine)
+	throws UnpinPageException, IOException {
+		unpinPage(leaf.getCurPage(), true /* = DIRTY */);
+		for (int level = 0; level < spine.size(); level++)
+			unpinPage(spine.get(level).getCurPage(), true /* = DIRTY */);
+	}
+
+	/* Add (key, right) to the open index page of the given level. left is the
+	 * page of the level below that precedes right; it becomes the leftmost
+	 * child when the level does not exist yet.  A full page is closed, and
+	 * its new sibling is announced to the level above in turn.
+	 */
+	private void bulkLoadPushUp(java.util.ArrayList<BTIndexPage> spine, int level,
+	                            KeyClass key, PageId left, PageId right,
+	                            double fillFactor)
+	throws IndexInsertRecException,
+		ConstructPageException,
+		UnpinPageException,
+		IOException {
+
+		int keyType = headerPage.get_keyType();
+
+		if (level == spine.size()) {
+			BTIndexPage newLevel = new BTIndexPage(keyType);
+			spine.add(newLevel);
+			newLevel.setPrevPage(left);
+		}
+
+		BTIndexPage page = spine.get(level);
+		boolean full;
+		try {
+			full = bulkLoadPageFull(page, key, NodeType.INDEX, fillFactor)
+			       || page.insertKey(key, right) == null;
+		} catch (KeyNotMatchException e) {
+			throw new IndexInsertRecException(e, "");
+		} catch (NodeNotMatchException e) {
+			throw new IndexInsertRecException(e, "");
+		}
+		if (full) {
+			// right becomes the leftmost child of a new sibling, whose lowest
+			// key is this separator
+			BTIndexPage sibling = new BTIndexPage(keyType);
+			spine.set(level, sibling);
+			PageId pageId = page.getCurPage();
+			unpinPage(pageId, true /* = DIRTY */);
+			sibling.setPrevPage(right);
+			bulkLoadPushUp(spine, level + 1, key, pageId, sibling.getCurPage(), fillFactor);
+		}
+	}
+
+
 	private KeyDataEntry  _insert(KeyClass key, RID rid,
 	                              PageId currentPageId)
 	throws  PinPageException,
@@ -585,7 +793,8 @@ public class BTreeFile extends IndexFile
 
 				// no split has occurred
 				currentIndexPage.insertKey( upEntry.key,
-				                            ((IndexData)upEntry.data).getData() );
+				                            ((IndexData)upEntry.data).getData(),
+				                            nextPageId );
 
 				unpinPage(currentIndexPageId, true /* DIRTY */);
 
@@ -628,77 +837,43 @@ public class BTreeFile extends IndexFile
 			//     given up from the level down in the recursion
 
 			KeyDataEntry      tmpEntry;
-			PageId       tmpPageId;
-			RID insertRid;
 			RID delRid = new RID();
 
+			// take the entries off the page in order, the new one right
+			// after the child it was split from, so that entries of the
+			// same key stay in the order of their children
+			java.util.ArrayList<KeyDataEntry> entries = new java.util.ArrayList<KeyDataEntry>();
+			int at = 0;
+			int total = 0;
 			for ( tmpEntry = currentIndexPage.getFirst( delRid);
 			      tmpEntry != null; tmpEntry = currentIndexPage.getFirst( delRid)) {
-				newIndexPage.insertKey( tmpEntry.key,
-				                        ((IndexData)tmpEntry.data).getData());
+				entries.add(tmpEntry);
+				if (((IndexData)tmpEntry.data).getData().pid == nextPageId.pid)
+					at = entries.size();
+				total += BT.getKeyDataLength(tmpEntry.key, NodeType.INDEX);
 				currentIndexPage.deleteSortedRecord(delRid);
 			}
+			entries.add(at, upEntry);
+			total += BT.getKeyDataLength(upEntry.key, NodeType.INDEX);
 
 			// ASSERTIONS:
 			// - currentIndexPage empty
-			// - newIndexPage holds all former records from currentIndexPage
-
-			// we will try to make an equal split
-			RID firstRid = new RID();
-			KeyDataEntry undoEntry = null;
-			for (tmpEntry = newIndexPage.getFirst(firstRid);
-			     (currentIndexPage.available_space() >
-			      newIndexPage.available_space());
-			     tmpEntry = newIndexPage.getFirst(firstRid)) {
-				// now insert the <key,pageId> pair on the new
-				// index page
-				undoEntry = tmpEntry;
+			// - entries holds all former records from currentIndexPage
+			//   and upEntry, in key order
+
+			// we will try to make an equal split; the new page gets at
+			// least the entry that is given up
+			int i = 0;
+			for (int used = 0; i < entries.size() - 1 && used < total / 2; i++) {
+				tmpEntry = entries.get(i);
 				currentIndexPage.insertKey( tmpEntry.key,
 				                            ((IndexData)tmpEntry.data).getData());
-				newIndexPage.deleteSortedRecord(firstRid);
-			}
-
-			//undo the final record
-			if ( currentIndexPage.available_space() <
-			     newIndexPage.available_space()) {
-
-				newIndexPage.insertKey( undoEntry.key,
-				                        ((IndexData)undoEntry.data).getData());
-
-				currentIndexPage.deleteSortedRecord
-				(new RID(currentIndexPage.getCurPage(),
-				         (int)currentIndexPage.getSlotCnt() - 1) );
+				used += BT.getKeyDataLength(tmpEntry.key, NodeType.INDEX);
 			}
-
-
-
-			// check whether <newKey, newIndexPageId>
-			// will be inserted
-			// on the newly allocated or on the old index page
-
-			tmpEntry = newIndexPage.getFirst(firstRid);
-
-			if (BT.keyCompare( upEntry.key, tmpEntry.key) >= 0 ) {
-				// the new data entry belongs on the new index page
-				newIndexPage.insertKey( upEntry.key,
-				                        ((IndexData)upEntry.data).getData());
-			} else {
-				currentIndexPage.insertKey( upEntry.key,
-				                            ((IndexData)upEntry.data).getData());
-
-				int i = (int)currentIndexPage.getSlotCnt() - 1;
-				tmpEntry =
-				  BT.getEntryFromBytes(currentIndexPage.getpage(),
-				                       currentIndexPage.getSlotOffset(i),
-				                       currentIndexPage.getSlotLength(i),
-				                       headerPage.get_keyType(), NodeType.INDEX);
-
+			for (; i < entries.size(); i++) {
+				tmpEntry = entries.get(i);
 				newIndexPage.insertKey( tmpEntry.key,
 				                        ((IndexData)tmpEntry.data).getData());
-
-				currentIndexPage.deleteSortedRecord
-				(new RID(currentIndexPage.getCurPage(), i) );
-
 			}
 
 
@@ -32,6 +32,8 @@ public class KeyDataEntry {
      data = new IndexData(pageNo); 
      if ( key instanceof IntegerKey ) 
         this.key= new IntegerKey(((IntegerKey)key).getKey());
+     else if ( key instanceof LongKey ) 
+        this.key= new LongKey(((LongKey)key).getKey());
      else if ( key instanceof StringKey ) 
         this.key= new StringKey(((StringKey)key).getKey());    
   };
@@ -57,6 +59,8 @@ public class KeyDataEntry {
      data = new LeafData(rid); 
      if ( key instanceof IntegerKey ) 
         this.key= new IntegerKey(((IntegerKey)key).getKey());
+     else if ( key instanceof LongKey ) 
+        this.key= new LongKey(((LongKey)key).getKey());
      else if ( key instanceof StringKey ) 
         this.key= new StringKey(((StringKey)key).getKey());    
   };
@@ -74,6 +78,8 @@ public class KeyDataEntry {
   public KeyDataEntry( KeyClass key,  DataClass data) {
      if ( key instanceof IntegerKey ) 
         this.key= new IntegerKey(((IntegerKey)key).getKey());
+     else if ( key instanceof LongKey ) 
+        this.key= new LongKey(((LongKey)key).getKey());
      else if ( key instanceof StringKey ) 
         this.key= new StringKey(((StringKey)key).getKey()); 
 
@@ -93,6 +99,9 @@ public class KeyDataEntry {
       if ( key instanceof IntegerKey )
          st1= ((IntegerKey)key).getKey().equals
                   (((IntegerKey)entry.key).getKey());
+      else if ( key instanceof LongKey )
+         st1= ((LongKey)key).getKey().equals
+                  (((LongKey)entry.key).getKey());
       else 
          st1= ((StringKey)key).getKey().equals
                   (((StringKey)entry.key).getKey());
@@ -0,0 +1,44 @@
+package btree;
+
+/**  LongKey: It extends the KeyClass.
+ *   It defines the 64-bit integer Key.
+ */ 
+public class LongKey extends KeyClass {
+
+  private Long key;
+
+  public String toString(){
+     return key.toString();
+  }
+
+  /** Class constructor
+   *  @param     value   the value of the long key to be set 
+   */
+  public LongKey(Long value) 
+  { 
+    key=Long.valueOf(value.longValue());
+  }
+
+  /** Class constructor
+   *  @param     value   the value of the long key to be set 
+   */
+  public LongKey(long value) 
+  { 
+    key=Long.valueOf(value);
+  }
+
+  /** get a copy of the long key
+   *  @return the reference of the copy 
+   */
+  public Long getKey() 
+  {
+    return Long.valueOf(key.longValue());
+  }
+
+  /** set the long key value
+   */  
+  public void setKey(Long value) 
+  { 
+    key=Long.valueOf(value.longValue());
+  }
+}
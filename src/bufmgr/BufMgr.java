@@ -4,182 +4,83 @@ package bufmgr;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import diskmgr.*;
 import global.*;
 
 
-/**
- * A frame description class. It describes each page in the buffer
- * pool, the page number in the file, whether it is dirty or not,
- * its pin count, and the pin count change when pinning or unpinning
- * a page.
- */
-class FrameDesc implements GlobalConst {
-
-  private static boolean DEBUG = false;
-
-  /**
-   * The page within file, or INVALID_PAGE if the frame is empty.
-   */
-  public PageId pageNo;
-
-  /**
-   * the dirty bit, 1 (TRUE) stands for this frame is altered,
-   * 0 (FALSE) for clean frames.
-   */
-  public boolean dirty;
-
-  /**
-   * The pin count for the page in this frame
-   */
-  public int pin_cnt;
-
-  /**
-   * Creates a FrameDesc object, initialize pageNo, dirty and
-   * pin_count.
-   */
-  public FrameDesc() {
-
-    pageNo = new PageId();
-    pageNo.pid = INVALID_PAGE;
-    dirty = false;
-    pin_cnt = 0;
-
-  }
-
-
-  /**
-   * Returns the pin count of a certain frame page.
-   *
-   * @return the pin count number.
-   */
-  public int pin_count() {
-    return (pin_cnt);
-  }
-
-  /**
-   * Increments the pin count of a certain frame page when the
-   * page is pinned.
-   *
-   * @return the incremented pin count.
-   */
-  public int pin() {
-    // if (DEBUG) {
-    //   System.out.println("[BufMgr] (FrameDesc) pin: page " + pageNo.pid);
-    // }
-    return (++pin_cnt);
-  }
-
-  /**
-   * Decrements the pin count of a frame when the page is
-   * unpinned.  If the pin count is equal to or less than
-   * zero, the pin count will be zero.
-   *
-   * @return the decremented pin count.
-   */
-  public int unpin() {
-
-    pin_cnt = (pin_cnt <= 0) ? 0 : pin_cnt - 1;
-
-    // if (DEBUG) {
-    //   System.out.println("[BufMgr] (FrameDesc) try unpin: page " + pageNo.pid + ", pin_cnt = " + pin_cnt);
-    // }
-
-    return (pin_cnt);
-  }
-}
-
-
-// *****************************************************
-
-/**
- * A buffer hashtable entry description class. It describes
- * each entry for the buffer hash table, the page number and
- * frame number for that page, the pointer points to the next
- * hash table entry.
- */
-class BufHTEntry {
-  /**
-   * The next entry in this hashtable bucket.
-   */
-  public BufHTEntry next;
-
-  /**
-   * This page number.
-   */
-  public PageId pageNo = new PageId();
-
-  /**
-   * The frame we are stored in.
-   */
-  public int frameNo;
-}
-
-
-// *****************************************************
-
 /**
  * A buffer hashtable to keep track of pages in the buffer pool.
  * It inserts, retrieves and removes pages from the h ash table.
+ * It maps page numbers to frame numbers with open addressing and
+ * linear probing in int arrays, so no entry is allocated.  The
+ * pages are split into STRIPES segments with a lock each, so
+ * threads working on pages of different segments do not wait for
+ * each other.
  */
 class BufHashTbl implements GlobalConst {
 
   private static boolean DEBUG = false;
 
   /**
-   * Hash Table size, small number for debugging.
+   * Number of segments, a power of two.
    */
-  private static final int HTSIZE = 20;
-
+  private static final int STRIPES = 16;
 
   /**
-   * Each slot holds a linked list of BufHTEntrys, NULL means
-   * none.
+   * The segments; a page goes to the one given by the top bits of
+   * its hash.
    */
-  private BufHTEntry ht[] = new BufHTEntry[HTSIZE];
+  private final Segment seg[] = new Segment[STRIPES];
 
 
   /**
-   * Returns the number of hash bucket used, value between 0 and HTSIZE-1
+   * Returns the hash of a page number; the top bits choose the
+   * segment and the low bits the home slot in it.
    *
-   * @param pageNo the page number for the page in file.
-   * @return the bucket number in the hash table.
+   * @param pid the page number for the page in file.
+   * @return the hash value.
    */
-  private int hash(PageId pageNo) {
-    return (pageNo.pid % HTSIZE);
+  private static int hash(int pid) {
+    int h = pid * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private Segment segment(int h) {
+    return seg[h >>> (32 - 4)];          // 4 = log2(STRIPES)
   }
 
 
   /**
    * Creates a buffer hash table object.
+   *
+   * @param numBuffers number of frames in the buffer pool, to size the table.
    */
-  public BufHashTbl() {
-    for (int i = 0; i < HTSIZE; i++)
-      ht[i] = null;
+  public BufHashTbl(int numBuffers) {
+    // at most half full while the pages spread evenly
+    int size = 4;
+    while (size * STRIPES < 2 * numBuffers)
+      size <<= 1;
+    for (int i = 0; i < STRIPES; i++)
+      seg[i] = new Segment(size);
   }
 
 
   /**
    * Insert association between page pageNo and frame frameNo
-   * into the hash table.
+   * into the hash table, unless pageNo is in it already.
    *
    * @param pageNo  page number in the bucket.
    * @param frameNo frame number in the bucket.
-   * @return true if successful.
+   * @return true if successful, false if pageNo was in the table.
    */
   public boolean insert(PageId pageNo, int frameNo) {
-
-    BufHTEntry ent = new BufHTEntry();
-    int index = hash(pageNo);
-
-    ent.pageNo.pid = pageNo.pid;
-    ent.frameNo = frameNo;
-
-    ent.next = ht[index];    // insert this page at the top
-    ht[index] = ent;
-
-    return true;
+    int h = hash(pageNo.pid);
+    Segment s = segment(h);
+    synchronized (s) {
+      return s.insert(pageNo.pid, frameNo, h);
+    }
   }
 
 
@@ -191,18 +92,14 @@ class BufHashTbl implements GlobalConst {
    */
   public int lookup(PageId pageNo) {
 
-    BufHTEntry ent;
     if (pageNo.pid == INVALID_PAGE)
       return INVALID_PAGE;
 
-    for (ent = ht[hash(pageNo)]; ent != null; ent = ent.next) {
-      if (ent.pageNo.pid == pageNo.pid) {
-        return (ent.frameNo);
-      }
+    int h = hash(pageNo.pid);
+    Segment s = segment(h);
+    synchronized (s) {
+      return s.lookup(pageNo.pid, h);
     }
-
-    return (INVALID_PAGE);
-
   }
 
   /**
@@ -212,27 +109,18 @@ class BufHashTbl implements GlobalConst {
    */
   public boolean remove(PageId pageNo) {
 
-    BufHTEntry cur, prev = null;
-
     // Allow INVALID_PAGE to be removed all they want.
     if (pageNo.pid == INVALID_PAGE)
       return true;
 
-    int indx = hash(pageNo);
-    for (cur = ht[indx]; cur != null; cur = cur.next) {
-
-      if (cur.pageNo.pid == pageNo.pid)
-        break;
-      prev = cur;
+    boolean found;
+    int h = hash(pageNo.pid);
+    Segment s = segment(h);
+    synchronized (s) {
+      found = s.remove(pageNo.pid, h);
     }
 
-    if (cur != null) {
-      if (prev != null)
-        prev.next = cur.next;
-      else
-        ht[indx] = cur.next;
-
-    } else {
+    if (!found) {
       System.err.println("ERROR: Page " + pageNo.pid
               + " was not found in hashtable.\n");
 
@@ -247,25 +135,109 @@ class BufHashTbl implements GlobalConst {
    * Show hashtable contents.
    */
   public void display() {
-    BufHTEntry cur;
 
     System.out.println("HASH Table contents :FrameNo[PageNo]");
 
-    for (int i = 0; i < HTSIZE; i++) {
-      //   System.out.println ( "\nindex: " + i + "-" );
-      if (ht[i] != null) {
+    for (int i = 0; i < STRIPES; i++) {
+      synchronized (seg[i]) {
+        seg[i].display();
+      }
+    }
+    System.out.println("");
+
+  }
+
+
+  /**
+   * One segment: page numbers and their frames in parallel arrays,
+   * INVALID_PAGE marking a free slot.  Removal shifts the entries
+   * that follow back instead of leaving a marker, so a lookup stops
+   * at the first free slot.  Guarded by the segment's own lock.
+   */
+  private static final class Segment {
+
+    private int pages[];
+    private int frames[];
+    private int mask;
+    private int count;
+
+    Segment(int size) {
+      pages = new int[size];
+      frames = new int[size];
+      Arrays.fill(pages, INVALID_PAGE);
+      mask = size - 1;
+    }
+
+    int lookup(int pid, int h) {
+      for (int i = h & mask; pages[i] != INVALID_PAGE; i = (i + 1) & mask)
+        if (pages[i] == pid)
+          return frames[i];
+      return INVALID_PAGE;
+    }
 
-        for (cur = ht[i]; cur != null; cur = cur.next) {
-          System.out.println(cur.frameNo + "[" + cur.pageNo.pid + "]-");
+    boolean insert(int pid, int frameNo, int h) {
+      int i = h & mask;
+      for (; pages[i] != INVALID_PAGE; i = (i + 1) & mask)
+        if (pages[i] == pid)
+          return false;
+      pages[i] = pid;
+      frames[i] = frameNo;
+      if (++count * 2 > pages.length)
+        grow();
+      return true;
+    }
+
+    boolean remove(int pid, int h) {
+      int i = h & mask;
+      for (; pages[i] != pid; i = (i + 1) & mask)
+        if (pages[i] == INVALID_PAGE)
+          return false;
+
+      // move back every later entry of the run whose home slot is
+      // not in (i, j], so none is left behind the free slot
+      for (int j = (i + 1) & mask; pages[j] != INVALID_PAGE; j = (j + 1) & mask) {
+        int home = hash(pages[j]) & mask;
+        if (((j - home) & mask) >= ((j - i) & mask)) {
+          pages[i] = pages[j];
+          frames[i] = frames[j];
+          i = j;
         }
-        System.out.println("\t\t");
+      }
+      pages[i] = INVALID_PAGE;
+      count--;
+      return true;
+    }
 
-      } else {
-        System.out.println("NONE\t");
+    // Doubles the segment when it is over half full, which only
+    // happens when the pages crowd into a few segments.
+    private void grow() {
+      int oldPages[] = pages;
+      int oldFrames[] = frames;
+      pages = new int[oldPages.length * 2];
+      frames = new int[oldPages.length * 2];
+      Arrays.fill(pages, INVALID_PAGE);
+      mask = pages.length - 1;
+      for (int k = 0; k < oldPages.length; k++) {
+        if (oldPages[k] != INVALID_PAGE) {
+          int i = hash(oldPages[k]) & mask;
+          while (pages[i] != INVALID_PAGE)
+            i = (i + 1) & mask;
+          pages[i] = oldPages[k];
+          frames[i] = oldFrames[k];
+        }
       }
     }
-    System.out.println("");
 
+    void display() {
+      boolean none = true;
+      for (int i = 0; i < pages.length; i++) {
+        if (pages[i] != INVALID_PAGE) {
+          System.out.println(frames[i] + "[" + pages[i] + "]-");
+          none = false;
+        }
+      }
+      System.out.println(none ? "NONE\t" : "\t\t");
+    }
   }
 
 }
@@ -289,8 +261,9 @@ class Clock extends Replacer {
 
   /**
    * Picks up the victim frame to be replaced according to
-   * the clock algorithm.  Pin the victim so that other
-   * process can not pick it as a victim.
+   * the clock algorithm.  Pin and latch the victim so that other
+   * threads can not pick it as a victim.  A frame another thread
+   * has pinned or latched since its state was set is passed over.
    *
    * @return -1 if no frame is available.
    * head of the list otherwise.
@@ -303,7 +276,7 @@ class Clock extends Replacer {
     int numBuffers = mgr.getNumBuffers();
 
     head = (head + 1) % numBuffers;
-    while (state_bit[head].state != Available) {
+    while (state_bit[head].state != Available || !claim(head)) {
       if (state_bit[head].state == Referenced)
         state_bit[head].state = Available;
       if (num == 2 * numBuffers) {
@@ -315,18 +288,6 @@ class Clock extends Replacer {
       head = (head + 1) % numBuffers;
     }
 
-    // Make sure pin count is 0.
-    /** need to convert assert to a similar function. */
-    // assert( (mgr.frameTable())[head].pin_count() == 0 );
-
-    if ((mgr.frameTable())[head].pin_count() != 0) {
-      throw new PagePinnedException(null, "BUFMGR: PIN_COUNT IS NOT 0.");
-    }
-
-    state_bit[head].state = Pinned;        // Pin this victim so that other
-    (mgr.frameTable())[head].pin();
-    // process can't pick it as victim (???)
-
     return head;
   }
 
@@ -358,6 +319,12 @@ class Clock extends Replacer {
  * buffer pool, pins and unpins the frame, frees the frame
  * page, and uses the replacement algorithm to replace the
  * page.
+ * Several threads can use the buffer manager at the same time.  A
+ * page is found through the lock-striped hash table, and pinned or
+ * unpinned under the latch of its frame only.  Picking a victim is
+ * serialized on the replacer; the victim is read in, and its old
+ * page written out, under the victim's latch, so a thread pinning
+ * either page waits for that I/O, but no other thread does.
  */
 public class BufMgr implements GlobalConst {
 
@@ -366,7 +333,7 @@ public class BufMgr implements GlobalConst {
   /**
    * The hash table, only allocated once.
    */
-  private BufHashTbl hashTable = new BufHashTbl();
+  private BufHashTbl hashTable;
 
   /**
    * Total number of buffer frames in the buffer pool.
@@ -388,6 +355,41 @@ public class BufMgr implements GlobalConst {
    */
   private Replacer replacer;
 
+  /**
+   * Most read-ahead requests waiting at a time.
+   */
+  private static final int PREFETCH_QUEUE = 64;
+
+  /**
+   * Reads the pages asked for by prefetchPage in the background.
+   */
+  private Prefetcher prefetcher;
+
+  /**
+   * Whether prefetchPage reads pages at all; see setReadAhead.
+   */
+  private volatile boolean readingAhead;
+
+  /**
+   * Most adjacent pages written back with one write.
+   */
+  private static final int MAX_WRITE_RUN = 64;
+
+  /**
+   * Serializes writing back the whole pool, by flushAllPages and by
+   * the write-behind, as each holds the latches of a run of frames.
+   */
+  private final Object flushLock = new Object();
+
+  /**
+   * Number of dirty frames, kept under the frame latches, and the
+   * number above which the write-behind is kicked; no write-behind
+   * when null.
+   */
+  private final AtomicInteger numDirty = new AtomicInteger();
+  private volatile int maxDirty;
+  private volatile WriteBehind writeBehind;
+
 
   /**
    * Factor out the common code for the two versions of Flush
@@ -413,24 +415,42 @@ public class BufMgr implements GlobalConst {
     int i;
     int unpinned = 0;
 
-    for (i = 0; i < numBuffers; i++)   // write all valid dirty pages to disk
-      if ((all_pages != 0) || (frmeTable[i].pageNo.pid == pageid.pid)) {
+    prefetcher.drain();                // its pins are not the caller's
+
+    if (all_pages != 0) {
+      for (i = 0; i < numBuffers; i++)
+        if (frmeTable[i].pin_count() != 0)
+          unpinned++;
+
+      writeBack(true, true);           // write all valid dirty pages to disk
+
+      if (unpinned != 0) {
+        // if (DEBUG) {
+        //   System.out.println("[BufMgr] privFlushPages, all_pages = " + all_pages + ", unpinned =" + unpinned);
+        // }
+        throw new PagePinnedException(null, "BUFMGR: PAGE_PINNED.");
+      }
+      return;
+    }
+
+    // found through the hash table, not by reading the frames unlatched
+    i = hashTable.lookup(pageid);
+    if (i != INVALID_PAGE) {          // write the page to disk if dirty
+
+      frmeTable[i].latch.lock();
+      try {
+        if (frmeTable[i].pageNo.pid != pageid.pid)
+          return;             // replaced before we got the latch
 
         if (frmeTable[i].pin_count() != 0) {
           // if (DEBUG) {
-          //   System.out.println("[BufMgr] privFlushPages, all_pages = " + all_pages + ", page " + frmeTable[i].pageNo.pid + " pin_cnt = " + frmeTable[i].pin_cnt);
+          //   System.out.println("[BufMgr] privFlushPages, page " + frmeTable[i].pageNo.pid + " pin_cnt = " + frmeTable[i].pin_count());
           // }
           unpinned++;
         }
 
         if (frmeTable[i].dirty != false) {
 
-          if (frmeTable[i].pageNo.pid == INVALID_PAGE)
-
-            throw new PageNotFoundException(null, "BUFMGR: INVALID_PAGE_NO");
-          pageid.pid = frmeTable[i].pageNo.pid;
-
-
           Page apage = new Page(bufPool[i]);
 
           write_page(pageid, apage);
@@ -441,24 +461,135 @@ public class BufMgr implements GlobalConst {
             throw new HashOperationException(e2, "BUFMGR: HASH_TBL_ERROR.");
           }
 
+          setClean(frmeTable[i]);
           frmeTable[i].pageNo.pid = INVALID_PAGE; // frame is empty
-          frmeTable[i].dirty = false;
+
+          if (frmeTable[i].pin_count() == 0)
+            replacer.free(i);     // so it is reused first
         }
+      } finally {
+        frmeTable[i].latch.unlock();
+      }
+
+      if (unpinned != 0)
+        throw new PagePinnedException(null, "BUFMGR: PAGE_PINNED.");
+    }
+  }
+
 
-        if (all_pages == 0) {
+  /**
+   * Write the dirty pages back in page order, each run of adjacent
+   * pages with one write (see DB.write_pages), rather than one
+   * random write per frame.  The frames of a run are latched until
+   * it is written.
+   *
+   * @param evict     empty the frames written, as flushAllPages does;
+   *                  else they stay in the pool, clean
+   * @param pinnedToo write the pinned pages too
+   * @throws HashOperationException if there is a hashtable error.
+   * @throws PagePinnedException    from the replacer
+   * @throws BufMgrException        if a write fails
+   */
+  private void writeBack(boolean evict, boolean pinnedToo)
+          throws HashOperationException,
+          PagePinnedException,
+          BufMgrException {
+    synchronized (flushLock) {
+      // the dirty frames, as page number and frame number, by page;
+      // read without the latches, so each is checked again below.  A
+      // frame being emptied may seem dirty with no page, as the two
+      // fields are read apart; it is passed over.
+      long order[] = new long[numBuffers];
+      int n = 0;
+      for (int i = 0; i < numBuffers; i++)
+        if (frmeTable[i].dirty) {
+          int pid = frmeTable[i].pageNo.pid;
+          if (pid != INVALID_PAGE)
+            order[n++] = ((long) pid << 32) | i;
+        }
+      Arrays.sort(order, 0, n);
+
+      int run[] = new int[MAX_WRITE_RUN];
+      int len = 0, first = INVALID_PAGE;
+      try {
+        for (int k = 0; k < n; k++) {
+          int pid = (int) (order[k] >>> 32);
+          int i = (int) order[k];
+          FrameDesc frame = frmeTable[i];
+
+          frame.latch.lock();
+          if (frame.pageNo.pid != pid || !frame.dirty
+              || (!pinnedToo && frame.pin_count() != 0)) {
+            frame.latch.unlock();       // changed since, or in use
+            continue;
+          }
 
-          if (unpinned != 0)
-            throw new PagePinnedException(null, "BUFMGR: PAGE_PINNED.");
+          if (len > 0 && (pid != first + len || len == MAX_WRITE_RUN)) {
+            int l = len;
+            len = 0;
+            writeRun(first, run, l, evict);
+          }
+          if (len == 0)
+            first = pid;
+          run[len++] = i;
         }
+        if (len > 0) {
+          int l = len;
+          len = 0;
+          writeRun(first, run, l, evict);
+        }
+      } finally {
+        for (int k = 0; k < len; k++)
+          frmeTable[run[k]].latch.unlock();
       }
+    }
+  }
 
-    if (all_pages != 0) {
-      if (unpinned != 0) {
-        // if (DEBUG) {
-        //   System.out.println("[BufMgr] privFlushPages, all_pages = " + all_pages + ", unpinned =" + unpinned);
-        // }
-        throw new PagePinnedException(null, "BUFMGR: PAGE_PINNED.");
+  // Write the len latched frames of run, holding pages first on, and
+  // unlatch them.
+  private void writeRun(int first, int run[], int len, boolean evict)
+          throws HashOperationException,
+          PagePinnedException,
+          BufMgrException {
+    try {
+      Page pages[] = new Page[len];
+      for (int k = 0; k < len; k++)
+        pages[k] = new Page(bufPool[run[k]]);
+      write_pages(new PageId(first), pages);
+
+      for (int k = 0; k < len; k++) {
+        FrameDesc frame = frmeTable[run[k]];
+        setClean(frame);
+        if (evict) {
+          if (!hashTable.remove(frame.pageNo))
+            throw new HashOperationException(null, "BUFMGR: HASH_TBL_ERROR.");
+          frame.pageNo.pid = INVALID_PAGE; // frame is empty
+          if (frame.pin_count() == 0)
+            replacer.free(run[k]);  // so it is reused first
+        }
       }
+    } finally {
+      for (int k = 0; k < len; k++)
+        frmeTable[run[k]].latch.unlock();
+    }
+  }
+
+  // Mark a latched frame dirty, kicking the write-behind when too many
+  // frames are.
+  private void setDirty(FrameDesc frame) {
+    if (frame.dirty)
+      return;
+    frame.dirty = true;
+    WriteBehind wb = writeBehind;
+    if (numDirty.incrementAndGet() > maxDirty && wb != null)
+      wb.kick();
+  }
+
+  // Mark a latched frame clean.
+  private void setClean(FrameDesc frame) {
+    if (frame.dirty) {
+      frame.dirty = false;
+      numDirty.decrementAndGet();
     }
   }
 
@@ -467,7 +598,8 @@ public class BufMgr implements GlobalConst {
    * Create a buffer manager object.
    *
    * @param numbufs     number of buffers in the buffer pool.
-   * @param replacerArg name of the buffer replacement policy.
+   * @param replacerArg name of the buffer replacement policy:
+   *                    "Clock" (the default), "LRU", "MRU" or "2Q".
    */
   public BufMgr(int numbufs, String replacerArg) {
 
@@ -479,6 +611,9 @@ public class BufMgr implements GlobalConst {
     for (int i = 0; i < numBuffers; i++)  // initialize frameTable
       frmeTable[i] = new FrameDesc();
 
+    hashTable = new BufHashTbl(numBuffers);
+    prefetcher = new Prefetcher(this, PREFETCH_QUEUE);
+
     if (replacerArg == null) {
 
       replacer = new Clock(this);
@@ -492,8 +627,11 @@ public class BufMgr implements GlobalConst {
         replacer = new LRU(this);
         System.out.println("Replacer: LRU\n");
       } else if (replacerArg.compareTo("MRU") == 0) {
-        replacer = new LRU(this);
+        replacer = new MRU(this);
         System.out.println("Replacer: MRU\n");
+      } else if (replacerArg.compareTo("2Q") == 0) {
+        replacer = new TwoQ(this);
+        System.out.println("Replacer: 2Q\n");
       } else {
         replacer = new Clock(this);
         System.out.println("Replacer:Unknown, Use Clock\n");
@@ -547,64 +685,107 @@ public class BufMgr implements GlobalConst {
     }
 
     int frameNo;
-    boolean bst, bst2;
-    PageId oldpageNo = new PageId(-1);
-    int needwrite = 0;
 
-    frameNo = hashTable.lookup(pin_pgid);
+    while (true) {
+      frameNo = hashTable.lookup(pin_pgid);
 
-    if (frameNo < 0) {           // Not in the buffer pool
+      if (frameNo < 0) {           // Not in the buffer pool
 
-      frameNo = replacer.pick_victim(); // frameNo is pinned
-      if (frameNo < 0) {
-        page = null;
-        throw new ReplacerException(null, "BUFMGR: REPLACER_ERROR.");
+        if (loadPage(pin_pgid, page, emptyPage))
+          return;
 
-      }
+      } else {    // the page is in the buffer pool ( frameNo > 0 )
 
-      if ((frmeTable[frameNo].pageNo.pid != INVALID_PAGE)
-              && (frmeTable[frameNo].dirty == true)) {
-        needwrite = 1;
-        oldpageNo.pid = frmeTable[frameNo].pageNo.pid;
-      }
-
-      bst = hashTable.remove(frmeTable[frameNo].pageNo);
-      if (bst != true) {
-        throw new HashOperationException(null, "BUFMGR: HASH_TABLE_ERROR.");
+        FrameDesc frame = frmeTable[frameNo];
+        frame.latch.lock();        // waits for the page to be read in
+        try {
+          if (frame.pageNo.pid == pin_pgid.pid) {
+            page.setpage(bufPool[frameNo]);
+            replacer.pin(frameNo);
+            return;
+          }
+        } finally {
+          frame.latch.unlock();
+        }
       }
+      // the page was replaced, or brought in by another thread; look again
+    }
+  }
 
-      frmeTable[frameNo].pageNo.pid = INVALID_PAGE; // frame is empty
-      frmeTable[frameNo].dirty = false;             // not dirty
+  /**
+   * Bring a page that is not in the buffer pool into a victim frame,
+   * and pin it there.  The page is entered in the hash table before
+   * the victim's old page is written out and the new one read in, all
+   * under the victim's latch, so another thread pinning the page
+   * waits for it to be read.
+   *
+   * @return false if another thread entered the page in the hash table
+   * first; the victim frame is then given back unchanged.
+   */
+  private boolean loadPage(PageId pin_pgid, Page page, boolean emptyPage)
+          throws ReplacerException,
+          HashOperationException,
+          PageUnpinnedException,
+          InvalidFrameNumberException,
+          PageNotReadException,
+          BufferPoolExceededException,
+          PagePinnedException,
+          BufMgrException,
+          IOException {
+    int frameNo;
+    boolean bst;
 
-      bst2 = hashTable.insert(pin_pgid, frameNo);
+    synchronized (replacer) {
+      frameNo = replacer.pick_victim(); // frameNo is pinned and latched
+    }
+    if (frameNo < 0) {
+      page = null;
+      throw new ReplacerException(null, "BUFMGR: REPLACER_ERROR.");
 
-      (frmeTable[frameNo].pageNo).pid = pin_pgid.pid;
-      frmeTable[frameNo].dirty = false;
+    }
 
-      if (bst2 != true) {
-        throw new HashOperationException(null, "BUFMGR: HASH_TABLE_ERROR.");
+    FrameDesc frame = frmeTable[frameNo];
+    try {
+      if (!hashTable.insert(pin_pgid, frameNo)) {
+        replacer.unpin(frameNo);
+        return false;
       }
 
       Page apage = new Page(bufPool[frameNo]);
-      if (needwrite == 1) {
-        write_page(oldpageNo, apage);
-      } // end of needwrite..
+      if (frame.pageNo.pid != INVALID_PAGE) {
+        if (frame.dirty == true) {
+          try {
+            write_page(new PageId(frame.pageNo.pid), apage);
+          } catch (BufMgrException e) {
+            // the frame keeps its old page
+            hashTable.remove(pin_pgid);
+            replacer.unpin(frameNo);
+            throw e;
+          }
+        } // end of needwrite..
+
+        bst = hashTable.remove(frame.pageNo);
+        if (bst != true) {
+          throw new HashOperationException(null, "BUFMGR: HASH_TABLE_ERROR.");
+        }
+      }
+
+      setClean(frame);
+      frame.pageNo.pid = pin_pgid.pid;
 
       // read in the page if not empty
       if (emptyPage == false) {
         try {
-          apage.setpage(bufPool[frameNo]);
-
           read_page(pin_pgid, apage);
         } catch (Exception e) {
 
 
-          bst = hashTable.remove(frmeTable[frameNo].pageNo);
+          bst = hashTable.remove(frame.pageNo);
           if (bst != true)
             throw new HashOperationException(e, "BUFMGR: HASH_TABLE_ERROR.");
 
-          frmeTable[frameNo].pageNo.pid = INVALID_PAGE; // frame is empty
-          frmeTable[frameNo].dirty = false;
+          setClean(frame);
+          frame.pageNo.pid = INVALID_PAGE; // frame is empty
 
           bst = replacer.unpin(frameNo);
 
@@ -617,14 +798,9 @@ public class BufMgr implements GlobalConst {
       }
 
       page.setpage(bufPool[frameNo]);
-
-      // return true;
-
-    } else {    // the page is in the buffer pool ( frameNo > 0 )
-
-      page.setpage(bufPool[frameNo]);
-      replacer.pin(frameNo);
-
+      return true;
+    } finally {
+      frame.latch.unlock();
     }
   }
 
@@ -659,17 +835,28 @@ public class BufMgr implements GlobalConst {
       throw new HashEntryNotFoundException(null, "BUFMGR: HASH_NOT_FOUND.");
     }
 
-    if (frmeTable[frameNo].pageNo.pid == INVALID_PAGE) {
-      throw new InvalidFrameNumberException(null, "BUFMGR: BAD_FRAMENO.");
+    FrameDesc frame = frmeTable[frameNo];
+    frame.latch.lock();
+    try {
+      if (frame.pageNo.pid == INVALID_PAGE) {
+        throw new InvalidFrameNumberException(null, "BUFMGR: BAD_FRAMENO.");
+
+      }
 
-    }
+      if (frame.pageNo.pid != PageId_in_a_DB.pid) {
+        // replaced since the lookup, so it was not pinned
+        throw new HashEntryNotFoundException(null, "BUFMGR: HASH_NOT_FOUND.");
+      }
 
-    if ((replacer.unpin(frameNo)) != true) {
-      throw new ReplacerException(null, "BUFMGR: REPLACER_ERROR.");
-    }
+      if ((replacer.unpin(frameNo)) != true) {
+        throw new ReplacerException(null, "BUFMGR: REPLACER_ERROR.");
+      }
 
-    if (dirty == true) {
-      frmeTable[frameNo].dirty = dirty;
+      if (dirty == true) {
+        setDirty(frame);
+      }
+    } finally {
+      frame.latch.unlock();
     }
 
     if (DEBUG) {
@@ -772,6 +959,7 @@ public class BufMgr implements GlobalConst {
           DiskMgrException,
           IOException {
     int frameNo;
+    prefetcher.drain();                // it may be reading the page
     frameNo = hashTable.lookup(globalPageId);
 
     //if globalPageId is not in pool, frameNo < 0
@@ -786,20 +974,29 @@ public class BufMgr implements GlobalConst {
 
     }
 
+    FrameDesc frame = frmeTable[frameNo];
+    frame.latch.lock();
     try {
-      replacer.free(frameNo);
-    } catch (Exception e1) {
-      throw new ReplacerException(e1, "BUFMGR, REPLACER_ERROR");
-    }
+      // unless it was replaced since the lookup
+      if (frame.pageNo.pid == globalPageId.pid) {
+        try {
+          replacer.free(frameNo);
+        } catch (Exception e1) {
+          throw new ReplacerException(e1, "BUFMGR, REPLACER_ERROR");
+        }
 
-    try {
-      hashTable.remove(frmeTable[frameNo].pageNo);
-    } catch (Exception e2) {
-      throw new HashOperationException(e2, "BUFMGR, HASH_TABLE_ERROR");
-    }
+        try {
+          hashTable.remove(frame.pageNo);
+        } catch (Exception e2) {
+          throw new HashOperationException(e2, "BUFMGR, HASH_TABLE_ERROR");
+        }
 
-    frmeTable[frameNo].pageNo.pid = INVALID_PAGE; // frame is empty
-    frmeTable[frameNo].dirty = false;
+        setClean(frame);
+        frame.pageNo.pid = INVALID_PAGE; // frame is empty
+      }
+    } finally {
+      frame.latch.unlock();
+    }
 
 
     deallocate_page(globalPageId);
@@ -862,14 +1059,96 @@ public class BufMgr implements GlobalConst {
 
 
   /**
-   * Gets the total number of unpinned buffer frames.
+   * Gets the total number of unpinned buffer frames, once the pages
+   * being read ahead are in.
    *
    * @return total number of unpinned buffer frames.
    */
   public int getNumUnpinnedBuffers() {
+    prefetcher.drain();
     return replacer.getNumUnpinnedBuffers();
   }
 
+
+  /**
+   * Gets the number of dirty buffer frames, which the write-behind
+   * keeps near its limit.
+   *
+   * @return number of dirty buffer frames.
+   */
+  public int getNumDirtyBuffers() {
+    return numDirty.get();
+  }
+
+
+  /**
+   * Ask for a page to be read into the buffer pool in the background,
+   * for a sequential scan that will pin it soon.  Nothing is done if
+   * reading ahead is off or the page is in the pool already, and the
+   * request may be dropped if many are waiting.  The page is not left
+   * pinned, and an error reading it only means the scan reads it
+   * itself.
+   *
+   * @param pageno the page number in the database.
+   */
+  public void prefetchPage(PageId pageno) {
+    if (readingAhead && pageno.pid != INVALID_PAGE && hashTable.lookup(pageno) < 0)
+      prefetcher.request(pageno.pid);
+  }
+
+  /**
+   * Turn reading ahead for sequential scans on or off.  It is off by
+   * default, as the pages read ahead are counted as they are read on
+   * the background thread, those the scan does not get to included,
+   * so the page reads a query reports vary from run to run.
+   *
+   * @param on whether prefetchPage reads pages
+   */
+  public void setReadAhead(boolean on) {
+    readingAhead = on;
+  }
+
+  /**
+   * Read one page for the prefetcher: pin and unpin it, unless it is
+   * in the pool by now.
+   */
+  void readAhead(PageId pageno) {
+    if (hashTable.lookup(pageno) >= 0)
+      return;
+    try {
+      pinPage(pageno, new Page(), false);
+      unpinPage(pageno, false);
+    } catch (Exception e) {
+      // only a hint; the scan will pin the page itself
+    }
+  }
+
+  /**
+   * Write dirty pages back in the background once more than maxDirty
+   * frames are dirty, so a long bulk load does not fill the pool with
+   * dirty pages.  The pages written stay in the pool, clean.
+   *
+   * @param maxDirty the most dirty frames before writing back starts,
+   *                 0 to stop writing behind
+   */
+  public void setWriteBehind(int maxDirty) {
+    WriteBehind old = writeBehind;
+    if (old != null)
+      old.stop();
+    this.maxDirty = maxDirty;
+    writeBehind = (maxDirty > 0) ? new WriteBehind(this) : null;
+  }
+
+  /**
+   * One pass of the write-behind: write the unpinned dirty pages back.
+   */
+  void writeBehind()
+          throws HashOperationException,
+          PagePinnedException,
+          BufMgrException {
+    writeBack(false, false);
+  }
+
   /**
    * A few routines currently need direct access to the FrameTable.
    */
@@ -888,6 +1167,17 @@ public class BufMgr implements GlobalConst {
 
   } // end of write_page
 
+  private void write_pages(PageId pageno, Page pages[])
+          throws BufMgrException {
+
+    try {
+      SystemDefs.JavabaseDB.write_pages(pageno, pages);
+    } catch (Exception e) {
+      throw new BufMgrException(e, "BufMgr.java: write_pages() failed");
+    }
+
+  } // end of write_pages
+
   private void read_page(PageId pageno, Page page)
           throws BufMgrException {
 
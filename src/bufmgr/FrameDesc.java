@@ -0,0 +1,108 @@
+/* File FrameDesc.java */
+
+package bufmgr;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import global.*;
+
+/**
+ * A frame description class. It describes each page in the buffer
+ * pool, the page number in the file, whether it is dirty or not,
+ * its pin count, and the pin count change when pinning or unpinning
+ * a page.  The page number and dirty bit change, and the page is read
+ * or written, only under the frame's latch; the pin count is atomic,
+ * so it can be read without the latch.
+ *
+ * The write-back scans the frames for dirty ones without the
+ * latches, and checks each frame found again under its latch.  The
+ * dirty bit is volatile for that scan: the page number is set before
+ * a frame is marked dirty and the mark is taken off before it
+ * changes, so a frame seen dirty has the page number it was marked
+ * with, or one it is being given, which the check under the latch
+ * passes over.  A page unpinned dirty before the scan began is always
+ * seen.
+ */
+class FrameDesc implements GlobalConst {
+
+  private static boolean DEBUG = false;
+
+  /**
+   * The page within file, or INVALID_PAGE if the frame is empty.
+   */
+  public PageId pageNo;
+
+  /**
+   * the dirty bit, 1 (TRUE) stands for this frame is altered,
+   * 0 (FALSE) for clean frames.
+   */
+  public volatile boolean dirty;
+
+  /**
+   * The pin count for the page in this frame
+   */
+  private final AtomicInteger pin_cnt = new AtomicInteger();
+
+  /**
+   * The latch of the frame, held while its page is changed, read in
+   * or written out, and while it is pinned or unpinned.
+   */
+  final ReentrantLock latch = new ReentrantLock();
+
+  /**
+   * Creates a FrameDesc object, initialize pageNo, dirty and
+   * pin_count.
+   */
+  public FrameDesc() {
+
+    pageNo = new PageId();
+    pageNo.pid = INVALID_PAGE;
+    dirty = false;
+
+  }
+
+
+  /**
+   * Returns the pin count of a certain frame page.
+   *
+   * @return the pin count number.
+   */
+  public int pin_count() {
+    return pin_cnt.get();
+  }
+
+  /**
+   * Increments the pin count of a certain frame page when the
+   * page is pinned.
+   *
+   * @return the incremented pin count.
+   */
+  public int pin() {
+    // if (DEBUG) {
+    //   System.out.println("[BufMgr] (FrameDesc) pin: page " + pageNo.pid);
+    // }
+    return pin_cnt.incrementAndGet();
+  }
+
+  /**
+   * Decrements the pin count of a frame when the page is
+   * unpinned.  If the pin count is equal to or less than
+   * zero, the pin count will be zero.
+   *
+   * @return the decremented pin count.
+   */
+  public int unpin() {
+
+    int cnt;
+    do {
+      cnt = pin_cnt.get();
+    } while (cnt > 0 && !pin_cnt.compareAndSet(cnt, cnt - 1));
+
+    // if (DEBUG) {
+    //   System.out.println("[BufMgr] (FrameDesc) try unpin: page " + pageNo.pid + ", pin_cnt = " + pin_count());
+    // }
+
+    return (cnt > 0) ? cnt - 1 : 0;
+  }
+}
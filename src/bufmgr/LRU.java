@@ -8,43 +8,31 @@ import global.*;
   /**
    * class LRU is a subclass of class Replacer using LRU
    * algorithm for page replacement
+   *
+   * The unpinned frames are kept in a doubly linked list threaded
+   * through arrays indexed by frame number, in the order they were
+   * last unpinned.  A frame leaves the list when it is pinned and
+   * goes back to its front when its last pin is released, so pin,
+   * unpin and picking a victim are O(1).  Frames never used, or
+   * freed, are kept in a second list and are picked first.
    */
 class LRU extends  Replacer {
 
   /**
-   * private field
-   * An array to hold number of frames in the buffer pool
-   */
-
-    private int  frames[];
- 
-  /**
-   * private field
-   * number of frames used
-   */   
-  private int  nframes;
-
-  /**
-   * This pushes the given frame to the end of the list.
-   * @param frameNo	the frame number
+   * protected fields
+   * the links of the lists; the heads of the free and unpinned lists
+   * are the sentinels numBuffers and numBuffers + 1, and the unpinned
+   * list runs from the most to the least recently unpinned frame.
+   * inList tells whether a frame is in one of the lists.
    */
-  private void update(int frameNo)
-  {
-     int index;
-     for ( index=0; index < nframes; ++index )
-        if ( frames[index] == frameNo )
-            break;
-
-    while ( ++index < nframes )
-        frames[index-1] = frames[index];
-        frames[nframes-1] = frameNo;
-  }
+  protected int next[];
+  protected int prev[];
+  protected int freeList, unpinned;
+  private boolean inList[];
 
   /**
    * Calling super class the same method
-   * Initializing the frames[] with number of buffer allocated
-   * by buffer manager
-   * set number of frame used to zero
+   * Initializing the lists with every frame free
    *
    * @param	mgr	a BufMgr object
    * @see	BufMgr
@@ -53,26 +41,35 @@ class LRU extends  Replacer {
     public void setBufferManager( BufMgr mgr )
      {
         super.setBufferManager(mgr);
-	frames = new int [ mgr.getNumBuffers() ];
-	nframes = 0;
+
+	int numBuffers = mgr.getNumBuffers();
+	next = new int [ numBuffers + 2 ];
+	prev = new int [ numBuffers + 2 ];
+	inList = new boolean [ numBuffers ];
+	freeList = numBuffers;
+	unpinned = numBuffers + 1;
+	next[freeList] = prev[freeList] = freeList;
+	next[unpinned] = prev[unpinned] = unpinned;
+	for ( int frame = numBuffers - 1; frame >= 0; frame-- )
+	  link(freeList, frame);
      }
 
 /* public methods */
 
   /**
    * Class constructor
-   * Initializing frames[] pinter = null.
+   * Initializing the lists pointer = null.
    */
     public LRU(BufMgr mgrArg)
     {
       super(mgrArg);
-      frames = null;
+      next = prev = null;
     }
-  
+
   /**
    * calll super class the same method
-   * pin the page in the given frame number 
-   * move the page to the end of list  
+   * pin the page in the given frame number
+   * take the frame out of its list
    *
    * @param	 frameNo	 the frame number to pin
    * @exception  InvalidFrameNumberException
@@ -81,70 +78,140 @@ class LRU extends  Replacer {
  {
     super.pin(frameNo);
 
-    update(frameNo);
-    
+    synchronized (this) {
+      if (inList[frameNo])
+        unlink(frameNo);
+    }
+
  }
 
   /**
-   * Finding a free frame in the buffer pool
-   * or choosing a page to replace using LRU policy
+   * call super class the same method
+   * put the frame at the front of the unpinned list when its
+   * last pin is released
    *
-   * @return 	return the frame number
-   *		return -1 if failed
+   * @param	 frameNo	 the frame number to unpin
+   * @exception  InvalidFrameNumberException
+   * @exception  PageUnpinnedException
    */
-
- public int pick_victim()
+ public boolean unpin(int frameNo)
+   throws InvalidFrameNumberException, PageUnpinnedException
  {
-   int numBuffers = mgr.getNumBuffers();
-   int frame;
-   
-    if ( nframes < numBuffers ) {
-        frame = nframes++;
-        frames[frame] = frame;
-        state_bit[frame].state = Pinned;
-        (mgr.frameTable())[frame].pin();
-        return frame;
+    boolean ok = super.unpin(frameNo);
+
+    synchronized (this) {
+      if ((mgr.frameTable())[frameNo].pin_count() == 0 && !inList[frameNo])
+        link(unpinned, frameNo);
     }
+    return ok;
+ }
 
-    for ( int i = 0; i < numBuffers; ++i ) {
-         frame = frames[i];
-        if ( state_bit[frame].state != Pinned ) {
-            state_bit[frame].state = Pinned;
-            (mgr.frameTable())[frame].pin();
-            update(frame);
-            return frame;
-        }
+  /**
+   * call super class the same method
+   * put the frame in the free list
+   *
+   * @param	 frameNo	 the frame number to free
+   * @exception  PagePinnedException
+   */
+ public void free(int frameNo) throws PagePinnedException
+ {
+    super.free(frameNo);
+
+    synchronized (this) {
+      if (inList[frameNo])
+        unlink(frameNo);
+      link(freeList, frameNo);
     }
+ }
 
-    return -1;
+  /**
+   * Finding a free frame in the buffer pool
+   * or choosing a page to replace using LRU policy
+   *
+   * @return 	return the frame number
+   * @exception  BufferPoolExceededException if every frame is pinned
+   */
+
+ public synchronized int pick_victim() throws BufferPoolExceededException
+ {
+    int frame = first(freeList);
+    if ( frame < 0 )
+      frame = victim();
+    if ( frame < 0 )
+      throw new BufferPoolExceededException(null, "BUFMGR: BUFFER_EXCEEDED.");
+    unlink(frame);
+    return frame;
  }
- 
+
   /**
    * get the page replacement policy name
    *
    * @return	return the name of replacement policy used
-   */  
+   */
     public String name() { return "LRU"; }
- 
+
   /**
    * print out the information of frame usage
-   */  
+   */
  public void info()
  {
     super.info();
 
-    System.out.print( "LRU REPLACEMENT");
-    
-    for (int i = 0; i < nframes; i++) {
+    System.out.print( name() + " REPLACEMENT");
+
+    synchronized (this) {
+      int i = 0;
+      for (int f = next[unpinned]; f != unpinned; f = next[f], i++) {
         if (i % 5 == 0)
-	System.out.println( );
-	System.out.print( "\t" + frames[i]);
-        
+	  System.out.println( );
+	System.out.print( "\t" + f);
+      }
     }
     System.out.println();
  }
-  
-}
 
+/* protected methods; called with the replacer locked */
 
+  /**
+   * Choose the victim among the unpinned frames used before.
+   *
+   * @return the least recently unpinned frame that can be claimed,
+   *         or -1
+   */
+  protected int victim()
+  {
+    for ( int f = prev[unpinned]; f != unpinned; f = prev[f] )
+      if ( claim(f) )
+        return f;
+    return -1;
+  }
+
+  /**
+   * @return the first frame of list that can be claimed, or -1
+   */
+  protected int first(int list)
+  {
+    for ( int f = next[list]; f != list; f = next[f] )
+      if ( claim(f) )
+        return f;
+    return -1;
+  }
 
+  // Insert frame at the front of list.
+  private void link(int list, int frame)
+  {
+    next[frame] = next[list];
+    prev[frame] = list;
+    prev[next[list]] = frame;
+    next[list] = frame;
+    inList[frame] = true;
+  }
+
+  private void unlink(int frame)
+  {
+    next[prev[frame]] = next[frame];
+    prev[next[frame]] = prev[frame];
+    inList[frame] = false;
+  }
+
+}
@@ -0,0 +1,113 @@
+/* File Prefetcher.java */
+
+package bufmgr;
+
+import global.*;
+
+  /**
+   * class Prefetcher reads pages into the buffer pool in the
+   * background, for BufMgr.prefetchPage.
+   *
+   * Requests wait in a bounded ring of page numbers; when it is full
+   * further requests are dropped, as read-ahead is only a hint.  One
+   * daemon thread, started on the first request, reads them in turn
+   * by pinning and unpinning each page, so a thread that pins a page
+   * while it is being read waits for the read, as for any other.
+   * One thread is enough since the database file is read one page
+   * at a time.
+   */
+class Prefetcher implements GlobalConst {
+
+  /**
+   * private fields
+   * the buffer manager, the ring of requested pages, and whether the
+   * worker is reading a page now.  Guarded by the prefetcher's lock.
+   */
+  private final BufMgr mgr;
+  private final int ring[];
+  private int head, count;
+  private boolean busy;
+  private Thread worker;
+
+  /**
+   * Class constructor
+   *
+   * @param	mgrArg	the buffer manager to read pages into
+   * @param	maxQueued	the most requests waiting at a time
+   */
+  Prefetcher(BufMgr mgrArg, int maxQueued)
+  {
+    mgr = mgrArg;
+    ring = new int[maxQueued];
+  }
+
+  /**
+   * Queue a page to be read.
+   *
+   * @param	pid	the page number
+   * @return	false if the queue was full and the request dropped
+   */
+  synchronized boolean request(int pid)
+  {
+    if (count == ring.length)
+      return false;
+    ring[(head + count) % ring.length] = pid;
+    count++;
+    if (worker == null) {
+      worker = new Thread(new Runnable() {
+        public void run() { work(); }
+      }, "minibase-prefetch");
+      worker.setDaemon(true);
+      worker.start();
+    }
+    notifyAll();
+    return true;
+  }
+
+  /**
+   * Wait until every queued page has been read, so the worker holds
+   * no pin.
+   */
+  synchronized void drain()
+  {
+    boolean interrupted = false;
+    while (count > 0 || busy) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted)
+      Thread.currentThread().interrupt();
+  }
+
+  private void work()
+  {
+    while (true) {
+      int pid;
+      synchronized (this) {
+        while (count == 0) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            // a daemon; keep serving
+          }
+        }
+        pid = ring[head];
+        head = (head + 1) % ring.length;
+        count--;
+        busy = true;
+      }
+      try {
+        mgr.readAhead(new PageId(pid));
+      } finally {
+        synchronized (this) {
+          busy = false;
+          notifyAll();
+        }
+      }
+    }
+  }
+
+}
@@ -8,7 +8,7 @@ import global.*;
  */
   class STATE {
   
-    int state; 
+    volatile int state; 
    //  Available = 12;
    //  Referenced = 13;
    //  Pinned = 14;
@@ -96,7 +96,31 @@ abstract class Replacer implements GlobalConst
   }
   
 
-  /** Must pin the returned frame. */
+  /** Pins and latches a frame for pick_victim, unless another thread
+   * has it pinned or latched.  The state bits are only a hint, since
+   * pin and unpin change them under the frame's latch alone.
+   *
+   * @param frameNo frame number of the candidate victim.
+   * @return true if the frame is now pinned once and latched.
+   */
+  protected boolean claim( int frameNo )
+  {
+    FrameDesc frame = (mgr.frameTable())[frameNo];
+    if (!frame.latch.tryLock())
+      return false;
+    if (frame.pin_count() != 0) {
+      frame.latch.unlock();
+      return false;
+    }
+    frame.pin();
+    state_bit[frameNo].state = Pinned;
+    return true;
+  }
+
+  /** Must pin and latch the returned frame (see claim).  Called with
+   * the replacer locked; pin, unpin and free are called with the
+   * frame latched.
+   */
   public abstract int pick_victim() throws BufferPoolExceededException, PagePinnedException;     
  
   /** Retruns the name of the replacer algorithm. */
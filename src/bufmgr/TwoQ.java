@@ -0,0 +1,363 @@
+/* File TwoQ.java */
+
+package bufmgr;
+
+import java.util.Arrays;
+
+import global.*;
+
+  /**
+   * class TwoQ is a subclass of class Replacer using the 2Q
+   * algorithm (Johnson and Shasha, VLDB 1994) for page replacement.
+   *
+   * A page read in goes to A1in, a FIFO queue, and stays there
+   * however often it is pinned.  When it leaves A1in its page number
+   * is remembered in A1out, a FIFO queue of page numbers only.  A
+   * page read in again while it is in A1out goes to Am, an LRU
+   * queue, and so do pages promoted earlier.  The victim comes from
+   * A1in while A1in holds more than a quarter of the frames, else
+   * from Am.  So a scan that reads each page once only cycles through
+   * A1in, and the pages used again and again, such as the inner
+   * index pages, stay in Am.
+   *
+   * The queues are doubly linked lists threaded through arrays
+   * indexed by frame number, and A1out is a ring with an int hash
+   * table, so every step is O(1) and allocates nothing.  Pinned
+   * frames stay in their queue and are passed over when a victim is
+   * picked.  A victim's old page is only remembered once the victim
+   * holds another page; a victim given back unchanged, when the page
+   * it was picked for is read in by another thread or its old page
+   * cannot be written, goes back to the end of its queue.
+   */
+class TwoQ extends Replacer {
+
+  // queue of a frame
+  private static final int FREE = 0;     // empty, never read in or freed
+  private static final int PENDING = 1;  // picked as victim, being read in
+  private static final int A1IN = 2;
+  private static final int AM = 3;
+
+  /**
+   * private fields
+   * the queue of each frame, and the links of the lists; the heads
+   * of the free list, A1in and Am are the sentinels numBuffers,
+   * numBuffers + 1 and numBuffers + 2.  Most recent first.
+   */
+  private int queue[];
+  private int next[];
+  private int prev[];
+  private int freeList, a1in, am;
+  private int a1inSize;
+
+  /**
+   * private fields
+   * the queue a PENDING frame was picked from, and its page then
+   */
+  private int victimQueue[];
+  private int victimPid[];
+
+  /**
+   * private fields
+   * A1in is kept to kin frames; A1out remembers kout pages, in a
+   * ring, with the ring slot of each page's latest entry in an open
+   * addressing table of page numbers and slots, INVALID_PAGE marking
+   * a free entry.  The table is at most half full, as it never holds
+   * more pages than the ring.
+   */
+  private int kin;
+  private int ghost[];
+  private int ghostPos;
+  private int slotPages[];
+  private int slots[];
+  private int slotMask;
+
+  /**
+   * Calling super class the same method
+   * Initializing the queues with every frame free
+   *
+   * @param	mgr	a BufMgr object
+   * @see	BufMgr
+   * @see	Replacer
+   */
+  public void setBufferManager( BufMgr mgr )
+  {
+    super.setBufferManager(mgr);
+
+    int numBuffers = mgr.getNumBuffers();
+    queue = new int[numBuffers];
+    next = new int[numBuffers + 3];
+    prev = new int[numBuffers + 3];
+    freeList = numBuffers;
+    a1in = numBuffers + 1;
+    am = numBuffers + 2;
+    for (int s = numBuffers; s < numBuffers + 3; s++)
+      next[s] = prev[s] = s;
+    for (int frame = numBuffers - 1; frame >= 0; frame--)
+      link(freeList, frame);
+    a1inSize = 0;
+    victimQueue = new int[numBuffers];
+    victimPid = new int[numBuffers];
+
+    kin = Math.max(1, numBuffers / 4);
+    ghost = new int[Math.max(1, numBuffers / 2)];
+    Arrays.fill(ghost, INVALID_PAGE);
+    ghostPos = 0;
+    int size = 4;
+    while (size < 2 * ghost.length)
+      size <<= 1;
+    slotPages = new int[size];
+    slots = new int[size];
+    Arrays.fill(slotPages, INVALID_PAGE);
+    slotMask = size - 1;
+  }
+
+/* public methods */
+
+  /**
+   * Class constructor
+   */
+  public TwoQ(BufMgr mgrArg)
+  {
+    super(mgrArg);
+  }
+
+  /**
+   * call super class the same method
+   * pin the page in the given frame number
+   * a page in Am moves to its front; one in A1in stays where it is
+   *
+   * @param	 frameNo	 the frame number to pin
+   * @exception  InvalidFrameNumberException
+   */
+  public void pin(int frameNo) throws InvalidFrameNumberException
+  {
+    super.pin(frameNo);
+
+    synchronized (this) {
+      if (queue[frameNo] == AM) {
+        unlink(frameNo);
+        link(am, frameNo);
+      }
+    }
+  }
+
+  /**
+   * call super class the same method
+   * a frame read in since it was picked as victim is queued now,
+   * when its page is known: in Am if A1out remembers the page, else
+   * in A1in; the page it had goes to A1out if it came from A1in.  A
+   * victim that still holds its page goes back to the end of the
+   * queue it came from.
+   *
+   * @param	 frameNo	 the frame number to unpin
+   * @exception  InvalidFrameNumberException
+   * @exception  PageUnpinnedException
+   */
+  public boolean unpin(int frameNo)
+    throws InvalidFrameNumberException, PageUnpinnedException
+  {
+    boolean ok = super.unpin(frameNo);
+
+    synchronized (this) {
+      if (queue[frameNo] == PENDING) {
+        int pid = (mgr.frameTable())[frameNo].pageNo.pid;
+        int from = victimQueue[frameNo];
+        if (pid == victimPid[frameNo] && from != FREE) {
+          queue[frameNo] = from;          // given back unchanged
+          linkLast(from == A1IN ? a1in : am, frameNo);
+          if (from == A1IN)
+            a1inSize++;
+        } else {
+          if (from == A1IN)
+            remember(victimPid[frameNo]);
+          if (pid == INVALID_PAGE) {
+            queue[frameNo] = FREE;        // the read failed
+            link(freeList, frameNo);
+          } else if (forget(pid)) {
+            queue[frameNo] = AM;
+            link(am, frameNo);
+          } else {
+            queue[frameNo] = A1IN;
+            link(a1in, frameNo);
+            a1inSize++;
+          }
+        }
+      }
+    }
+    return ok;
+  }
+
+  /**
+   * call super class the same method
+   * the frame goes back to the free list
+   *
+   * @param	 frameNo	 the frame number to free
+   * @exception  PagePinnedException
+   */
+  public void free(int frameNo) throws PagePinnedException
+  {
+    super.free(frameNo);
+
+    synchronized (this) {
+      if (queue[frameNo] != FREE) {
+        if (queue[frameNo] != PENDING)
+          unlink(frameNo);
+        queue[frameNo] = FREE;
+        link(freeList, frameNo);
+      }
+    }
+  }
+
+  /**
+   * Finding a free frame in the buffer pool
+   * or choosing a page to replace using 2Q policy
+   *
+   * @return 	return the frame number
+   * @exception  BufferPoolExceededException if every frame is in use
+   */
+  public synchronized int pick_victim() throws BufferPoolExceededException
+  {
+    int frame = victimFrom(freeList);
+    if (frame < 0) {
+      if (a1inSize > kin) {
+        frame = victimFrom(a1in);
+        if (frame < 0)
+          frame = victimFrom(am);
+      } else {
+        frame = victimFrom(am);
+        if (frame < 0)
+          frame = victimFrom(a1in);
+      }
+    }
+    if (frame < 0)
+      throw new BufferPoolExceededException(null, "BUFMGR: BUFFER_EXCEEDED.");
+
+    if (queue[frame] == A1IN)
+      a1inSize--;
+    victimQueue[frame] = queue[frame];
+    victimPid[frame] = (mgr.frameTable())[frame].pageNo.pid;
+    unlink(frame);
+    queue[frame] = PENDING;
+    return frame;
+  }
+
+  /**
+   * get the page replacement policy name
+   *
+   * @return	return the name of replacement policy used
+   */
+  public String name() { return "2Q"; }
+
+  /**
+   * print out the information of frame usage
+   */
+  public void info()
+  {
+    super.info();
+
+    synchronized (this) {
+      System.out.print( "2Q REPLACEMENT\nA1in:");
+      for (int f = next[a1in]; f != a1in; f = next[f])
+        System.out.print( "\t" + f);
+      System.out.print( "\nAm:");
+      for (int f = next[am]; f != am; f = next[f])
+        System.out.print( "\t" + f);
+      System.out.println();
+    }
+  }
+
+/* private methods; called with the replacer locked */
+
+  // The least recent frame of a list that can be claimed, or -1.
+  private int victimFrom(int list)
+  {
+    for (int f = prev[list]; f != list; f = prev[f])
+      if (claim(f))
+        return f;
+    return -1;
+  }
+
+  // Put page pid in A1out, forgetting the oldest page if it is full.
+  private void remember(int pid)
+  {
+    if (pid == INVALID_PAGE)
+      return;
+    int old = ghost[ghostPos];
+    if (old != INVALID_PAGE) {
+      int i = find(old);
+      if (slots[i] == ghostPos)
+        removeAt(i);              // not remembered again since
+    }
+    ghost[ghostPos] = pid;
+    int i = find(pid);
+    slotPages[i] = pid;
+    slots[i] = ghostPos;
+    ghostPos = (ghostPos + 1) % ghost.length;
+  }
+
+  // Take page pid out of A1out; returns whether it was there.  Its
+  // ring entry stays, and is passed over when it comes round.
+  private boolean forget(int pid)
+  {
+    int i = find(pid);
+    if (slotPages[i] == INVALID_PAGE)
+      return false;
+    removeAt(i);
+    return true;
+  }
+
+  private static int hash(int pid)
+  {
+    int h = pid * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  // The table entry of pid, or the free entry where it would go.
+  private int find(int pid)
+  {
+    int i = hash(pid) & slotMask;
+    while (slotPages[i] != INVALID_PAGE && slotPages[i] != pid)
+      i = (i + 1) & slotMask;
+    return i;
+  }
+
+  // Free entry i, moving back the later entries of its run whose home
+  // entry is not in (i, j], as BufHashTbl does.
+  private void removeAt(int i)
+  {
+    for (int j = (i + 1) & slotMask; slotPages[j] != INVALID_PAGE; j = (j + 1) & slotMask) {
+      int home = hash(slotPages[j]) & slotMask;
+      if (((j - home) & slotMask) >= ((j - i) & slotMask)) {
+        slotPages[i] = slotPages[j];
+        slots[i] = slots[j];
+        i = j;
+      }
+    }
+    slotPages[i] = INVALID_PAGE;
+  }
+
+  // Insert frame at the front of list.
+  private void link(int list, int frame)
+  {
+    next[frame] = next[list];
+    prev[frame] = list;
+    prev[next[list]] = frame;
+    next[list] = frame;
+  }
+
+  // Insert frame at the end of list, where victims are taken from.
+  private void linkLast(int list, int frame)
+  {
+    prev[frame] = prev[list];
+    next[frame] = list;
+    next[prev[list]] = frame;
+    prev[list] = frame;
+  }
+
+  private void unlink(int frame)
+  {
+    next[prev[frame]] = next[frame];
+    prev[next[frame]] = prev[frame];
+  }
+
+}
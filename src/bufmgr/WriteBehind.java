@@ -0,0 +1,91 @@
+/* File WriteBehind.java */
+
+package bufmgr;
+
+import global.*;
+
+  /**
+   * class WriteBehind writes dirty pages back in the background, for
+   * BufMgr.setWriteBehind.
+   *
+   * The buffer manager kicks it when more frames are dirty than
+   * allowed, and a daemon thread, started on the first kick, then
+   * writes the dirty unpinned pages back in page order, runs of
+   * adjacent pages together (see BufMgr.writeBehind).  The pages stay
+   * in the pool, clean, so a long bulk load does not leave every
+   * frame dirty for the final flush, nor makes each replacement wait
+   * for a write.
+   */
+class WriteBehind implements GlobalConst {
+
+  /**
+   * private fields
+   * the buffer manager, whether a pass is wanted, and whether the
+   * worker is to stop.  Guarded by the write-behind's lock.
+   */
+  private final BufMgr mgr;
+  private boolean wanted, stopped;
+  private Thread worker;
+
+  /**
+   * Class constructor
+   *
+   * @param	mgrArg	the buffer manager to write pages back for
+   */
+  WriteBehind(BufMgr mgrArg)
+  {
+    mgr = mgrArg;
+  }
+
+  /**
+   * Ask for a pass over the pool; kicks while a pass is waiting or
+   * running ask for one more pass only.
+   */
+  synchronized void kick()
+  {
+    if (stopped)
+      return;
+    wanted = true;
+    if (worker == null) {
+      worker = new Thread(new Runnable() {
+        public void run() { work(); }
+      }, "minibase-write-behind");
+      worker.setDaemon(true);
+      worker.start();
+    }
+    notifyAll();
+  }
+
+  /**
+   * Stop the worker once its pass, if any, is over.
+   */
+  synchronized void stop()
+  {
+    stopped = true;
+    notifyAll();
+  }
+
+  private void work()
+  {
+    while (true) {
+      synchronized (this) {
+        while (!wanted && !stopped) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            // a daemon; keep serving
+          }
+        }
+        if (stopped)
+          return;
+        wanted = false;
+      }
+      try {
+        mgr.writeBehind();
+      } catch (Exception e) {
+        // the pages stay dirty and are written when replaced or flushed
+      }
+    }
+  }
+
+}
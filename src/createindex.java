@@ -4,6 +4,7 @@ import global.*;
 import heap.*;
 import btree.*;
 import lshfindex.*;
+import iterator.KeyDataSort;
 import diskmgr.*;
 import bufmgr.*;
 
@@ -55,16 +56,8 @@ public class createindex {
       if (types[colNo-1].attrType == AttrType.attrVector100D) {
         // --- build LSH-forest index ---
         LSHFIndexFile lshIndex = new LSHFIndexFile(idxName, h, L, types.length, types);
-
-        Scan scan = hf.openScan();
-        RID rid = new RID();
-        Tuple t;
-        while ((t = scan.getNext(rid)) != null) {
-          t.setHdr((short)types.length, types, strSizes);
-          Vector100Dtype v = t.get100DVectFld(colNo);
-          lshIndex.insert(v, rid);
-        }
-        scan.closescan();
+        // sort each layer's signatures and build its tree bottom-up
+        lshIndex.bulkLoad(hf, colNo);
         lshIndex.close();
       }
       else {
@@ -75,12 +68,16 @@ public class createindex {
           keyType = AttrType.attrString;
         }
         // --- build B-tree index ---
+        // a string key is stored with writeUTF, after its 2-byte length
+        int keySize = keyType == AttrType.attrString ? strSizes[colNo-1] + 2 : 4;
         BTreeFile btf = new BTreeFile(
             idxName,
             keyType,
-            /* keysize */ 4,
+            keySize,
             /* delete fashion */ 1);
 
+        // sort the (key, rid) pairs, then build the tree bottom-up
+        KeyDataSort entries = new KeyDataSort(idxName + "_bulk", keyType, strSizes[colNo-1]);
         Scan scan = hf.openScan();
         RID rid = new RID();
         Tuple t;
@@ -97,10 +94,15 @@ public class createindex {
             default:
               throw new IllegalArgumentException("Unsupported type");
           }
-          btf.insert(key, rid);
+          entries.add(key, rid);
         }
-        btf.close();
         scan.closescan();
+        try {
+          btf.bulkLoad(entries);
+        } finally {
+          entries.close();
+        }
+        btf.close();
       }
 
       // flush and report I/O
@@ -5,11 +5,34 @@ package diskmgr;
 import bufmgr.*;
 import global.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 public class DB implements GlobalConst {
 
     private static final int bits_per_page = MAX_SPACE * 8;
 
+    /** How read_page and write_page reach the database file.
+     * <ul>
+     * <li>STREAM seeks the file and reads or writes the page, two
+     *     system calls, one page at a time.
+     * <li>CHANNEL reads and writes the page at its offset with one
+     *     system call, and several pages can be read at once.
+     * <li>MAPPED maps the file into memory; a page is copied to or
+     *     from the mapping, with no system call unless the page is not
+     *     resident.  Written pages reach the disk when the operating
+     *     system writes them back, or when the database is closed.
+     * </ul>
+     * A channel is closed when a thread doing I/O on it is
+     * interrupted, so in CHANNEL and MAPPED modes page I/O must not be
+     * done by threads that may be interrupted.
+     */
+    public enum IOMode { STREAM, CHANNEL, MAPPED }
+
+    /** Pages in each mapped window; a mapping is at most 2GB. */
+    private static final int MAP_WINDOW_PAGES = (1 << 30) / MINIBASE_PAGESIZE;
+
     /** Open the database with the given name.
      *
      * @param name DB_name
@@ -20,11 +43,28 @@ public class DB implements GlobalConst {
      * @exception DiskMgrException error caused by other layers
      */
     public void openDB(String fname)
+        throws IOException, InvalidPageNumberException, FileIOException, DiskMgrException {
+        openDB(fname, IOMode.STREAM);
+    }
+
+    /** Open the database with the given name, doing its page I/O
+     * the given way.
+     *
+     * @param name DB_name
+     * @param mode how pages are read and written
+     *
+     * @exception IOException I/O errors
+     * @exception FileIOException file I/O error
+     * @exception InvalidPageNumberException invalid page number
+     * @exception DiskMgrException error caused by other layers
+     */
+    public void openDB(String fname, IOMode mode)
         throws IOException, InvalidPageNumberException, FileIOException, DiskMgrException {
         name = fname;
 
         // Creaat a random access file
         fp = new RandomAccessFile(fname, "rw");
+        openIO(mode);
 
         PageId pageId = new PageId();
         Page apage = new Page();
@@ -58,6 +98,23 @@ public class DB implements GlobalConst {
      * @exception DiskMgrException error caused by other layers
      */
     public void openDB(String fname, int num_pgs)
+        throws IOException, InvalidPageNumberException, FileIOException, DiskMgrException {
+        openDB(fname, num_pgs, IOMode.STREAM);
+    }
+
+    /** Create a database with the specified number of pages, doing
+     * its page I/O the given way.
+     *
+     * @param name DB name
+     * @param num_pages number of pages in DB
+     * @param mode how pages are read and written
+     *
+     * @exception IOException I/O errors
+     * @exception InvalidPageNumberException invalid page number
+     * @exception FileIOException file I/O error
+     * @exception DiskMgrException error caused by other layers
+     */
+    public void openDB(String fname, int num_pgs, IOMode mode)
         throws IOException, InvalidPageNumberException, FileIOException, DiskMgrException {
         name = new String(fname);
         num_pages = (num_pgs > 2) ? num_pgs : 2;
@@ -70,8 +127,9 @@ public class DB implements GlobalConst {
         fp = new RandomAccessFile(fname, "rw");
 
         // Make the file num_pages pages long, filled with zeroes.
-        fp.seek((long) (num_pages * MINIBASE_PAGESIZE - 1));
+        fp.seek((long) num_pages * MINIBASE_PAGESIZE - 1);
         fp.writeByte(0);
+        openIO(mode);
 
         // Initialize space map and directory pages.
 
@@ -97,6 +155,7 @@ public class DB implements GlobalConst {
      * @exception IOException I/O errors.
      */
     public void closeDB() throws IOException {
+        closeIO();
         fp.close();
     }
 
@@ -104,12 +163,16 @@ public class DB implements GlobalConst {
      * @exception IOException I/O errors.
      */
     public void DBDestroy() throws IOException {
+        closeIO();
         fp.close();
         File DBfile = new File(name);
         DBfile.delete();
     }
 
-    /** Read the contents of the specified page into a Page object
+    /** Read the contents of the specified page into a Page object.
+     * In STREAM mode this is done under the file lock, since the seek
+     * and the read share the file pointer; the other modes give the
+     * offset with each read and need no lock.
      *
      * @param pageno pageId which will be read
      * @param apage page object which holds the contents of page
@@ -124,13 +187,24 @@ public class DB implements GlobalConst {
             (pageno.pid < 0) || (pageno.pid >= num_pages)
         ) throw new InvalidPageNumberException(null, "BAD_PAGE_NUMBER");
 
-        // Seek to the correct page
-        fp.seek((long) (pageno.pid * MINIBASE_PAGESIZE));
-
-        // Read the appropriate number of bytes.
         byte[] buffer = apage.getpage(); //new byte[MINIBASE_PAGESIZE];
         try {
-            fp.read(buffer);
+            switch (ioMode) {
+            case MAPPED:
+                pageBuffer(pageno.pid).get(buffer, 0, Math.min(buffer.length, MINIBASE_PAGESIZE));
+                break;
+            case CHANNEL:
+                channelIO(pageno.pid, buffer, false);
+                break;
+            default:
+                synchronized (fileLock) {
+                    // Seek to the correct page
+                    fp.seek((long) pageno.pid * MINIBASE_PAGESIZE);
+
+                    // Read the appropriate number of bytes.
+                    fp.read(buffer);
+                }
+            }
             PCounter.readIncrement();
 //            System.out.println("Read Count: " + PCounter.rcounter);
         } catch (IOException e) {
@@ -140,6 +214,8 @@ public class DB implements GlobalConst {
     }
 
     /** Write the contents in a page object to the specified page.
+     * In STREAM mode this is done under the file lock, since the seek
+     * and the write share the file pointer.
      *
      * @param pageno pageId will be wrote to disk
      * @param apage the page object will be wrote to disk
@@ -154,12 +230,24 @@ public class DB implements GlobalConst {
             (pageno.pid < 0) || (pageno.pid >= num_pages)
         ) throw new InvalidPageNumberException(null, "INVALID_PAGE_NUMBER");
 
-        // Seek to the correct page
-        fp.seek((long) (pageno.pid * MINIBASE_PAGESIZE));
-
-        // Write the appropriate number of bytes.
         try {
-            fp.write(apage.getpage());
+            switch (ioMode) {
+            case MAPPED:
+                byte[] data = apage.getpage();
+                pageBuffer(pageno.pid).put(data, 0, Math.min(data.length, MINIBASE_PAGESIZE));
+                break;
+            case CHANNEL:
+                channelIO(pageno.pid, apage.getpage(), true);
+                break;
+            default:
+                synchronized (fileLock) {
+                    // Seek to the correct page
+                    fp.seek((long) pageno.pid * MINIBASE_PAGESIZE);
+
+                    // Write the appropriate number of bytes.
+                    fp.write(apage.getpage());
+                }
+            }
             PCounter.writeIncrement();
 //            System.out.println("Write Count: " + PCounter.wcounter);
         } catch (IOException e) {
@@ -168,6 +256,65 @@ public class DB implements GlobalConst {
 
     }
 
+    /** Write a run of pages, numbered from pageno up, with one write
+     * where the I/O mode allows: a single write of the run in STREAM
+     * mode, a gathering write in CHANNEL mode.  Each page is
+     * MINIBASE_PAGESIZE bytes, as buffer pool frames are.
+     *
+     * @param pageno the first page of the run
+     * @param pages the page objects to write, in page order
+     *
+     * @exception InvalidPageNumberException invalid page number
+     * @exception FileIOException file I/O error
+     * @exception IOException I/O errors
+     */
+    public void write_pages(PageId pageno, Page pages[])
+        throws InvalidPageNumberException, FileIOException, IOException {
+        if (
+            (pageno.pid < 0) || (pageno.pid + pages.length > num_pages)
+        ) throw new InvalidPageNumberException(null, "INVALID_PAGE_NUMBER");
+
+        long pos = (long) pageno.pid * MINIBASE_PAGESIZE;
+        try {
+            switch (ioMode) {
+            case MAPPED:
+                for (int i = 0; i < pages.length; i++)
+                    pageBuffer(pageno.pid + i).put(pages[i].getpage(), 0, MINIBASE_PAGESIZE);
+                break;
+            case CHANNEL:
+                ByteBuffer bufs[] = new ByteBuffer[pages.length];
+                for (int i = 0; i < pages.length; i++)
+                    bufs[i] = ByteBuffer.wrap(pages[i].getpage(), 0, MINIBASE_PAGESIZE);
+                synchronized (fileLock) {
+                    // gathering writes go at the channel position
+                    channel.position(pos);
+                    while (bufs[bufs.length - 1].hasRemaining())
+                        channel.write(bufs);
+                }
+                break;
+            default:
+                byte run[] = new byte[pages.length * MINIBASE_PAGESIZE];
+                for (int i = 0; i < pages.length; i++)
+                    System.arraycopy(pages[i].getpage(), 0, run, i * MINIBASE_PAGESIZE, MINIBASE_PAGESIZE);
+                synchronized (fileLock) {
+                    fp.seek(pos);
+                    fp.write(run);
+                }
+            }
+            for (int i = 0; i < pages.length; i++)
+                PCounter.writeIncrement();
+        } catch (IOException e) {
+            throw new FileIOException(e, "DB file I/O error");
+        }
+
+    }
+
+    /** @return how this database reads and writes its pages
+     */
+    public IOMode getIOMode() {
+        return ioMode;
+    }
+
     /** Allocate a set of pages where the run size is taken to be 1 by default.
      *  Gives back the page number of the first page of the allocated run.
      *  with default run_size =1
@@ -198,7 +345,7 @@ public class DB implements GlobalConst {
      * @exception IOException I/O errors
      * @exception DiskMgrException error caused by other layers
      */
-    public void allocate_page(PageId start_page_num, int runsize)
+    public synchronized void allocate_page(PageId start_page_num, int runsize)
         throws OutOfSpaceException, InvalidRunSizeException, InvalidPageNumberException, FileIOException, DiskMgrException, IOException {
         if (runsize < 0) throw new InvalidRunSizeException(
             null,
@@ -285,7 +432,7 @@ public class DB implements GlobalConst {
      * @exception IOException I/O errors
      * @exception DiskMgrException error caused by other layers
      */
-    public void deallocate_page(PageId start_page_num, int run_size)
+    public synchronized void deallocate_page(PageId start_page_num, int run_size)
         throws InvalidRunSizeException, InvalidPageNumberException, IOException, FileIOException, DiskMgrException {
         if (run_size < 0) throw new InvalidRunSizeException(
             null,
@@ -308,7 +455,7 @@ public class DB implements GlobalConst {
      * @exception DiskMgrException error caused by other layers
      *
      */
-    public void deallocate_page(PageId start_page_num)
+    public synchronized void deallocate_page(PageId start_page_num)
         throws InvalidRunSizeException, InvalidPageNumberException, IOException, FileIOException, DiskMgrException {
         set_bits(start_page_num, 1, 0);
     }
@@ -327,7 +474,7 @@ public class DB implements GlobalConst {
      * @exception IOException I/O errors
      * @exception DiskMgrException error caused by other layers
      */
-    public void add_file_entry(String fname, PageId start_page_num)
+    public synchronized void add_file_entry(String fname, PageId start_page_num)
         throws FileNameTooLongException, InvalidPageNumberException, InvalidRunSizeException, DuplicateEntryException, OutOfSpaceException, FileIOException, IOException, DiskMgrException {
         if (fname.length() >= MAX_NAME) throw new FileNameTooLongException(
             null,
@@ -429,7 +576,7 @@ public class DB implements GlobalConst {
      * @exception InvalidPageNumberException invalid page number
      * @exception DiskMgrException error caused by other layers
      */
-    public void delete_file_entry(String fname)
+    public synchronized void delete_file_entry(String fname)
         throws FileEntryNotFoundException, IOException, FileIOException, InvalidPageNumberException, DiskMgrException {
         Page apage = new Page();
         boolean found = false;
@@ -497,7 +644,7 @@ public class DB implements GlobalConst {
      * @exception InvalidPageNumberException invalid page number
      * @exception DiskMgrException error caused by other layers
      */
-    public PageId get_file_entry(String name)
+    public synchronized PageId get_file_entry(String name)
         throws IOException, FileIOException, InvalidPageNumberException, DiskMgrException {
         Page apage = new Page();
         boolean found = false;
@@ -637,6 +784,74 @@ public class DB implements GlobalConst {
     private int num_pages;
     private String name;
 
+    // Guards the position of fp. The space map and the directory are
+    // guarded by the DB itself; their methods pin pages, so page I/O,
+    // done while a buffer frame is latched, must not wait for the DB.
+    private final Object fileLock = new Object();
+
+    // The I/O mode, the channel of fp for CHANNEL and MAPPED, and for
+    // MAPPED the windows of MAP_WINDOW_PAGES pages mapping the file.
+    private IOMode ioMode = IOMode.STREAM;
+    private FileChannel channel;
+    private MappedByteBuffer windows[];
+
+    /** Set up the given I/O mode on fp, once the file has its size.
+     */
+    private void openIO(IOMode mode) throws IOException {
+        ioMode = (mode == null) ? IOMode.STREAM : mode;
+        channel = null;
+        windows = null;
+        if (ioMode == IOMode.STREAM)
+            return;
+
+        channel = fp.getChannel();
+        if (ioMode == IOMode.MAPPED) {
+            long size = channel.size();
+            long window = (long) MAP_WINDOW_PAGES * MINIBASE_PAGESIZE;
+            windows = new MappedByteBuffer[(int) ((size + window - 1) / window)];
+            for (int i = 0; i < windows.length; i++) {
+                long start = i * window;
+                windows[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                                         start, Math.min(window, size - start));
+            }
+        }
+    }
+
+    /** Write back the mapped pages before the file is closed.
+     */
+    private void closeIO() {
+        if (windows != null)
+            for (int i = 0; i < windows.length; i++)
+                windows[i].force();
+        windows = null;
+        channel = null;
+    }
+
+    /** @return a view of the mapping positioned at page pid, with
+     * its own position so concurrent readers do not share one
+     */
+    private ByteBuffer pageBuffer(int pid) throws IOException {
+        int w = pid / MAP_WINDOW_PAGES;
+        if (w >= windows.length)
+            throw new IOException("page " + pid + " is past the end of the file");
+        ByteBuffer b = windows[w].duplicate();
+        b.position((pid % MAP_WINDOW_PAGES) * MINIBASE_PAGESIZE);
+        return b;
+    }
+
+    /** Read or write a whole page through the channel at its offset.
+     */
+    private void channelIO(int pid, byte[] page, boolean write) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(page);
+        long pos = (long) pid * MINIBASE_PAGESIZE;
+        while (b.hasRemaining()) {
+            int n = write ? channel.write(b, pos) : channel.read(b, pos);
+            if (n < 0)
+                break;          // past the end: leave the rest as it was
+            pos += n;
+        }
+    }
+
     /** Set runsize bits starting from start to value specified
      */
     private void set_bits(PageId start_page, int run_size, int bit)
@@ -829,6 +1044,9 @@ class DBHeaderPage implements PageUsedBytes, GlobalConst {
     private void initFileEntry(int empty, int entryNo) throws IOException {
         int position = START_FILE_ENTRIES + entryNo * SIZE_OF_FILE_ENTRY;
         Convert.setIntValue(empty, position, data);
+        // Free slots are still decoded by get_file_entry, so give them a
+        // valid (empty) name instead of whatever the buffer frame held.
+        Convert.setStrValue("", position + 4, data);
     }
 
     /**
@@ -1,9 +1,27 @@
 package diskmgr;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
 public class PCounter {
 
-    public static int rcounter;
-    public static int wcounter;
+    public static volatile int rcounter;
+    public static volatile int wcounter;
+
+    // pages are also read and written by the read-ahead and
+    // write-behind threads, so the counters are bumped atomically
+    private static final VarHandle RCOUNTER;
+    private static final VarHandle WCOUNTER;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            RCOUNTER = lookup.findStaticVarHandle(PCounter.class, "rcounter", int.class);
+            WCOUNTER = lookup.findStaticVarHandle(PCounter.class, "wcounter", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
     public static void initialize() {
         rcounter = 0;
@@ -11,10 +29,10 @@ public class PCounter {
     }
 
     public static void readIncrement() {
-        rcounter++;
+        RCOUNTER.getAndAdd(1);
     }
 
     public static void writeIncrement() {
-        wcounter++;
+        WCOUNTER.getAndAdd(1);
     }
 }
@@ -13,6 +13,7 @@ public class AttrType {
   public static final int attrSymbol  = 3;
   public static final int attrNull    = 4;
   public static final int attrVector100D = 5;
+  public static final int attrLong    = 6;
   
   public int attrType;
 
@@ -48,6 +49,8 @@ public class AttrType {
       return "attrSymbol";
     case attrVector100D:
       return "attrVector100D";
+    case attrLong:
+      return "attrLong";
     case attrNull:
       return "attrNull";
     }
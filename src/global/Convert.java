@@ -4,8 +4,27 @@ package global;
 
 import java.io.*;
 import java.lang.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
 
+/**
+ * Convert reads and writes values in byte arrays, in the big-endian
+ * layout of DataInputStream and DataOutputStream that the pages on
+ * disk use.  Numbers go straight through views of the byte array, so
+ * nothing is allocated per call; strings are still modified UTF-8,
+ * read and written through streams.
+ */
 public class Convert{
+
+  private static final VarHandle SHORT =
+    MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+  private static final VarHandle CHAR =
+    MethodHandles.byteArrayViewVarHandle(char[].class, ByteOrder.BIG_ENDIAN);
+  private static final VarHandle INT =
+    MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+  private static final VarHandle LONG =
+    MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
  
  /**
  * read 4 bytes from given byte array at the specified position
@@ -18,22 +37,21 @@ public class Convert{
   public static int getIntValue (int position, byte []data)
    throws java.io.IOException
     {
-      InputStream in;
-      DataInputStream instr;
-      int value;
-      byte tmp[] = new byte[4];
-      
-      // copy the value from data array out to a tmp byte array
-      System.arraycopy (data, position, tmp, 0, 4);
-      
-      /* creates a new data input stream to read data from the
-       * specified input stream
-       */
-      in = new ByteArrayInputStream(tmp);
-      instr = new DataInputStream(in);
-      value = instr.readInt();  
-      
-      return value;
+      return (int) INT.get(data, position);
+    }
+  
+  /**
+   * read 8 bytes from given byte array at the specified position
+   * convert it to a long
+   * @param  	data 		a byte array 
+   * @param       position  	in data[]
+   * @exception   java.io.IOException I/O errors
+   * @return      the long 
+   */
+  public static long getLongValue (int position, byte []data)
+    throws java.io.IOException
+    {
+      return (long) LONG.get(data, position);
     }
   
   /**
@@ -47,22 +65,7 @@ public class Convert{
   public static float getFloValue (int position, byte []data)
     throws java.io.IOException
     {
-      InputStream in;
-      DataInputStream instr;
-      float value;
-      byte tmp[] = new byte[4];
-      
-      // copy the value from data array out to a tmp byte array
-      System.arraycopy (data, position, tmp, 0, 4);
-      
-      /* creates a new data input stream to read data from the
-       * specified input stream
-       */
-      in = new ByteArrayInputStream(tmp);
-      instr = new DataInputStream(in);
-      value = instr.readFloat();  
-      
-      return value;
+      return Float.intBitsToFloat((int) INT.get(data, position));
     }
   
   
@@ -77,22 +80,7 @@ public class Convert{
   public static short getShortValue (int position, byte []data)
     throws java.io.IOException
     {
-      InputStream in;
-      DataInputStream instr;
-      short value;
-      byte tmp[] = new byte[2];
-      
-      // copy the value from data array out to a tmp byte array
-      System.arraycopy (data, position, tmp, 0, 2);
-      
-      /* creates a new data input stream to read data from the
-       * specified input stream
-       */
-      in = new ByteArrayInputStream(tmp);
-      instr = new DataInputStream(in);
-      value = instr.readShort();
-      
-      return value;
+      return (short) SHORT.get(data, position);
     }
   
   /**
@@ -108,21 +96,10 @@ public class Convert{
   public static String getStrValue (int position, byte []data, int length)
     throws java.io.IOException
     {
-      InputStream in;
-      DataInputStream instr;
-      String value;
-      byte tmp[] = new byte[length];  
-      
-      // copy the value from data array out to a tmp byte array
-      System.arraycopy (data, position, tmp, 0, length);
-      
-      /* creates a new data input stream to read data from the
-       * specified input stream
-       */
-      in = new ByteArrayInputStream(tmp);
-      instr = new DataInputStream(in);
-      value = instr.readUTF();
-      return value;
+      // read in place, without copying the bytes out first
+      DataInputStream instr =
+        new DataInputStream(new ByteArrayInputStream(data, position, length));
+      return instr.readUTF();
     }
   
   /**
@@ -136,20 +113,7 @@ public class Convert{
   public static char getCharValue (int position, byte []data)
     throws java.io.IOException
     {
-      InputStream in;
-      DataInputStream instr;
-      char value;
-      byte tmp[] = new byte[2];
-      // copy the value from data array out to a tmp byte array  
-      System.arraycopy (data, position, tmp, 0, 2);
-      
-      /* creates a new data input stream to read data from the
-       * specified input stream
-       */
-      in = new ByteArrayInputStream(tmp);
-      instr = new DataInputStream(in);
-      value = instr.readChar();
-      return value;
+      return (char) CHAR.get(data, position);
     }
 
   /**
@@ -163,26 +127,25 @@ public class Convert{
   public static Vector100Dtype get100DVectorValue (int position, byte []data)
           throws java.io.IOException
   {
-    InputStream in;
-    DataInputStream instr;
-    char value;
-    byte tmp[] = new byte[200];
-    // copy the value from data array out to a tmp byte array
-    System.arraycopy (data, position, tmp, 0, 200);
-
-    /* creates a new data input stream to read data from the
-     * specified input stream
-     */
-    in = new ByteArrayInputStream(tmp);
-    instr = new DataInputStream(in);
     short[] dimension = new short[100];
-    for (int i = 0; i < 100; i++) {
-      dimension[i] = instr.readShort();
-    }
+    getShortValues(position, data, dimension);
     return new Vector100Dtype(dimension);
   }
   
   
+  /**
+   * reads values.length short integers, 2 bytes each, from the given
+   * byte array at the specified position into values
+   * @param       data            a byte array
+   * @param       position        the position in data[]
+   * @param       values          the array to fill
+   */
+  public static void getShortValues (int position, byte []data, short []values)
+  {
+    for (int i = 0; i < values.length; i++, position += 2)
+      values[i] = (short) SHORT.get(data, position);
+  }
+  
   /**
    * update an integer value in the given byte array at the specified position
    * @param  	data 		a byte array
@@ -193,24 +156,20 @@ public class Convert{
   public static void setIntValue (int value, int position, byte []data) 
     throws java.io.IOException
     {
-      /* creates a new data output stream to write data to 
-       * underlying output stream
-       */
-      
-      OutputStream out = new ByteArrayOutputStream();
-      DataOutputStream outstr = new DataOutputStream (out);
-      
-      // write the value to the output stream
-      
-      outstr.writeInt(value);
-      
-      // creates a byte array with this output stream size and the
-      // valid contents of the buffer have been copied into it
-      byte []B = ((ByteArrayOutputStream) out).toByteArray();
-      
-      // copies the first 4 bytes of this byte array into data[] 
-      System.arraycopy (B, 0, data, position, 4);
-      
+      INT.set(data, position, value);
+    }
+  
+  /**
+   * update a long value in the given byte array at the specified position
+   * @param  	data 		a byte array
+   * @param	value   	the value to be copied into the data[]
+   * @param	position  	the position of tht value in data[]
+   * @exception   java.io.IOException I/O errors
+   */
+  public static void setLongValue (long value, int position, byte []data) 
+    throws java.io.IOException
+    {
+      LONG.set(data, position, value);
     }
   
   /**
@@ -223,24 +182,8 @@ public class Convert{
   public static void setFloValue (float value, int position, byte []data) 
     throws java.io.IOException
     {
-      /* creates a new data output stream to write data to 
-       * underlying output stream
-       */
-      
-      OutputStream out = new ByteArrayOutputStream();
-      DataOutputStream outstr = new DataOutputStream (out);
-      
-      // write the value to the output stream
-      
-      outstr.writeFloat(value);
-      
-      // creates a byte array with this output stream size and the
-      // valid contents of the buffer have been copied into it
-      byte []B = ((ByteArrayOutputStream) out).toByteArray();
-      
-      // copies the first 4 bytes of this byte array into data[] 
-      System.arraycopy (B, 0, data, position, 4);
-      
+      // floatToIntBits, as DataOutputStream.writeFloat
+      INT.set(data, position, Float.floatToIntBits(value));
     }
   
   /**
@@ -253,24 +196,7 @@ public class Convert{
   public static void setShortValue (short value, int position, byte []data) 
     throws java.io.IOException
     {
-      /* creates a new data output stream to write data to 
-       * underlying output stream
-       */
-      
-      OutputStream out = new ByteArrayOutputStream();
-      DataOutputStream outstr = new DataOutputStream (out);
-      
-      // write the value to the output stream
-      
-      outstr.writeShort(value);
-      
-      // creates a byte array with this output stream size and the
-      // valid contents of the buffer have been copied into it
-      byte []B = ((ByteArrayOutputStream) out).toByteArray();
-      
-      // copies the first 2 bytes of this byte array into data[] 
-      System.arraycopy (B, 0, data, position, 2);
-      
+      SHORT.set(data, position, value);
     }
   
   /**
@@ -314,23 +240,7 @@ public class Convert{
   public static void setCharValue (char value, int position, byte []data)
     throws java.io.IOException
     {
-      /* creates a new data output stream to write data to
-       * underlying output stream
-       */
-      
-      OutputStream out = new ByteArrayOutputStream();
-      DataOutputStream outstr = new DataOutputStream (out);
-      
-      // write the value to the output stream
-      outstr.writeChar(value);  
-      
-      // creates a byte array with this output stream size and the
-      // valid contents of the buffer have been copied into it
-      byte []B = ((ByteArrayOutputStream) out).toByteArray();
-      
-      // copies contents of this byte array into data[]
-      System.arraycopy (B, 0, data, position, 2);
-      
+      CHAR.set(data, position, value);
     }
 
     /**
@@ -343,23 +253,19 @@ public class Convert{
     public static void set100DVectorValue(Vector100Dtype value, int position, byte[] data)
             throws java.io.IOException
     {
-      /* creates a new data output stream to write data to
-       * underlying output stream
-       */
-
-      OutputStream out = new ByteArrayOutputStream();
-      DataOutputStream outstr = new DataOutputStream (out);
-
-      // write the value to the output stream
-      for (short dimension : value.getDimension()) {
-        outstr.writeShort(dimension);
-      }
-
-      // creates a byte array with this output stream size and the
-      // valid contents of the buffer have been copied into it
-      byte []B = ((ByteArrayOutputStream) out).toByteArray();
+      setShortValues(value.getDimension(), position, data);
+    }
 
-      // copies contents of this byte array into data[]
-      System.arraycopy (B, 0, data, position, B.length);
+    /**
+     * Update values.length short integers, 2 bytes each, in the given
+     * byte array from the specified position.
+     * @param       values          the short integers to be copied into data[]
+     * @param       position        the position of the first value in data[]
+     * @param       data            a byte array
+     */
+    public static void setShortValues(short[] values, int position, byte[] data)
+    {
+      for (int i = 0; i < values.length; i++, position += 2)
+        SHORT.set(data, position, values[i]);
     }
 }
@@ -0,0 +1,161 @@
+/*  File RIDSet.java   */
+
+package global;
+
+import java.util.Arrays;
+
+/** class RIDSet
+ * A set of record ids, for removing duplicate candidates from index scans.
+ * Each RID is packed into one long, (pageNo.pid, slotNo), and kept in an
+ * open-addressing table with linear probing, so adding a RID allocates
+ * nothing unless the table has to grow.  clear() keeps the table, so one
+ * set can be reused from scan to scan.
+ */
+
+public class RIDSet {
+
+  // marks a free table slot; the packed key it stands for is kept aside
+  private static final long FREE = Long.MIN_VALUE;
+  private static final int MIN_CAPACITY = 16;
+  private static final int MAX_CAPACITY = 1 << 30;
+
+  private long[] table;
+  private int mask;
+  private int size;
+  private boolean hasFreeKey;
+
+  /**
+   * default constructor of class
+   */
+  public RIDSet ()
+    {
+      this(MIN_CAPACITY);
+    }
+
+  /**
+   * constructor of class
+   * @param expected number of RIDs expected, to size the table
+   * @exception IllegalArgumentException expected is negative or more than
+   *   the largest table holds at half load, 2^29
+   */
+  public RIDSet (int expected)
+    {
+      if (expected < 0 || expected > MAX_CAPACITY / 2)
+	throw new IllegalArgumentException("RIDSet: cannot size a table for "
+					   + expected + " RIDs");
+      int capacity = MIN_CAPACITY;
+      while (capacity / 2 < expected)
+	capacity <<= 1;
+      table = new long[capacity];
+      Arrays.fill(table, FREE);
+      mask = capacity - 1;
+    }
+
+  /** Pack a RID into the long used as its key.
+   * @param rid the record id
+   * @return the page number in the high and the slot in the low 32 bits
+   */
+  public static long pack(RID rid)
+    {
+      return ((long) rid.pageNo.pid << 32) | (rid.slotNo & 0xffffffffL);
+    }
+
+  /** Add a RID.
+   * @param rid the record id
+   * @return true if it was not in the set yet
+   */
+  public boolean add(RID rid)
+    {
+      return add(pack(rid));
+    }
+
+  /** Add a packed RID.
+   * @param key a key made by pack()
+   * @return true if it was not in the set yet
+   * @exception IllegalStateException the set has grown past 2^29 RIDs,
+   *   the most its largest table holds at half load
+   */
+  public boolean add(long key)
+    {
+      if (key == FREE) {
+	if (hasFreeKey)
+	  return false;
+	hasFreeKey = true;
+	size++;
+	return true;
+      }
+
+      int i = slot(key);
+      while (table[i] != FREE) {
+	if (table[i] == key)
+	  return false;
+	i = (i + 1) & mask;
+      }
+      table[i] = key;
+      if (++size * 2 > table.length)
+	grow();
+      return true;
+    }
+
+  /** Tests whether a RID is in the set.
+   * @param rid the record id
+   * @return true if it was added since the last clear()
+   */
+  public boolean contains(RID rid)
+    {
+      long key = pack(rid);
+      if (key == FREE)
+	return hasFreeKey;
+
+      int i = slot(key);
+      while (table[i] != FREE) {
+	if (table[i] == key)
+	  return true;
+	i = (i + 1) & mask;
+      }
+      return false;
+    }
+
+  /** @return the number of RIDs in the set
+   */
+  public int size()
+    {
+      return size;
+    }
+
+  /** Remove every RID, keeping the table for reuse.
+   */
+  public void clear()
+    {
+      if (size > 0) {
+	Arrays.fill(table, FREE);
+	size = 0;
+	hasFreeKey = false;
+      }
+    }
+
+  private int slot(long key)
+    {
+      long h = key * 0x9E3779B97F4A7C15L;
+      return (int) (h >>> 32) & mask;
+    }
+
+  private void grow()
+    {
+      if (table.length == MAX_CAPACITY)
+	throw new IllegalStateException("RIDSet: more than " + MAX_CAPACITY / 2
+					+ " RIDs");
+      long[] old = table;
+      table = new long[old.length * 2];
+      Arrays.fill(table, FREE);
+      mask = table.length - 1;
+      for (long key : old) {
+	if (key != FREE) {
+	  int i = slot(key);
+	  while (table[i] != FREE)
+	    i = (i + 1) & mask;
+	  table[i] = key;
+	}
+      }
+    }
+}
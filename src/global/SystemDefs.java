@@ -4,6 +4,8 @@ import bufmgr.*;
 import diskmgr.*;
 import catalog.*;
 
+import java.util.concurrent.*;
+
 public class SystemDefs {
   public static BufMgr JavabaseBM;
   public static DB JavabaseDB;
@@ -14,6 +16,31 @@ public class SystemDefs {
   public static boolean MINIBASE_RESTART_FLAG = false;
   public static String MINIBASE_DBNAME;
 
+  /** How the database reads and writes pages, taken from the
+   * minibase.io property (STREAM, CHANNEL or MAPPED) unless set
+   * before the SystemDefs is made.
+   */
+  public static DB.IOMode JavabaseIOMode =
+          DB.IOMode.valueOf(System.getProperty("minibase.io", "STREAM").toUpperCase());
+
+  /** Whether sequential scans read pages ahead (see
+   * BufMgr.setReadAhead), taken from the minibase.readahead property
+   * unless set before the SystemDefs is made; off by default.
+   */
+  public static boolean JavabaseReadAhead = Boolean.getBoolean("minibase.readahead");
+
+  /** Number of threads that probe the layers of an LSH index at once
+   * (see LSHFFileScan.setLayerExecutor), taken from the
+   * minibase.lshthreads property unless set before the SystemDefs is
+   * made; below 2, the default, the layers are probed in turn.
+   */
+  public static int JavabaseLSHThreads = Integer.getInteger("minibase.lshthreads", 0);
+
+  /** The daemon threads of JavabaseLSHThreads, or null without them;
+   * the executor LSH scans start with.
+   */
+  public static ExecutorService JavabaseLSHExecutor;
+
   public SystemDefs() {
   }
 
@@ -52,8 +79,23 @@ public class SystemDefs {
     JavabaseLogName = null;
     JavabaseCatalog = null;
 
+    if (JavabaseLSHExecutor != null) {
+      JavabaseLSHExecutor.shutdown();
+      JavabaseLSHExecutor = null;
+    }
+    if (JavabaseLSHThreads > 1) {
+      JavabaseLSHExecutor = Executors.newFixedThreadPool(JavabaseLSHThreads, new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "lsh-layer-probe");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+
     try {
       JavabaseBM = new BufMgr(bufpoolsize, replacement_policy);
+      JavabaseBM.setReadAhead(JavabaseReadAhead);
       JavabaseDB = new DB();
 /*
 	JavabaseCatalog = new Catalog(); 
@@ -72,7 +114,7 @@ public class SystemDefs {
 
     if ((MINIBASE_RESTART_FLAG) || (num_pgs == 0)) {//open an existing database
       try {
-        JavabaseDB.openDB(dbname);
+        JavabaseDB.openDB(dbname, JavabaseIOMode);
         System.out.println("open an existing database");
       } catch (Exception e) {
         System.err.println("" + e);
@@ -81,7 +123,7 @@ public class SystemDefs {
       }
     } else {
       try {
-        JavabaseDB.openDB(dbname, num_pgs);
+        JavabaseDB.openDB(dbname, num_pgs, JavabaseIOMode);
         JavabaseBM.flushAllPages();
         System.out.println("open a new database");
       } catch (Exception e) {
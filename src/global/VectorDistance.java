@@ -0,0 +1,136 @@
+package global;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**  VectorDistance.java
+ *  The Euclidean distance kernel for 100D vectors, used by the
+ *  operators and the LSH index alike.
+ *
+ *  Distances are squared and summed in integer arithmetic, which is
+ *  exact for short dimensions, so a distance is compared with a
+ *  squared threshold without taking a square root.  Each method takes
+ *  a bound and stops as soon as the partial sum is over it, returning
+ *  that partial sum; a caller that only wants the vectors within the
+ *  bound, such as a range filter or a top-K scan that has K vectors
+ *  already, rejects most others after a fraction of the dimensions.
+ */
+public class VectorDistance {
+
+  /** A bound that is never passed: the whole distance is summed. */
+  public static final long NO_BOUND = Long.MAX_VALUE;
+
+  // dimensions summed between two checks of the bound
+  private static final int BLOCK = 10;
+
+  private static final VarHandle SHORT =
+    MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+
+  /**
+   * Squared distance between two vectors.
+   *
+   * @param a the dimensions of one vector
+   * @param b the dimensions of the other, as many
+   * @return the sum of the squared differences of the dimensions
+   */
+  public static long squared(short[] a, short[] b) {
+    return squared(a, b, NO_BOUND);
+  }
+
+  /**
+   * Squared distance between two vectors, given up once over bound.
+   *
+   * @param a     the dimensions of one vector
+   * @param b     the dimensions of the other, as many
+   * @param bound the largest squared distance of interest
+   * @return the squared distance if it is at most bound, else a
+   *         partial sum over bound
+   */
+  public static long squared(short[] a, short[] b, long bound) {
+    long sum = 0;
+    for (int i = 0; i < a.length; ) {
+      for (int end = Math.min(i + BLOCK, a.length); i < end; i++) {
+        long d = a[i] - b[i];
+        sum += d * d;
+      }
+      if (sum > bound)
+        break;
+    }
+    return sum;
+  }
+
+  /**
+   * Squared distance between a vector stored in a byte array, as
+   * Convert.set100DVectorValue writes it, and a query vector, given up
+   * once over bound.
+   *
+   * @param data     a byte array
+   * @param position the position of the stored vector in data[]
+   * @param query    the dimensions of the query vector
+   * @param bound    the largest squared distance of interest
+   * @return the squared distance if it is at most bound, else a
+   *         partial sum over bound
+   */
+  public static long squared(byte[] data, int position, short[] query, long bound) {
+    long sum = 0;
+    for (int i = 0; i < query.length; ) {
+      for (int end = Math.min(i + BLOCK, query.length); i < end; i++, position += 2) {
+        long d = (short) SHORT.get(data, position) - query[i];
+        sum += d * d;
+      }
+      if (sum > bound)
+        break;
+    }
+    return sum;
+  }
+
+  /**
+   * Squared distance between two vectors stored in byte arrays, given
+   * up once over bound.
+   *
+   * @param data1     a byte array
+   * @param position1 the position of one vector in data1[]
+   * @param data2     a byte array
+   * @param position2 the position of the other vector in data2[]
+   * @param dims      the number of dimensions
+   * @param bound     the largest squared distance of interest
+   * @return the squared distance if it is at most bound, else a
+   *         partial sum over bound
+   */
+  public static long squared(byte[] data1, int position1,
+                             byte[] data2, int position2, int dims, long bound) {
+    long sum = 0;
+    for (int i = 0; i < dims; ) {
+      for (int end = Math.min(i + BLOCK, dims); i < end; i++, position1 += 2, position2 += 2) {
+        long d = (short) SHORT.get(data1, position1) - (short) SHORT.get(data2, position2);
+        sum += d * d;
+      }
+      if (sum > bound)
+        break;
+    }
+    return sum;
+  }
+
+  /**
+   * The bound for the vectors strictly closer than a distance: a
+   * squared distance s is below distance exactly when s is at most
+   * the bound.
+   *
+   * @param distance a Euclidean distance
+   * @return the largest squared distance below it, -1 if there is none
+   */
+  public static long boundBelow(double distance) {
+    if (distance <= 0)
+      return -1;
+    if (distance >= 3e9)
+      return NO_BOUND;           // past any sum of 100 squared shorts
+    long s = (long) Math.ceil(distance * distance) - 1;
+    // correct for rounding of the square
+    while (Math.sqrt(s + 1) < distance)
+      s++;
+    while (s >= 0 && Math.sqrt(s) >= distance)
+      s--;
+    return s;
+  }
+}
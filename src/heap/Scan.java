@@ -53,6 +53,18 @@ public class Scan implements GlobalConst{
 
     /** Status of next user status */
     private boolean nextUserStatus;
+
+    /** Data pages to read ahead for a sequential scan, 0 for none */
+    private int readAhead = 0;
+
+    /** Read-ahead depth for callers that scan the whole file */
+    public static final int SEQUENTIAL_READ_AHEAD = 8;
+
+    /** the last DataPageInfo record of dirpage whose data page was
+     * read ahead, and how many such pages follow the current one
+     */
+    private RID aheadRid = null;
+    private int aheadCount;
     
      
     /** The constructor pins the first directory page in the file
@@ -197,6 +209,23 @@ public class Scan implements GlobalConst{
   }
 
 
+    /** Declare the scan sequential: from now on, each time it moves
+     * to a data page, the buffer manager is asked to read the next
+     * pages in the background (see BufMgr.prefetchPage), so the scan
+     * does not wait for each read in turn.  The buffer manager only
+     * does so when reading ahead is on (see BufMgr.setReadAhead).
+     *
+     * @param pages the number of data pages to keep read ahead,
+     *              0 to stop reading ahead
+     */
+    public void setReadAhead(int pages)
+    {
+      readAhead = pages;
+      aheadRid = null;
+      readAheadPages();
+    }
+
+
     /** Closes the Scan object */
     public void closescan()
     {
@@ -438,6 +467,7 @@ public class Scan implements GlobalConst{
       } else {
 	
 	// pin first data page
+	readAheadPages();
 	try {
 	  datapage  = new HFPage();
 	  pinPage(datapageId, (Page) datapage, false);
@@ -550,6 +580,7 @@ public class Scan implements GlobalConst{
                         
 	dpinfo = new DataPageInfo(rectuple);
 	datapageId.pid = dpinfo.pageId.pid;
+	readAheadPages();
 	
  	try {
 	  datapage = new HFPage();
@@ -619,7 +650,45 @@ public class Scan implements GlobalConst{
 	return true;
   }
 
-    /**
+    /** Keep the data pages of the readAhead DataPageInfo records that
+   * follow datapageRid on dirpage requested from the buffer manager,
+   * and the next directory page once the records run out.  Errors
+   * are ignored, as read-ahead is only a hint.
+   */
+  private void readAheadPages()
+  {
+    if (readAhead <= 0 || dirpage == null || datapageRid == null)
+      return;
+
+    try {
+      if (aheadRid == null || aheadRid.pageNo.pid != dirpageId.pid) {
+        // a new directory page: start after the current record
+        aheadRid = new RID(new PageId(dirpageId.pid), datapageRid.slotNo);
+        aheadCount = 0;
+      } else if (aheadCount > 0) {
+        aheadCount--;           // moved on to one of the pages read ahead
+      }
+
+      while (aheadCount < readAhead) {
+        RID next = dirpage.nextRecord(aheadRid);
+        if (next == null) {
+          if (aheadCount >= 0)
+            SystemDefs.JavabaseBM.prefetchPage(dirpage.getNextPage());
+          aheadCount = -1;      // asked for it once; nothing more here
+          break;
+        }
+        DataPageInfo dpinfo = new DataPageInfo(dirpage.getRecord(next));
+        SystemDefs.JavabaseBM.prefetchPage(dpinfo.pageId);
+        aheadRid = next;
+        aheadCount++;
+      }
+    }
+    catch (Exception e) {
+      aheadRid = null;
+    }
+  }
+
+  /**
    * short cut to access the pinPage function in bufmgr package.
    * @see bufmgr.pinPage
    */
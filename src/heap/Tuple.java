@@ -285,6 +285,78 @@ public class Tuple implements GlobalConst {
 
   }
 
+  /**
+   * Squared Euclidean distance from this 100D vector field to a
+   * query vector.  The field is read straight from the tuple's bytes,
+   * so no Vector100Dtype, array or stream is made for it.
+   *
+   * @param fldNo the field number
+   * @param query the 100 dimensions of the query vector
+   * @return the sum of the squared differences of the dimensions
+   * @throws FieldNumberOutOfBoundException Tuple field number out of bound
+   */
+  public long distanceTo(int fldNo, short[] query)
+          throws FieldNumberOutOfBoundException {
+    return distanceTo(fldNo, query, VectorDistance.NO_BOUND);
+  }
+
+  /**
+   * Squared Euclidean distance from this 100D vector field to a
+   * query vector, given up once over bound (see VectorDistance).
+   *
+   * @param fldNo the field number
+   * @param query the 100 dimensions of the query vector
+   * @param bound the largest squared distance of interest
+   * @return the squared distance if it is at most bound, else a
+   *         partial sum over bound
+   * @throws FieldNumberOutOfBoundException Tuple field number out of bound
+   */
+  public long distanceTo(int fldNo, short[] query, long bound)
+          throws FieldNumberOutOfBoundException {
+    if ((fldNo > 0) && (fldNo <= fldCnt))
+      return VectorDistance.squared(data, fldOffset[fldNo - 1], query, bound);
+    else
+      throw new FieldNumberOutOfBoundException(null, "TUPLE:TUPLE_FLDNO_OUT_OF_BOUND");
+  }
+
+  /**
+   * Squared Euclidean distance from this 100D vector field to one of
+   * another tuple, both read straight from the tuples' bytes.
+   *
+   * @param fldNo      the field number in this tuple
+   * @param other      the other tuple
+   * @param otherFldNo the field number in the other tuple
+   * @return the sum of the squared differences of the dimensions
+   * @throws FieldNumberOutOfBoundException Tuple field number out of bound
+   */
+  public long distanceTo(int fldNo, Tuple other, int otherFldNo)
+          throws FieldNumberOutOfBoundException {
+    return distanceTo(fldNo, other, otherFldNo, VectorDistance.NO_BOUND);
+  }
+
+  /**
+   * Squared Euclidean distance from this 100D vector field to one of
+   * another tuple, given up once over bound (see VectorDistance).
+   *
+   * @param fldNo      the field number in this tuple
+   * @param other      the other tuple
+   * @param otherFldNo the field number in the other tuple
+   * @param bound      the largest squared distance of interest
+   * @return the squared distance if it is at most bound, else a
+   *         partial sum over bound
+   * @throws FieldNumberOutOfBoundException Tuple field number out of bound
+   */
+  public long distanceTo(int fldNo, Tuple other, int otherFldNo, long bound)
+          throws FieldNumberOutOfBoundException {
+    if ((fldNo > 0) && (fldNo <= fldCnt)
+        && (otherFldNo > 0) && (otherFldNo <= other.fldCnt))
+      return VectorDistance.squared(data, fldOffset[fldNo - 1],
+                                    other.data, other.fldOffset[otherFldNo - 1],
+                                    100, bound);
+    else
+      throw new FieldNumberOutOfBoundException(null, "TUPLE:TUPLE_FLDNO_OUT_OF_BOUND");
+  }
+
   /**
    * Set this field to integer value
    *
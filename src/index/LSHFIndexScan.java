@@ -0,0 +1,259 @@
+package index;
+import global.*;
+import btree.*;
+import iterator.*;
+import heap.*;
+import lshfindex.*;
+import java.io.*;
+
+
+/**
+ * LSH Index Scan iterator returns the tuples of a range or nearest-neighbour
+ * query on a 100D vector attribute, using the LSH forest built on it.
+ * Selections and projections are applied as in IndexScan.  A range scan
+ * reads the index and the relation as <code>get_next()</code> is called;
+ * a nearest-neighbour scan has to rank all candidates first, which it does
+ * on the first call, from a candidate budget set by the number of
+ * neighbours (see LSHFFileScan.candidateBudgetFor).  The MULTIPROBE search types find their candidates by
+ * probing the buckets next to the query's own in every layer instead of
+ * widening its prefix, and also collect them all on the first call.
+ */
+public class LSHFIndexScan extends Iterator {
+
+  /** search type: tuples within a distance of the query vector */
+  public static final int RANGE = 0;
+  /** search type: the given number of tuples nearest the query vector */
+  public static final int NN = 1;
+  /** search type: RANGE, from multi-probe candidates */
+  public static final int MULTIPROBE_RANGE = 2;
+  /** search type: NN, from multi-probe candidates */
+  public static final int MULTIPROBE_NN = 3;
+
+  /**
+   * class constructor. set up the index scan.
+   * @param index type of the index (LSHFIndex)
+   * @param relName name of the input relation
+   * @param indName name of the input index
+   * @param types array of types in this relation
+   * @param str_sizes array of string sizes (for attributes that are string)
+   * @param noInFlds number of fields in input tuple
+   * @param noOutFlds number of fields in output tuple
+   * @param outFlds fields to project
+   * @param selects conditions to apply to the qualifying tuples, or null
+   * @param fldNum field number of the indexed vector field
+   * @param query the query vector
+   * @param searchType RANGE, NN, MULTIPROBE_RANGE or MULTIPROBE_NN
+   * @param threshold the distance bound of a range scan, the number of
+   * neighbours of a nearest-neighbour scan
+   * @exception IndexException error from the lower layer
+   * @exception UnknownIndexTypeException index type unknown
+   * @exception IOException from the lower layer
+   */
+  public LSHFIndexScan(
+	   IndexType      index,
+	   final String   relName,
+	   final String   indName,
+	   AttrType       types[],
+	   short          str_sizes[],
+	   int            noInFlds,
+	   int            noOutFlds,
+	   FldSpec        outFlds[],
+	   CondExpr       selects[],
+	   final int      fldNum,
+	   Vector100Dtype query,
+	   int            searchType,
+	   int            threshold
+	   )
+    throws IndexException,
+	   UnknownIndexTypeException,
+	   IOException
+  {
+    if (index.indexType != IndexType.LSHFIndex)
+      throw new UnknownIndexTypeException("LSHFIndexScan needs an LSHFIndex");
+    if (searchType < RANGE || searchType > MULTIPROBE_NN)
+      throw new IndexException(null, "LSHFIndexScan.java: unknown search type");
+
+    _fldNum = fldNum;
+    _noInFlds = noInFlds;
+    _types = types;
+    _s_sizes = str_sizes;
+    _selects = selects;
+    perm_mat = outFlds;
+    _noOutFlds = noOutFlds;
+    _searchType = searchType;
+    _threshold = threshold;
+
+    AttrType[] Jtypes = new AttrType[noOutFlds];
+    Jtuple = new Tuple();
+    try {
+      TupleUtils.setup_op_tuple(Jtuple, Jtypes, types, noInFlds, str_sizes, outFlds, noOutFlds);
+    }
+    catch (TupleUtilsException e) {
+      throw new IndexException(e, "LSHFIndexScan.java: TupleUtilsException caught from TupleUtils.setup_op_tuple()");
+    }
+    catch (InvalidRelation e) {
+      throw new IndexException(e, "LSHFIndexScan.java: InvalidRelation caught from TupleUtils.setup_op_tuple()");
+    }
+
+    try {
+      Heapfile f = new Heapfile(relName);
+      indFile = new LSHFIndexFile(indName);
+      lshScan = new LSHFFileScan(indFile, f, query);
+      if (_searchType == NN)
+	lshScan.setCandidateBudget(lshScan.candidateBudgetFor(_threshold));
+    }
+    catch (Exception e) {
+      closeIndex();
+      throw new IndexException(e, "LSHFIndexScan.java: LSHFIndexFile exceptions caught from LSHFIndexFile constructor");
+    }
+
+    if (_searchType == RANGE) {
+      try {
+        lshScan.openRangeScan(_threshold, _types, _fldNum);
+      }
+      catch (Exception e) {
+        closeIndex();
+        throw new IndexException(e, "LSHFIndexScan.java: LSH range scan not opened");
+      }
+    }
+  }
+
+  /**
+   * Close the index file, if it was opened, when the scan cannot be set
+   * up; the error that stopped it is the one reported.
+   */
+  private void closeIndex()
+  {
+    if (indFile != null) {
+      try {
+	indFile.close();
+      }
+      catch (Exception e) {
+      }
+      indFile = null;
+    }
+  }
+
+  /**
+   * returns the next tuple that is within the query distance (RANGE), or
+   * the next nearest neighbour (NN), and satisfies the selects.
+   * @return the tuple, or null when the scan is done
+   * @exception IndexException error from the lower layer
+   * @exception IOException from the lower layer
+   */
+  public Tuple get_next()
+    throws IndexException,
+	   IOException
+  {
+    Tuple tuple1;
+    while ((tuple1 = nextCandidate()) != null) {
+      try {
+	tuple1.setHdr((short) _noInFlds, _types, _s_sizes);
+      }
+      catch (Exception e) {
+	throw new IndexException(e, "LSHFIndexScan.java: Heapfile error");
+      }
+
+      boolean eval;
+      try {
+	eval = PredEval.Eval(_selects, tuple1, null, _types, null);
+      }
+      catch (Exception e) {
+	throw new IndexException(e, "LSHFIndexScan.java: PredEval error");
+      }
+
+      if (eval) {
+	try {
+	  Projection.Project(tuple1, _types, Jtuple, perm_mat, _noOutFlds);
+	}
+	catch (Exception e) {
+	  throw new IndexException(e, "LSHFIndexScan.java: Projection error");
+	}
+	return Jtuple;
+      }
+    }
+    return null;
+  }
+
+  private Tuple nextCandidate() throws IndexException
+  {
+    if (closeFlag)
+      return null;
+
+    if (_searchType == RANGE) {
+      try {
+	return lshScan.getNextInRange();
+      }
+      catch (Exception e) {
+	throw new IndexException(e, "LSHFIndexScan.java: LSH range scan error");
+      }
+    }
+
+    if (results == null) {
+      try {
+	switch (_searchType) {
+	case NN:
+	  results = lshScan.LSHFFileNNScan(_threshold, _types, _fldNum);
+	  break;
+	case MULTIPROBE_RANGE:
+	  results = lshScan.LSHFFileMultiProbeRangeScan(_threshold, 0, _types, _fldNum);
+	  break;
+	default:
+	  results = lshScan.LSHFFileMultiProbeNNScan(_threshold, lshScan.candidateBudgetFor(_threshold),
+						    _types, _fldNum);
+	}
+      }
+      catch (Exception e) {
+	throw new IndexException(e, "LSHFIndexScan.java: LSH scan error");
+      }
+    }
+    if (resultPos >= results.length)
+      return null;
+    return results[resultPos++];
+  }
+
+  /**
+   * Cleaning up the index scan and closing the index file it opened,
+   * which unpins the index's header pages; does not remove either the
+   * original relation or the index from the database.
+   * @exception IndexException error from the lower layer
+   * @exception IOException from the lower layer
+   */
+  public void close() throws IOException, IndexException
+  {
+    if (!closeFlag) {
+      results = null;
+      closeFlag = true;
+      try {
+	lshScan.closeRangeScan();
+      }
+      catch (Exception e) {
+	closeIndex();
+	throw new IndexException(e, "LSH error in closing index scan.");
+      }
+      try {
+	indFile.close();
+	indFile = null;
+      }
+      catch (Exception e) {
+	throw new IndexException(e, "LSH error in closing index file.");
+      }
+    }
+  }
+
+  public FldSpec[]      perm_mat;
+  private LSHFIndexFile indFile;
+  private LSHFFileScan  lshScan;
+  private AttrType[]    _types;
+  private short[]       _s_sizes;
+  private CondExpr[]    _selects;
+  private int           _noInFlds;
+  private int           _noOutFlds;
+  private Tuple         Jtuple;
+  private int           _fldNum;
+  private int           _searchType;
+  private int           _threshold;
+  private Tuple[]       results;      // all but RANGE, once collected
+  private int           resultPos;
+
+}
@@ -28,6 +28,11 @@ public class CondExpr {
    */ 
   public Operand operand1;
   public Operand operand2;
+
+  /**
+   * for two vector operands, the threshold their distance, truncated
+   * to an int, is compared with by op
+   */
   public int distance;
   
   /**
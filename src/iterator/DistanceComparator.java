@@ -1,5 +1,4 @@
 package iterator;
-import java.io.IOException;
 import java.util.Comparator;
 
 import global.TupleOrder;
@@ -15,25 +14,26 @@ class DistanceComparator implements Comparator<pnode> {
   private int fld_no;
   private TupleOrder order;
   private Vector100Dtype target;
+  private short[] targetDims;
 
   public DistanceComparator(int fld_no, TupleOrder order, Vector100Dtype target) throws SortException {
     this.fld_no = fld_no;
     this.order = order;
     this.target = target;
+    this.targetDims = (target == null) ? null : target.getDimension();
   }
 
   /**
-   * Calculates the distance from a tuple to the target vector.
+   * Calculates the squared distance from a tuple to the target vector,
+   * which orders tuples as the distance does, exactly.
    * @param tuple the tuple to calculate the distance for.
-   * @return the calculated distance as a short value.
+   * @return the squared distance.
    * @throws SortException if there is an error in calculating the distance.
    */
-  public short calculateDistance(Tuple tuple) throws SortException {
+  public long calculateDistance(Tuple tuple) throws SortException {
     try {
-      Vector100Dtype vector100Dtype = tuple.get100DVectFld(fld_no);
-      short dist = TupleUtils.getDistance(vector100Dtype, target);
-      return dist;
-    } catch (IOException | FieldNumberOutOfBoundException ex) {
+      return tuple.distanceTo(fld_no, targetDims);
+    } catch (FieldNumberOutOfBoundException ex) {
       throw new RuntimeException(ex);
     }
 }
@@ -47,8 +47,8 @@ class DistanceComparator implements Comparator<pnode> {
   @Override
   public int compare(pnode node1, pnode node2) {
     try {
-      short distance1 = calculateDistance(node1.tuple);
-      short distance2 = calculateDistance(node2.tuple);
+      long distance1 = calculateDistance(node1.tuple);
+      long distance2 = calculateDistance(node2.tuple);
 
       if (distance1 < distance2) {
         return -1; // node1 is "smaller" (closer to target)
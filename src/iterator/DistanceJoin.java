@@ -3,28 +3,7 @@ package iterator;
 import btree.*;
 import global.*;
 import heap.*;
-import lshfindex.*;
-
-/**
- * A little Iterator that returns the contents of a Tuple[].
- */
-class TupleArrayIterator extends Iterator {
-  private Tuple[] _tuples;
-  private int      _pos;
-  public TupleArrayIterator(AttrType[] types, short[] strSizes, Tuple[] tuples)
-      throws Exception {
-    _tuples = tuples;
-    _pos = 0;
-    for (Tuple t : _tuples) {
-      t.setHdr((short)types.length, types, strSizes);
-    }
-  }
-  public Tuple get_next() { 
-    if (_pos >= _tuples.length) return null;
-    return _tuples[_pos++];
-  }
-  public void close() {}
-}
+import index.LSHFIndexScan;
 
 /**
  * Implements the two “distance‐join” queries DJOIN₁ (range‐join) and DJOIN₂ (kNN‐join).
@@ -33,6 +12,29 @@ public class DistanceJoin {
 
   private static final boolean DEBUG = true;
 
+  /**
+   * An LSH index scan over the vector attribute QA1 of rel1, returning
+   * whole tuples.  An NN scan reads the candidate budget of its number of
+   * neighbours (see LSHFFileScan.candidateBudgetFor).
+   */
+  private static Iterator lshScan(
+      String rel1, AttrType[] type1, short[] ss1,
+      int QA1, Vector100Dtype T1, int searchType, int threshold
+  ) throws Exception {
+    FldSpec[] allFlds = new FldSpec[type1.length];
+    for (int i = 0; i < type1.length; i++) {
+      allFlds[i] = new FldSpec(new RelSpec(RelSpec.outer), i + 1);
+    }
+    return new LSHFIndexScan(
+      new IndexType(IndexType.LSHFIndex),
+      rel1, rel1 + "_" + QA1,
+      type1, ss1, type1.length,
+      type1.length, allFlds,
+      null, QA1, T1,
+      searchType, threshold
+    );
+  }
+
   /**
    * DJOIN1: join Range‐query(R1) with R2 by distance ≤ D2 on (QA1,QA2).
    */
@@ -45,20 +47,9 @@ public class DistanceJoin {
       int amt_of_mem
   ) throws Exception {
 
-    // 1) LSH‐range‐scan on R1
-    Heapfile hf1 = new Heapfile(rel1);
-    LSHFIndexFile lshIndex1 = new LSHFIndexFile(rel1 + "_" + QA1);
-    LSHFFileScan scan1 = new LSHFFileScan(lshIndex1, hf1, T1);
-    String bit = lshIndex1.computeHash(T1, /*layer*/0, /*prefix*/lshIndex1.getH());
-    KeyClass startKey = new Vector100DKey(bit);
-    Tuple[] outerTuples = scan1.LSHFFileRangeScan(startKey, D2, type1, QA1);
-
-    if (DEBUG) {
-      System.out.println("[DistanceJoin] range scan has been done.");
-    }
-
-    // 2) wrap as Iterator
-    TupleArrayIterator outerIter = new TupleArrayIterator(type1, ss1, outerTuples);
+    // 1) LSH‐range‐scan on R1, streamed into the join
+    Iterator outerIter = lshScan(rel1, type1, ss1, QA1, T1,
+                                 LSHFIndexScan.RANGE, D2);
 
     if (DEBUG) {
       System.out.println("[DistanceJoin] outerIter has been set.");
@@ -125,15 +116,8 @@ public class DistanceJoin {
   ) throws Exception {
 
     // 1) LSH‐kNN‐scan on R1
-    Heapfile hf1 = new Heapfile(rel1);
-    LSHFIndexFile lshIndex1 = new LSHFIndexFile(rel1 + "_" + QA1);
-    LSHFFileScan scan1 = new LSHFFileScan(lshIndex1, hf1, T1);
-    String bit = lshIndex1.computeHash(T1, /*layer*/0, /*prefix*/lshIndex1.getH());
-    KeyClass startKey = new Vector100DKey(bit);
-    Tuple[] outerTuples = scan1.LSHFFileNNScan(startKey, K1, type1, QA1);
-
-    // 2) wrap as Iterator
-    TupleArrayIterator outerIter = new TupleArrayIterator(type1, ss1, outerTuples);
+    Iterator outerIter = lshScan(rel1, type1, ss1, QA1, T1,
+                                 LSHFIndexScan.NN, K1);
 
     // 3) build join condition
     CondExpr[] rightFilter   = null;
@@ -181,15 +165,8 @@ public class DistanceJoin {
   ) throws Exception {
 
     // 1) LSH‐kNN‐scan on R1
-    Heapfile hf1 = new Heapfile(rel1);
-    LSHFIndexFile lshIndex1 = new LSHFIndexFile(rel1 + "_" + QA1);
-    LSHFFileScan scan1 = new LSHFFileScan(lshIndex1, hf1, T1);
-    String bit = lshIndex1.computeHash(T1, /*layer*/0, /*prefix*/lshIndex1.getH());
-    KeyClass startKey = new Vector100DKey(bit);
-    Tuple[] outerTuples = scan1.LSHFFileNNScan(startKey, K1, type1, QA1);
-
-    // 2) wrap as Iterator
-    TupleArrayIterator outerIter = new TupleArrayIterator(type1, ss1, outerTuples);
+    Iterator outerIter = lshScan(rel1, type1, ss1, QA1, T1,
+                                 LSHFIndexScan.NN, K1);
 
     // 3) build join condition
     CondExpr[] outFilter   = null;
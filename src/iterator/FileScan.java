@@ -87,6 +87,7 @@ public class FileScan extends Iterator {
 
     try {
       scan = f.openScan();
+      scan.setReadAhead(Scan.SEQUENTIAL_READ_AHEAD);
     } catch (Exception e) {
       throw new FileScanException(e, "openScan() failed");
     }
@@ -153,6 +154,7 @@ public class FileScan extends Iterator {
 
     try {
       scan = f.openScan();
+      scan.setReadAhead(Scan.SEQUENTIAL_READ_AHEAD);
     } catch (Exception e) {
       throw new FileScanException(e, "openScan() failed");
     }
@@ -197,10 +197,10 @@ public class INLJoins extends Iterator {
             inner.setHdr((short)_len2, _in2, _s2);
             if (_useVectorIndex) {
               // filter by true distance
-              Vector100Dtype ov = _outerTuple.get100DVectFld(_outerJoinFld);
-              Vector100Dtype iv = inner.get100DVectFld(_innerJoinFld);
-              double dist = TupleUtils.getDistance(ov, iv);
-              if (dist <= _distanceThreshold) {
+              // the distance, truncated, is at most the threshold when
+              // it is below the threshold plus one
+              long bound = VectorDistance.boundBelow(_distanceThreshold + 1.0);
+              if (_outerTuple.distanceTo(_outerJoinFld, inner, _innerJoinFld, bound) <= bound) {
                 Projection.Join(
                   _outerTuple, _in1,
                   inner, _in2,
@@ -233,8 +233,7 @@ public class INLJoins extends Iterator {
         // open new BTree scan
         if (_useVectorIndex) {
           Vector100Dtype v = _outerTuple.get100DVectFld(_outerJoinFld);
-          Vector100DKey key = new Vector100DKey(_lshIndex.computeHash(v, _lshIndex.getL(), _lshIndex.getH()));
-          IntegerKey convertedKey = LSHF.convertKey(key);
+          KeyClass convertedKey = _lshIndex.computeKey(v, 0);
 
           _btScan = (BTFileScan)_lshTree.new_scan(convertedKey, convertedKey);
         } else {
@@ -0,0 +1,231 @@
+package iterator;
+
+import java.io.*;
+import java.util.NoSuchElementException;
+
+import global.*;
+import heap.*;
+import btree.*;
+
+/**
+ * Sorts (key, rid) index entries by key, for BTreeFile.bulkLoad.
+ * Entries are added with <code>add()</code> and spilled to a temporary
+ * heap file; the first call to <code>hasNext()</code> or <code>next()</code>
+ * sorts them with the Sort iterator, after which they come back in
+ * ascending key order as leaf KeyDataEntry objects.  <code>close()</code>
+ * frees the sort and deletes the temporary file.
+ *
+ * Integer and string keys are sorted as they are.  Long keys are sorted
+ * as fixed-width hex strings whose string order is the signed key order,
+ * since Sort cannot compare 64-bit fields.
+ */
+public class KeyDataSort implements java.util.Iterator<KeyDataEntry> {
+  // Minimum number of buffer pages given to the sort.
+  private static final int MIN_SORT_PAGES = 16;
+  // Width of the hex form of a long key.
+  private static final int LONG_KEY_CHARS = 16;
+
+  private final String runName;
+  private final int keyType;
+  private final int keyLen;
+  private final AttrType[] types;
+  private final short[] strSizes;
+  private Heapfile run;
+  private Tuple entry;
+  private Sort sort;
+  private Tuple next;
+  private boolean closed;
+  private int count;
+
+  /**
+   * constructor
+   *
+   * @param run_name  name of the temporary heap file holding the entries
+   * @param key_type  AttrType of the keys: attrInteger, attrString or attrLong
+   * @param key_size  maximum length of a string key, ignored otherwise
+   * @throws IOException    from lower layers
+   * @throws SortException  the temporary file could not be created
+   */
+  public KeyDataSort(String run_name, int key_type, int key_size)
+    throws IOException, SortException {
+    runName = run_name;
+    keyType = key_type;
+
+    short[] sizes;
+    switch (keyType) {
+    case AttrType.attrInteger:
+      keyLen = 4;
+      sizes = new short[0];
+      break;
+    case AttrType.attrString:
+      keyLen = key_size;
+      sizes = new short[]{(short) key_size};
+      break;
+    case AttrType.attrLong:
+      keyLen = LONG_KEY_CHARS;
+      sizes = new short[]{(short) LONG_KEY_CHARS};
+      break;
+    default:
+      throw new SortException("KeyDataSort.java: unsupported key type");
+    }
+    strSizes = sizes;
+
+    types = new AttrType[]{
+      new AttrType(keyType == AttrType.attrInteger ? AttrType.attrInteger
+                                                   : AttrType.attrString),
+      new AttrType(AttrType.attrInteger),
+      new AttrType(AttrType.attrInteger)
+    };
+
+    try {
+      run = new Heapfile(runName);
+      entry = new Tuple();
+      entry.setHdr((short) 3, types, strSizes);
+      entry = new Tuple(entry.size());
+      entry.setHdr((short) 3, types, strSizes);
+    } catch (Exception e) {
+      throw new SortException(e, "KeyDataSort.java: cannot create run file");
+    }
+  }
+
+  /**
+   * Add one entry; only allowed before the entries are read back.
+   *
+   * @param key the index key, of the key type given to the constructor
+   * @param rid the record id
+   * @throws IOException    from lower layers
+   * @throws SortException  the entry could not be written
+   */
+  public void add(KeyClass key, RID rid) throws IOException, SortException {
+    if (sort != null || closed)
+      throw new SortException("KeyDataSort.java: entries already sorted");
+
+    try {
+      if (key instanceof IntegerKey && keyType == AttrType.attrInteger)
+        entry.setIntFld(1, ((IntegerKey) key).getKey().intValue());
+      else if (key instanceof StringKey && keyType == AttrType.attrString)
+        entry.setStrFld(1, ((StringKey) key).getKey());
+      else if (key instanceof LongKey && keyType == AttrType.attrLong)
+        entry.setStrFld(1, toSortableHex(((LongKey) key).getKey().longValue()));
+      else
+        throw new SortException("KeyDataSort.java: key type mismatch");
+
+      entry.setIntFld(2, rid.pageNo.pid);
+      entry.setIntFld(3, rid.slotNo);
+      run.insertRecord(entry.getTupleByteArray());
+      count++;
+    } catch (SortException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new SortException(e, "KeyDataSort.java: cannot write entry");
+    }
+  }
+
+  /**
+   * Sort with a third of the unpinned buffers: Sort merges in a single
+   * pass, and its merge pins one more page per run.  Sort takes its
+   * pages from the database, so no more are taken than the entries
+   * fill, which sorts them in one run.
+   */
+  private void startSort() {
+    if (sort != null)
+      return;
+    if (closed)
+      throw new IllegalStateException("KeyDataSort.java: closed");
+
+    int perPage = (GlobalConst.MAX_SPACE - HFPage.DPFIXED) / (entry.size() + HFPage.SIZE_OF_SLOT);
+    int runPages = count / perPage + 1;
+    int nPages = Math.max(MIN_SORT_PAGES,
+                          Math.min(runPages,
+                                   SystemDefs.JavabaseBM.getNumUnpinnedBuffers() / 3));
+    FldSpec[] proj = {
+      new FldSpec(new RelSpec(RelSpec.outer), 1),
+      new FldSpec(new RelSpec(RelSpec.outer), 2),
+      new FldSpec(new RelSpec(RelSpec.outer), 3)
+    };
+    try {
+      FileScan scan = new FileScan(runName, types, strSizes, (short) 3,
+                                   types, 3, proj, null);
+      sort = new Sort(types, (short) 3, strSizes, scan, 1,
+                      new TupleOrder(TupleOrder.Ascending), keyLen, nPages);
+    } catch (Exception e) {
+      throw new IllegalStateException("KeyDataSort.java: cannot start sort", e);
+    }
+    advance();
+  }
+
+  private void advance() {
+    try {
+      next = sort.get_next();
+    } catch (Exception e) {
+      throw new IllegalStateException("KeyDataSort.java: sort failed", e);
+    }
+  }
+
+  /**
+   * @return true if more entries remain.
+   * @throws IllegalStateException wrapping the error of a failed sort
+   */
+  public boolean hasNext() {
+    startSort();
+    return next != null;
+  }
+
+  /**
+   * @return the next entry in ascending key order.
+   * @throws IllegalStateException wrapping the error of a failed sort
+   */
+  public KeyDataEntry next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+
+    KeyDataEntry e;
+    try {
+      KeyClass key;
+      if (keyType == AttrType.attrInteger)
+        key = new IntegerKey(next.getIntFld(1));
+      else if (keyType == AttrType.attrString)
+        key = new StringKey(next.getStrFld(1));
+      else
+        key = new LongKey(fromSortableHex(next.getStrFld(1)));
+      e = new KeyDataEntry(key, new RID(new PageId(next.getIntFld(2)),
+                                        next.getIntFld(3)));
+    } catch (Exception ex) {
+      throw new IllegalStateException("KeyDataSort.java: bad sorted entry", ex);
+    }
+    advance();
+    return e;
+  }
+
+  /**
+   * Release the sort and delete the temporary file.
+   *
+   * @throws IOException    from lower layers
+   * @throws SortException  cleaning up failed
+   */
+  public void close() throws IOException, SortException {
+    if (closed)
+      return;
+    closed = true;
+    if (sort != null)
+      sort.close();
+    try {
+      run.deleteFile();
+    } catch (Exception e) {
+      throw new SortException(e, "KeyDataSort.java: cannot delete run file");
+    }
+  }
+
+  /* Hex form of a long whose string order is the signed order. */
+  private static String toSortableHex(long key) {
+    String hex = Long.toHexString(key ^ Long.MIN_VALUE);
+    StringBuilder sb = new StringBuilder(LONG_KEY_CHARS);
+    for (int i = hex.length(); i < LONG_KEY_CHARS; i++)
+      sb.append('0');
+    return sb.append(hex).toString();
+  }
+
+  private static long fromSortableHex(String hex) {
+    return Long.parseUnsignedLong(hex, 16) ^ Long.MIN_VALUE;
+  }
+}
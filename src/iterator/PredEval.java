@@ -4,9 +4,6 @@ import heap.*;
 import global.*;
 
 import java.io.*;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Set;
 
 public class PredEval {
   /**
@@ -132,25 +129,17 @@ public class PredEval {
         }
 
 
-        // Got the arguments, now perform a comparison.
+        // Got the arguments, now perform a comparison: for vectors,
+        // of the distance between them with temp_ptr.distance.
         try {
-          comp_res = TupleUtils.CompareTupleWithTuple(comparison_type, tuple1, fld1, tuple2, fld2);
+          if (comparison_type.attrType == AttrType.attrVector100D)
+            comp_res = TupleUtils.CompareDistanceWithThreshold(tuple1, fld1, tuple2, fld2, temp_ptr.distance);
+          else
+            comp_res = TupleUtils.CompareTupleWithTuple(comparison_type, tuple1, fld1, tuple2, fld2);
         } catch (TupleUtilsException e) {
           throw new PredEvalException(e, "TupleUtilsException is caught by PredEval.java");
         }
         op_res = false;
-        // if comp_res is distance, comp_res must >= 100
-        // else comp_res = {-1, 0, 1}
-				Set<Integer> non_vector100D_res = Set.of(-1, 0, 1);
-				if (!non_vector100D_res.contains(comp_res)) {
-          comp_res -= 100;  // comp_res returns a distance -> decode comp_res, reset it to {-1, 0, 1}
-          if (comp_res > temp_ptr.distance)
-						comp_res = 1;
-					else if (comp_res < temp_ptr.distance)
-						comp_res = -1;
-					else
-						comp_res = 0;
-				}
 
         switch (temp_ptr.op.attrOperator) {
           case AttrOperator.aopEQ:
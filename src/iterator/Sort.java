@@ -223,8 +223,8 @@ public class Sort extends Iterator implements GlobalConst {
       }
       // comp_res should be comparison between dist of curr-to-target and dist of last-to-target
       if (sortFldType.attrType == AttrType.attrVector100D) {
-        int dist_curr = distanceComp.calculateDistance(cur_node.tuple);
-        int dist_last = distanceComp.calculateDistance(lastElem);
+        long dist_curr = distanceComp.calculateDistance(cur_node.tuple);
+        long dist_last = distanceComp.calculateDistance(lastElem);
         if (dist_curr < dist_last)
           comp_res = -1;
         else if (dist_curr > dist_last)
@@ -773,7 +773,11 @@ public class Sort extends Iterator implements GlobalConst {
     max_elems_in_heap = 200;
     sortFldLen = sort_fld_len;
 
-    Q = new pnodeSplayPQ(sort_fld, in[sort_fld - 1], order);
+    // the runs of a sort by distance are merged by distance too
+    Q = in[sort_fld - 1].attrType == AttrType.attrVector100D ?
+            new pnodeSplayPQ(sort_fld, in[sort_fld - 1], order,
+                             new DistanceComparator(sort_fld, sort_order, Target)) :
+            new pnodeSplayPQ(sort_fld, in[sort_fld - 1], order);
 
     op_buf = new Tuple(tuple_size);   // need Tuple.java
     try {
@@ -864,6 +868,11 @@ public class Sort extends Iterator implements GlobalConst {
         for (int i = 0; i < _n_pages; i++) bufs_pids[i].pid = INVALID_PAGE;
       }
 
+      // the scans of the runs pin pages of the temp files
+      if (i_buf != null) {
+        for (int i = 0; i < i_buf.length; i++) i_buf[i].close();
+      }
+
       for (int i = 0; i < temp_files.length; i++) {
         if (temp_files[i] != null) {
           try {
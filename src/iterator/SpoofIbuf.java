@@ -51,6 +51,7 @@ public class SpoofIbuf implements GlobalConst  {
       
       try {
 	hf_scan = _fd.openScan();
+	hf_scan.setReadAhead(RUN_READ_AHEAD);
       }
       catch(Exception e){
 	throw e;
@@ -71,7 +72,7 @@ public class SpoofIbuf implements GlobalConst  {
     {
       if (tot_t_proc == n_tuples) done = true;
       
-      if (done == true){buf = null; return null;}
+      if (done == true){close(); buf = null; return null;}
       if (t_proc == t_in_buf)
 	{
 	  try {
@@ -101,6 +102,19 @@ public class SpoofIbuf implements GlobalConst  {
     }
   
    
+  /**
+   *Close the scan of the run, unpinning its pages.  The scan does not
+   *reach the end of the run by itself when the run ends on a page
+   *boundary, nor when the merge stops early.
+   */
+  public  void close()
+    {
+      if (hf_scan != null) {
+	hf_scan.closescan();
+	hf_scan = null;
+      }
+    }
+  
   /**
    *@return if the buffer is empty,return true. otherwise false
    */
@@ -151,6 +165,11 @@ public class SpoofIbuf implements GlobalConst  {
   
   private  Heapfile _fd;
   private  Scan hf_scan;
+
+  // A merge reads from many runs at once, so each keeps only a couple
+  // of pages read ahead.
+  private static final int RUN_READ_AHEAD = 2;
+
   private  int    _n_pages;
   private  int    t_size;
   
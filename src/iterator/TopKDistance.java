@@ -0,0 +1,178 @@
+package iterator;
+
+import java.io.*;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+import global.*;
+import heap.*;
+
+/**
+ * The TopKDistance class returns the k tuples of its input whose 100D
+ * vector field is nearest to a target vector, nearest first.  It is
+ * the nearest neighbour query of a relation without an index, and
+ * returns the tuples of a Sort by distance stopped after k, though
+ * tuples at the same distance may come in another order.
+ * <p>
+ * The first <code>get_next()</code> reads the input once and keeps the
+ * k nearest tuples seen so far in a heap, farthest on top; once the
+ * heap is full the distance of a tuple is summed only as long as it
+ * may still beat the farthest kept, so most tuples are rejected after
+ * a few dimensions and never copied.  Nothing is written to disk and
+ * no buffer pages are taken, whatever the size of the input.
+ * <p>
+ * A k of 0 asks for every tuple, as it does of Sort; those are sorted
+ * by distance with an external Sort in n_pages of buffer.  A negative
+ * k returns nothing.
+ */
+public class TopKDistance extends Iterator {
+
+  private Iterator _am;
+  private int _dist_fld;
+  private short[] targetDims;
+  private int k_val;
+  private boolean first_time;
+  private Sort sorted;
+
+  private PriorityQueue<Candidate> best;
+  private Tuple[] ranked;
+  private int next;
+
+  /**
+   * Class constructor, take information about the tuples, and set up
+   * the query
+   *
+   * @param in        array containing attribute types of the relation
+   * @param len_in    number of columns in the relation
+   * @param str_sizes array of sizes of string attributes
+   * @param am        an iterator for accessing the tuples
+   * @param dist_fld  the field number of the 100D vector field
+   * @param Target    target vector that tuples in db are comparing to
+   * @param k         number of tuples to return; all if 0, none if negative
+   * @param n_pages   memory (in pages) for sorting all tuples when k is 0
+   * @throws IOException   from lower layers
+   * @throws SortException dist_fld is not a 100D vector field, or the
+   *                       Sort for k of 0 failed
+   */
+  public TopKDistance(AttrType[] in,
+                      short len_in,
+                      short[] str_sizes,
+                      Iterator am,
+                      int dist_fld,
+                      Vector100Dtype Target,
+                      int k,
+                      int n_pages
+  ) throws IOException, SortException {
+    if (dist_fld < 1 || dist_fld > len_in
+        || in[dist_fld - 1].attrType != AttrType.attrVector100D)
+      throw new SortException("TopKDistance.java: field " + dist_fld
+                              + " is not a 100D vector field");
+
+    _am = am;
+    _dist_fld = dist_fld;
+    targetDims = Target.getDimension();
+    k_val = k;
+    first_time = true;
+
+    if (k == 0)
+      sorted = new Sort(in, len_in, str_sizes, am, dist_fld,
+                        new TupleOrder(TupleOrder.Ascending), 32, n_pages, Target, 0);
+  }
+
+  /**
+   * Returns the next nearest tuple.
+   *
+   * @return the next tuple, null if all k tuples have been returned
+   * @throws IOException    from lower layers
+   * @throws SortException  something went wrong in the lower layer.
+   * @throws Exception      other exceptions
+   */
+  public Tuple get_next()
+          throws IOException,
+          SortException,
+          Exception {
+    if (sorted != null)
+      return sorted.get_next();
+
+    if (first_time) {
+      first_time = false;
+      select();
+    }
+
+    if (next == ranked.length)
+      return null;
+    return ranked[next++];
+  }
+
+  /**
+   * Read the whole input and rank the k nearest tuples.
+   */
+  private void select() throws Exception {
+    ranked = new Tuple[0];
+    if (k_val < 0)
+      return;
+
+    best = new PriorityQueue<Candidate>(Math.min(k_val, 1024), new Comparator<Candidate>() {
+      public int compare(Candidate c1, Candidate c2) {
+        return Long.compare(c2.dist2, c1.dist2);
+      }
+    });
+
+    Tuple t;
+    while ((t = _am.get_next()) != null) {
+      // once k tuples are kept, only strictly nearer ones replace one
+      long bound = best.size() < k_val ? VectorDistance.NO_BOUND : best.peek().dist2 - 1;
+      long dist2;
+      try {
+        dist2 = t.distanceTo(_dist_fld, targetDims, bound);
+      } catch (FieldNumberOutOfBoundException e) {
+        throw new SortException(e, "TopKDistance.java: distanceTo() failed");
+      }
+      if (dist2 > bound)
+        continue;
+      if (best.size() == k_val)
+        best.poll();
+      // the input may hand back the same tuple each time
+      best.add(new Candidate(new Tuple(t), dist2));
+    }
+
+    ranked = new Tuple[best.size()];
+    for (int i = ranked.length - 1; i >= 0; i--)
+      ranked[i] = best.poll().tuple;
+    best = null;
+  }
+
+  /**
+   * Cleaning up, closing the input iterator, and the Sort if k is 0.
+   *
+   * @throws IOException   from lower layers
+   * @throws SortException something went wrong in the lower layer.
+   */
+  public void close() throws SortException, IOException {
+    if (!closeFlag) {
+
+      try {
+        if (sorted != null)
+          sorted.close();
+        else
+          _am.close();
+      } catch (Exception e) {
+        throw new SortException(e, "TopKDistance.java: error in closing iterator.");
+      }
+
+      best = null;
+      ranked = null;
+      closeFlag = true;
+    }
+  }
+
+  private static class Candidate {
+    Tuple tuple;
+    long dist2;
+    Candidate(Tuple tuple, long dist2) {
+      this.tuple = tuple;
+      this.dist2 = dist2;
+    }
+  }
+
+}
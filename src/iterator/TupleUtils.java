@@ -42,7 +42,6 @@ public class TupleUtils {
     int t1_i, t2_i;
     float t1_r, t2_r;
     String t1_s, t2_s;
-    Vector100Dtype t1_v, t2_v;
 
     switch (fldType.attrType) {
       case AttrType.attrInteger:                // Compare two integers.
@@ -80,17 +79,21 @@ public class TupleUtils {
         if (t1_s.compareTo(t2_s) < 0) return -1;
         return 0;
 
-      // calculate distance between two tuples
+      // Compare two vectors dimension by dimension; a distance is
+      // compared with CompareDistanceWithThreshold
       case AttrType.attrVector100D:
+        short[] t1_d, t2_d;
         try {
-          t1_v = t1.get100DVectFld(t1_fld_no);
-          t2_v = t2.get100DVectFld(t2_fld_no);
+          t1_d = t1.get100DVectFld(t1_fld_no).getDimension();
+          t2_d = t2.get100DVectFld(t2_fld_no).getDimension();
         } catch (FieldNumberOutOfBoundException e) {
           throw new TupleUtilsException(e, "FieldNumberOutOfBoundException is caught by TupleUtils.java");
         }
-
-        int encoded_dist = getDistance(t1_v, t2_v) + 100; // distance could be 0 or 1, so we add 100 to avoid misinterpretation of final comp result
-        return encoded_dist;
+        for (int i = 0; i < t1_d.length; i++) {
+          if (t1_d[i] < t2_d[i]) return -1;
+          if (t1_d[i] > t2_d[i]) return 1;
+        }
+        return 0;
 
       default:
 
@@ -99,20 +102,85 @@ public class TupleUtils {
     }
   }
 
+  /**
+   * This function compares the distance between the 100D vector
+   * fields of two tuples with a threshold, the distance truncated to
+   * an int as getDistance gives it.  It is worked out on the squared
+   * distance, which is given up once it is known to be above.
+   *
+   * @param t1        the first tuple
+   * @param t1_fld_no the vector field number in t1
+   * @param t2        the second tuple
+   * @param t2_fld_no the vector field number in t2
+   * @param distance  the threshold
+   * @return 0        if the distance is the threshold,
+   * 1        if it is greater,
+   * -1        if it is smaller
+   * @throws TupleUtilsException exception from this class
+   */
+  public static int CompareDistanceWithThreshold(Tuple t1, int t1_fld_no,
+                                                 Tuple t2, int t2_fld_no,
+                                                 int distance)
+          throws TupleUtilsException {
+    if (distance < 0)
+      return 1;
+    // the truncated distance is below the threshold when the squared
+    // distance is below its square, and above from the next square on
+    long below = (long) distance * distance;
+    long above = ((long) distance + 1) * ((long) distance + 1);
+    long dist2;
+    try {
+      dist2 = t1.distanceTo(t1_fld_no, t2, t2_fld_no, above - 1);
+    } catch (FieldNumberOutOfBoundException e) {
+      throw new TupleUtilsException(e, "FieldNumberOutOfBoundException is caught by TupleUtils.java");
+    }
+    if (dist2 >= above) return 1;
+    if (dist2 < below) return -1;
+    return 0;
+  }
+
   /**
    * This function calculates the distance between two 100D vectors
    *
    * @param t1_v the first vector
    * @param t2_v the second vector
-   * @return the distance between the two vectors as a short value
+   * @return the distance between the two vectors, truncated to an int
    */
-  public static short getDistance(Vector100Dtype t1_v, Vector100Dtype t2_v) {
-    double distance_t1_t2 = 0;
-    for (int i = 0; i < 100; i++) {
-      distance_t1_t2 += Math.pow(t1_v.getDimension()[i] - t2_v.getDimension()[i], 2);
-    }
-    distance_t1_t2 = Math.sqrt(distance_t1_t2);
-    return (short) distance_t1_t2;
+  public static int getDistance(Vector100Dtype t1_v, Vector100Dtype t2_v) {
+    return (int) Math.sqrt(VectorDistance.squared(t1_v.getDimension(), t2_v.getDimension()));
+  }
+
+  /**
+   * This function calculates the distance between a 100D vector field
+   * and a query vector, as getDistance does, without making a
+   * Vector100Dtype for the field (see Tuple.distanceTo)
+   *
+   * @param t      the tuple
+   * @param fld_no the vector field number in t
+   * @param query  the dimensions of the query vector
+   * @return the distance between the two vectors, truncated to an int
+   * @throws FieldNumberOutOfBoundException Tuple field number out of bound
+   */
+  public static int getDistance(Tuple t, int fld_no, short[] query)
+          throws FieldNumberOutOfBoundException {
+    return (int) Math.sqrt(t.distanceTo(fld_no, query));
+  }
+
+  /**
+   * This function calculates the distance between the 100D vector
+   * fields of two tuples, as getDistance does, without making a
+   * Vector100Dtype for either
+   *
+   * @param t1        the first tuple
+   * @param t1_fld_no the vector field number in t1
+   * @param t2        the second tuple
+   * @param t2_fld_no the vector field number in t2
+   * @return the distance between the two vectors, truncated to an int
+   * @throws FieldNumberOutOfBoundException Tuple field number out of bound
+   */
+  public static int getDistance(Tuple t1, int t1_fld_no, Tuple t2, int t2_fld_no)
+          throws FieldNumberOutOfBoundException {
+    return (int) Math.sqrt(t1.distanceTo(t1_fld_no, t2, t2_fld_no));
   }
 
 
@@ -8,16 +8,7 @@ import bufmgr.*;
 import heap.*;
 import java.io.*;
 import java.util.*;
-
-// Helper class to pair a tuple with its computed Euclidean distance.
-// class TupleDistance {
-//     Tuple tuple;
-//     double distance;
-//     public TupleDistance(Tuple tuple, double distance) {
-//         this.tuple = tuple;
-//         this.distance = distance;
-//     }
-// }
+import java.util.concurrent.*;
 
 /**
  * LSHFFileScan provides a scan interface for an LSH forest.
@@ -32,6 +23,8 @@ public class LSHFFileScan /*extends IndexFileScan*/ implements GlobalConst {
     private LSHFIndexFile lshfIndexFile;
     // The query vector (target) used by our range and NN scans.
     private Vector100Dtype query;
+    // Its dimensions, compared with each candidate's field in place.
+    private short[] queryDims;
     // Total number of layers and hash functions per layer.
     private int L;
     private int h;
@@ -39,276 +32,758 @@ public class LSHFFileScan /*extends IndexFileScan*/ implements GlobalConst {
     // For Range scan: a list to store candidates meeting the distance criterion.
 
     private Heapfile dataHeapFile;
+    // The query's full signature in each layer's own hash family.
+    private long[] signatures;
+
+    // State of the streaming range scan (openRangeScan / getNextInRange).
+    private int rangeThreshold;
+    private AttrType[] rangeType;
+    private int rangeField;
+    private Ascent rangeAscent;      // null until the first level is read
+    private List<RID> rangeRids = new ArrayList<>(); // in page order
+    private int rangePos;            // next candidate of rangeRids to evaluate
+    private ArrayDeque<Tuple> rangeHits = new ArrayDeque<>(); // of the last page
+    private int rangeMatched;   // tuples returned so far
+    private RIDSet rangeSeen = new RIDSet();
+    private boolean rangeDone = true;
+
+    // Distinct candidates the range and NN scans stop at, 0 for no limit;
+    // see setCandidateBudget.
+    private int candidateBudget;
+
+    // Runs the per-layer index probes concurrently; null to probe in turn.
+    private ExecutorService layerExecutor;
+
+    /** Candidates per layer for each neighbour asked for; see candidateBudgetFor. */
+    public static final int CANDIDATES_PER_NEIGHBOUR = 4;
+
+    // Upper bound on the neighbouring buckets a multi-probe scan reads per layer.
+    private static final int MAX_PROBES_PER_LAYER = 1024;
+
+    // Order of candidate evaluation: by data page, then slot.
+    private static final Comparator<RID> PAGE_ORDER = new Comparator<RID>() {
+        public int compare(RID r1, RID r2) {
+            if (r1.pageNo.pid != r2.pageNo.pid) {
+                return Integer.compare(r1.pageNo.pid, r2.pageNo.pid);
+            }
+            return Integer.compare(r1.slotNo, r2.slotNo);
+        }
+    };
+
+    // Work done on one layer by forEachLayer.
+    private interface LayerTask {
+        int run(int layer) throws ScanIteratorException;
+    }
+
+    // Receives each candidate tuple evaluated by visitPage whose squared
+    // distance to the query is at most bound(); the others are given up
+    // part way through the distance (see VectorDistance).
+    private interface CandidateVisitor {
+        long bound();
+        void visit(RID rid, Tuple tup, long dist2) throws ScanIteratorException;
+    }
     
     // Constructor: provide the LSH index file and the query vector.
     public LSHFFileScan(LSHFIndexFile indexFile, Heapfile dataFile, Vector100Dtype query) throws Exception {
         this.lshfIndexFile = indexFile;
         this.dataHeapFile = dataFile;
         this.query = query;
+        this.queryDims = query.getDimension();
         this.L = indexFile.getL();
         this.h = indexFile.getH();
+        this.layerExecutor = SystemDefs.JavabaseLSHExecutor;
+        this.signatures = new long[L];
+        for (int layer = 0; layer < L; layer++) {
+            signatures[layer] = indexFile.computeSignature(query, layer);
+        }
         if (DEBUG) {
             System.out.println("Heap file record count: " + dataHeapFile.getRecCnt());
         }
     }
 
+    /**
+     * Limit the range and NN scans to about `max` distinct candidates: no
+     * more index entries are read once that many records have been found.
+     * An NN scan for more than `max` neighbours still collects 'count'.
+     *
+     * @param max the candidate budget, or 0 for none (the default).
+     */
+    public void setCandidateBudget(int max) {
+        if (max < 0) {
+            throw new IllegalArgumentException("Negative candidate budget: " + max);
+        }
+        candidateBudget = max;
+    }
+
+    /**
+     * Set the candidate budget to c candidates per layer, c*L in all, the
+     * budget of the LSH Forest synchronous ascend.
+     *
+     * @param c the number of candidates per layer.
+     * @see #setCandidateBudget
+     */
+    public void setCandidatesPerLayer(int c) {
+        if (c < 0) {
+            throw new IllegalArgumentException("Negative candidates per layer: " + c);
+        }
+        setCandidateBudget((int) Math.min(Integer.MAX_VALUE, (long) c * L));
+    }
+
+    /**
+     * The candidate budget for an NN scan of `count` neighbours:
+     * CANDIDATES_PER_NEIGHBOUR * count candidates per layer, so the c*L
+     * budget of the LSH Forest grows with the number of neighbours.
+     *
+     * @param count the number of nearest neighbors the scan returns.
+     * @return the budget, for setCandidateBudget or a multi-probe NN scan.
+     */
+    public int candidateBudgetFor(int count) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) CANDIDATES_PER_NEIGHBOUR * Math.max(count, 0) * L);
+    }
+
+    /**
+     * Probe the layers' prefix trees concurrently on `executor`, one task
+     * per layer, instead of one after another. The candidates of all layers
+     * are merged into one set, so the results are those of a sequential
+     * scan, except which candidates a candidate budget cuts off. The buffer
+     * manager must be shared by the tasks; the data pages are still read by
+     * the calling thread. The executor is not shut down by the scan.
+     * A scan starts with SystemDefs.JavabaseLSHExecutor, which the
+     * minibase.lshthreads property sets up.
+     *
+     * @param executor the executor for the layer probes, or null to probe
+     *        the layers in turn.
+     */
+    public void setLayerExecutor(ExecutorService executor) {
+        layerExecutor = executor;
+    }
+
     /**
      * Perform a range scan on the LSH forest.
-     * The input key (a KeyClass whose toString() is the bit string) is used as the initial hash value.
+     * Each layer is searched with the query vector's own signature in that
+     * layer, starting from the full signature.
      * If fewer than 70% of scanned vectors in the current range have Euclidean distance below
      * distanceThreshold, then the range is increased by omitting one additional bit.
      * 
-     * @param key the starting key (bit string) for the scan.
      * @param distanceThreshold the distance threshold (in Euclidean metric)
      * @return An array of candidate tuples satisfying the range condition.
      * @throws ScanIteratorException if scan iteration fails.
+     * @see #openRangeScan
      */
-    public Tuple[] LSHFFileRangeScan(KeyClass key, int distanceThreshold, AttrType[] type, int queryField /*, short[] strSizes, short numFlds*/) throws ScanIteratorException {
-        int ignoreBits = 0;
+    public Tuple[] LSHFFileRangeScan(int distanceThreshold, AttrType[] type, int queryField /*, short[] strSizes, short numFlds*/) throws ScanIteratorException {
         List<Tuple> resultCandidates = new ArrayList<>();
-        boolean foundSatisfactory = false;
-        String bitStr = key.toString();
+        openRangeScan(distanceThreshold, type, queryField);
+        Tuple tup;
+        while ((tup = getNextInRange()) != null) {
+            resultCandidates.add(tup);
+        }
+        return resultCandidates.toArray(new Tuple[0]);
+    }
 
-        short[] strSizes = new short[1];
-        strSizes[0] = 30;
+    /**
+     * Start a streaming range scan; the qualifying tuples are then returned
+     * one at a time by getNextInRange(). For each prefix length the RIDs of
+     * all layers are collected first and the tuples are then read in data
+     * page order, so the relation is not read before the first tuple is
+     * returned and each data page is pinned once per prefix length.
+     *
+     * @param distanceThreshold the distance threshold (in Euclidean metric)
+     * @param type the attribute types of the relation.
+     * @param queryField the 1-based number of the vector attribute.
+     * @throws ScanIteratorException not thrown; kept for callers.
+     */
+    public void openRangeScan(int distanceThreshold, AttrType[] type, int queryField) throws ScanIteratorException {
+        closeRangeScan();
+        rangeThreshold = distanceThreshold;
+        rangeType = type;
+        rangeField = queryField;
+        rangeAscent = null;
+        rangeMatched = 0;
+        rangeSeen.clear();
+        rangeDone = false;
+    }
 
-        short numFlds = (short)type.length;
-
-        // A set to record the unique identifiers (RIDs) of the tuples we've already seen.
-        HashSet<String> seen = new HashSet<>();
-        List<Tuple> allCandidates = new ArrayList<>();
-        
-        while (!foundSatisfactory && ignoreBits <= bitStr.length()) {
-            // Calculate lower and upper bounds based on the current precision.
-            int[] range = getPrefixRange(bitStr, ignoreBits);
-            int lowerBound = range[0];
-            int upperBound = range[1];
-            if (DEBUG) {
-                System.out.println("[LSHFFileRangeScan] ignoreBits: " + ignoreBits +
-                                   ", Range: [" + lowerBound + ", " + upperBound + "]");
+    /**
+     * Return the next tuple of the range scan opened by openRangeScan.
+     * The scan starts at the longest prefix any layer shares with the query
+     * and ascends synchronously (see Ascent). Each time every candidate has
+     * been read for the current prefix, the scan stops if at least 70% of
+     * the entries read at that prefix length were within the threshold
+     * (counting the results of shorter prefixes), or if the candidate budget
+     * is used up, and otherwise ignores one more bit.
+     *
+     * @return the next qualifying tuple, or null when the scan is done.
+     * @throws ScanIteratorException if scan iteration fails.
+     */
+    public Tuple getNextInRange() throws ScanIteratorException {
+        while (true) {
+            if (!rangeHits.isEmpty()) {
+                return rangeHits.poll();
             }
-
-            // Collect candidates from all layers.            
-            int totalCount = 0;
-            for (int layer = 0; layer < L; layer++) {
-                try {
-                    BTreeFile btree = lshfIndexFile.getTree(layer);
-                    // Create a range scan using lo_key and hi_key.
-                    // Here we build KeyClass objects from the integer bounds.
-                    KeyClass loKey = new IntegerKey(lowerBound);
-                    KeyClass hiKey = new IntegerKey(upperBound);
-                    BTFileScan treeScan = (BTFileScan) btree.new_scan(loKey, hiKey);
-                    if (treeScan == null) continue;
-                    KeyDataEntry entry;
-                    while ((entry = treeScan.get_next()) != null) {
-                        totalCount++;
-                        Tuple tup = fetchTuple(entry);
-                        tup.setHdr(numFlds, type, strSizes);
-
-                        RID rid = ((LeafData)entry.data).getData();
-                        String ridStr = rid.pageNo.pid + ":" + rid.slotNo;
-                        // Skip if we've seen this tuple already.
-                        if (!seen.add(ridStr)) {
-                            continue;
-                        }
-
-                        // Extract the vector from tup. (using sample data 2 to test, fld 2 and fld 4 is 100D.)
-                        // NEED FIX
-                        
-                        if (DEBUG) {
-                            int tupLen = tup.getLength();
-                            System.out.println("Length of tuple:" + tupLen);
-                            short tupSize = tup.size();
-                            System.out.println("Size of tuple:" + tupSize);
-                            System.out.println("[Range Search Test] tuple content:");
-                            tup.print(type);
-                            System.out.println("[Range Search Test] tuple fldCnt: " + tup.noOfFlds());
-                        }
-                        Vector100Dtype candidateVector = tup.get100DVectFld(queryField);
-                        double dist = computeEuclideanDistance(query, candidateVector);
-                        if (dist < distanceThreshold) {
-                            allCandidates.add(tup);
-                        }
-                        System.out.println("pageNo of RID: " + entry.data.toString());
-                    }
-
-                    
-                    // System.out.println("slotNo of RID: " + entry..slotNo);
-
-                    treeScan.DestroyBTreeFileScan();
-                } catch (Exception e) {
-                    throw new ScanIteratorException(e, "Error scanning layer " + layer);
-                }
+            if (rangeDone) {
+                return null;
             }
-            if (DEBUG) {
-                System.out.println("[LSHFFileRangeScan] dist threshold: " + distanceThreshold + ", total scanned: " + totalCount +
-                                   ", within threshold: " + allCandidates.size());
+            if (rangePos < rangeRids.size()) {
+                final long within = VectorDistance.boundBelow(rangeThreshold);
+                rangePos = visitPage(rangeRids, rangePos, rangeType, rangeField, new CandidateVisitor() {
+                    public long bound() {
+                        return within;
+                    }
+                    public void visit(RID rid, Tuple tup, long dist2) {
+                        rangeMatched++;
+                        rangeHits.add(tup);
+                    }
+                });
+                continue;
             }
-            // If at least 70% of total scanned candidates satisfy the threshold, we stop.
-            if (totalCount > 0 && ((double) allCandidates.size() / totalCount) >= 0.7) {
-                resultCandidates.addAll(allCandidates);
-                foundSatisfactory = true;
+
+            int limit = candidateBudget > 0 ? candidateBudget : Integer.MAX_VALUE;
+            if (rangeAscent == null) {
+                rangeAscent = new Ascent();
             } else {
-                ignoreBits++; // Widen the range by ignoring one more bit.
-                if (ignoreBits > bitStr.length()) {
-                    resultCandidates.addAll(allCandidates);
-                    foundSatisfactory = true;
-                    break;
+                // every candidate read at this prefix length
+                int scanned = rangeAscent.scanned;
+                if (DEBUG) {
+                    System.out.println("[LSHFFileRangeScan] dist threshold: " + rangeThreshold + ", total scanned: " + scanned +
+                                       ", within threshold: " + rangeMatched);
+                }
+                if ((scanned > 0 && ((double) rangeMatched / scanned) >= 0.7)
+                    || rangeSeen.size() >= limit
+                    || rangeAscent.ignoreBits >= h) {
+                    rangeDone = true;
+                    continue;
                 }
+                rangeAscent.ignoreBits++; // Widen the range by ignoring one more bit.
             }
+            rangeRids.clear();
+            rangePos = 0;
+            rangeAscent.readLevel(rangeSeen, rangeRids, limit);
+            Collections.sort(rangeRids, PAGE_ORDER);
         }
-        return resultCandidates.toArray(new Tuple[0]);
+    }
+
+    /**
+     * Stop the range scan and drop its pending candidates.
+     *
+     * @throws ScanIteratorException not thrown; kept for callers.
+     */
+    public void closeRangeScan() throws ScanIteratorException {
+        rangeDone = true;
+        rangeRids.clear();
+        rangePos = 0;
+        rangeHits.clear();
     }
 
     /**
      * Perform a nearest-neighbor (NN) scan on the LSH forest.
-     * This method gathers candidates from all layers whose key values fall
-     * in the same range as the provided key, computes their Euclidean distances
+     * This method gathers candidates from all layers whose key values share
+     * a prefix with the query's signature in that layer, computes their Euclidean distances
      * to the query vector, and then returns the 'count' nearest tuples.
+     * The scan starts at the longest prefix any layer shares with the query
+     * and ascends synchronously (see Ascent), one bit at a time, until
+     * 'count' distinct candidates, or the candidate budget if that is
+     * larger, have been seen.
+     *
+     * Only the best 'count' candidates are kept, as (distance, RID) pairs
+     * in a max-heap whose root is the current count-th distance; a candidate
+     * that is not nearer than the root is dropped at once. The candidates of
+     * each prefix length are read in data page order, and the tuples of the
+     * survivors are fetched again, in page order, at the end.
      *
-     * @param key the starting key (bit string) for the scan.
      * @param count the number of nearest neighbors to return.
-     * @return an array of the nearest candidate tuples.
+     * @return an array of the nearest candidate tuples, nearest first.
      * @throws ScanIteratorException if scanning fails.
      */
-    public Tuple[] LSHFFileNNScan(KeyClass key, int count, AttrType[] type, int queryField) throws ScanIteratorException {
-        int ignoreBits = 0;
-        List<TupleDistance> candidateList = new ArrayList<>();
-        String bitStr = key.toString();
+    public Tuple[] LSHFFileNNScan(int count, AttrType[] type, int queryField) throws ScanIteratorException {
+        if (count <= 0) {
+            return new Tuple[0];
+        }
+        // candidates wanted; a level is read to the end unless the budget runs out
+        int target = candidateBudget > 0 ? Math.max(count, candidateBudget) : count;
+        int limit = candidateBudget > 0 ? target : Integer.MAX_VALUE;
+        PriorityQueue<RidDistance> best = newNearestHeap(count);
+        CandidateVisitor keepBest = keepNearest(best, count);
+        RIDSet seen = new RIDSet();
+        List<RID> rids = new ArrayList<>();
+        Ascent ascent = new Ascent();
 
-        short[] strSizes = new short[1];
-        strSizes[0] = 30;
+        // Loop until we have sufficient candidates (or we drop all bits).
+        while (true) {
+            rids.clear();
+            ascent.readLevel(seen, rids, limit);
+            Collections.sort(rids, PAGE_ORDER);
+            for (int i = 0; i < rids.size(); ) {
+                i = visitPage(rids, i, type, queryField, keepBest);
+            }
+            if (DEBUG) {
+                System.out.println("[LSHFFileNNScan] ignoreBits: " + ascent.ignoreBits +
+                                   ", candidates seen: " + seen.size());
+            }
+            if (seen.size() >= target || ascent.ignoreBits >= h) {
+                break; // we have enough candidates
+            }
+            ascent.ignoreBits++; // widen the scan range if not enough candidates
+        }
 
-        short numFlds = (short)type.length;
+        return fetchNearestFirst(best, type, queryField);
+    }
 
-        HashSet<String> seen = new HashSet<>();
+    /**
+     * Multi-probe nearest-neighbor scan. Instead of widening a prefix, each
+     * layer is probed at the query's own bucket (its full signature in that
+     * layer) and then at the neighbouring buckets whose signature differs in
+     * the bits the query is closest to flipping, cheapest first across all
+     * layers (see ProbeSequence). Probing stops once candidateBudget distinct
+     * candidates (but at least 'count') have been found, or after
+     * MAX_PROBES_PER_LAYER buckets per layer. The 'count' nearest candidates
+     * are returned, nearest first.
+     *
+     * @param count the number of nearest neighbors to return.
+     * @param candidateBudget the number of distinct candidates to collect,
+     *        or 0 to probe every layer up to MAX_PROBES_PER_LAYER buckets.
+     * @param type the attribute types of the relation.
+     * @param queryField the 1-based number of the vector attribute.
+     * @return an array of the nearest candidate tuples, nearest first.
+     * @throws ScanIteratorException if scanning fails.
+     */
+    public Tuple[] LSHFFileMultiProbeNNScan(int count, int candidateBudget, AttrType[] type, int queryField) throws ScanIteratorException {
+        if (candidateBudget < 0) {
+            throw new IllegalArgumentException("Negative candidate budget: " + candidateBudget);
+        }
+        if (count <= 0) {
+            return new Tuple[0];
+        }
+        List<RID> rids = multiProbeCandidates(candidateBudget > 0 ? Math.max(count, candidateBudget) : Integer.MAX_VALUE);
+        PriorityQueue<RidDistance> best = newNearestHeap(count);
+        CandidateVisitor keepBest = keepNearest(best, count);
+        for (int i = 0; i < rids.size(); ) {
+            i = visitPage(rids, i, type, queryField, keepBest);
+        }
+        return fetchNearestFirst(best, type, queryField);
+    }
 
-        // Loop until we have sufficient candidates (or we drop all bits).
-        while (ignoreBits <= bitStr.length()) {
-            // Determine the current range.
-            int[] range = getPrefixRange(bitStr, ignoreBits);
-            int lowerBound = range[0];
-            int upperBound = range[1];
-            candidateList.clear();
-            for (int layer = 0; layer < L; layer++) {
-                try {
-                    BTreeFile btree = lshfIndexFile.getTree(layer);
-                    KeyClass loKey = new IntegerKey(lowerBound);
-                    KeyClass hiKey = new IntegerKey(upperBound);
-                    BTFileScan treeScan = (BTFileScan) btree.new_scan(loKey, hiKey);
-                    if (treeScan == null) continue;
-                    KeyDataEntry entry;
-                    while ((entry = treeScan.get_next()) != null) {
-                        RID rid = ((LeafData)entry.data).getData();
-                        String ridStr = rid.pageNo.pid + ":" + rid.slotNo;
-                        if (!seen.add(ridStr)) {
-                            continue;
-                        }
-
-                        Tuple tup = fetchTuple(entry);
-                        tup.setHdr(numFlds, type, strSizes);
-                        Vector100Dtype candidateVector = tup.get100DVectFld(queryField);
-                        double dist = computeEuclideanDistance(query, candidateVector);
-                        candidateList.add(new TupleDistance(tup, dist));
-                        if (DEBUG) {
-                            int tupLen = tup.getLength();
-                            System.out.println("Length of tuple:" + tupLen);
-                            short tupSize = tup.size();
-                            System.out.println("Size of tuple:" + tupSize);
-                            System.out.println("[Range Search Test] tuple content:");
-                            tup.print(type);
-                            System.out.println("[Range Search Test] tuple fldCnt: " + tup.noOfFlds());
-                        }
-                    }
-                    treeScan.DestroyBTreeFileScan();
-                } catch (Exception e) {
-                    throw new ScanIteratorException(e, "Error scanning layer " + layer);
+    /**
+     * Multi-probe range scan: collects candidates like
+     * LSHFFileMultiProbeNNScan and returns those whose distance to the
+     * query is below distanceThreshold, in data page order.
+     *
+     * @param distanceThreshold the distance threshold (in Euclidean metric)
+     * @param candidateBudget the number of distinct candidates to collect,
+     *        or 0 to probe every layer up to MAX_PROBES_PER_LAYER buckets.
+     * @param type the attribute types of the relation.
+     * @param queryField the 1-based number of the vector attribute.
+     * @return the candidate tuples within the threshold.
+     * @throws ScanIteratorException if scanning fails.
+     */
+    public Tuple[] LSHFFileMultiProbeRangeScan(final int distanceThreshold, int candidateBudget, AttrType[] type, int queryField) throws ScanIteratorException {
+        if (candidateBudget < 0) {
+            throw new IllegalArgumentException("Negative candidate budget: " + candidateBudget);
+        }
+        List<RID> rids = multiProbeCandidates(candidateBudget > 0 ? candidateBudget : Integer.MAX_VALUE);
+        final List<Tuple> resultCandidates = new ArrayList<>();
+        final long within = VectorDistance.boundBelow(distanceThreshold);
+        for (int i = 0; i < rids.size(); ) {
+            i = visitPage(rids, i, type, queryField, new CandidateVisitor() {
+                public long bound() {
+                    return within;
+                }
+                public void visit(RID rid, Tuple tup, long dist2) {
+                    resultCandidates.add(tup);
                 }
+            });
+        }
+        return resultCandidates.toArray(new Tuple[0]);
+    }
+
+    /*
+     * Probe every layer's own bucket, then the neighbouring buckets of all
+     * layers in ascending perturbation cost, until `budget` distinct records
+     * are found. Returns them in page order.
+     */
+    private List<RID> multiProbeCandidates(int budget) throws ScanIteratorException {
+        // sized for the budget, if it is not too large to allocate up front
+        RIDSet seen = new RIDSet(Math.min(budget, 1 << 16));
+        List<RID> rids = new ArrayList<>();
+        long[] signatures = new long[L];
+        ProbeSequence[] probes = new ProbeSequence[L];
+        int[] probed = new int[L];
+
+        for (int layer = 0; layer < L; layer++) {
+            int[] dots = lshfIndexFile.project(query, layer);
+            signatures[layer] = lshfIndexFile.signatureOf(dots, h);
+            probes[layer] = new ProbeSequence(dots, h);
+        }
+        final long[] own = signatures;
+        final RIDSet ownSeen = seen;
+        final List<RID> ownRids = rids;
+        final int limit = budget;
+        forEachLayer(new LayerTask() {
+            public int run(int layer) throws ScanIteratorException {
+                return scanLayer(layer, own[layer], own[layer], ownSeen, ownRids, limit);
             }
-            if (candidateList.size() >= count) {
-                break; // we have enough candidates
+        });
+
+        while (seen.size() < budget) {
+            int layer = -1;
+            for (int l = 0; l < L; l++) {
+                if (probed[l] < MAX_PROBES_PER_LAYER && probes[l].hasNext()
+                    && (layer < 0 || probes[l].peekCost() < probes[layer].peekCost())) {
+                    layer = l;
+                }
+            }
+            if (layer < 0) {
+                break; // every layer has run out of probes
             }
-            ignoreBits++; // widen the scan range if not enough candidates
+            long bucket = signatures[layer] ^ probes[layer].next();
+            probed[layer]++;
+            scanLayer(layer, bucket, bucket, seen, rids, budget);
+        }
+        if (DEBUG) {
+            System.out.println("[LSHFFileMultiProbeScan] candidates: " + seen.size() +
+                               ", probes: " + Arrays.toString(probed));
         }
 
-        // Sort candidates by Euclidean distance.
-        Collections.sort(candidateList, new Comparator<TupleDistance>() {
-            public int compare(TupleDistance td1, TupleDistance td2) {
-                return Double.compare(td1.distance, td2.distance);
+        Collections.sort(rids, PAGE_ORDER);
+        return rids;
+    }
+
+    // Max-heap of NN candidates: the farthest kept candidate on top.
+    private static PriorityQueue<RidDistance> newNearestHeap(int count) {
+        return new PriorityQueue<RidDistance>(count, new Comparator<RidDistance>() {
+            public int compare(RidDistance rd1, RidDistance rd2) {
+                return Long.compare(rd2.dist2, rd1.dist2);
             }
         });
-        // Return the top 'count' neighbors.
-        Tuple[] results = new Tuple[Math.min(count, candidateList.size())];
-        for (int i = 0; i < results.length; i++) {
-            results[i] = candidateList.get(i).tuple;
+    }
+
+    // Keeps the `count` nearest candidates it visits in `best`; once it
+    // has them, only candidates nearer than the farthest kept are visited.
+    private static CandidateVisitor keepNearest(final PriorityQueue<RidDistance> best, final int count) {
+        return new CandidateVisitor() {
+            public long bound() {
+                return best.size() < count ? VectorDistance.NO_BOUND : best.peek().dist2 - 1;
+            }
+            public void visit(RID rid, Tuple tup, long dist2) {
+                if (best.size() == count) {
+                    best.poll();
+                }
+                best.add(new RidDistance(rid, dist2));
+            }
+        };
+    }
+
+    // Ranks the kept candidates nearest first and fetches them in page order.
+    private Tuple[] fetchNearestFirst(PriorityQueue<RidDistance> best, AttrType[] type, int queryField)
+        throws ScanIteratorException {
+        final RidDistance[] ranked = new RidDistance[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = best.poll();
+        }
+        final Map<RID, Integer> rank = new TreeMap<RID, Integer>(PAGE_ORDER);
+        for (int i = 0; i < ranked.length; i++) {
+            rank.put(ranked[i].rid, i);
+        }
+        List<RID> survivors = new ArrayList<RID>(rank.keySet());
+        final Tuple[] results = new Tuple[ranked.length];
+        for (int i = 0; i < survivors.size(); ) {
+            i = visitPage(survivors, i, type, queryField, new CandidateVisitor() {
+                public long bound() {
+                    return VectorDistance.NO_BOUND;
+                }
+                public void visit(RID rid, Tuple tup, long dist2) {
+                    results[rank.get(rid)] = tup;
+                }
+            });
         }
         return results;
     }
 
-    // A helper method to compute Euclidean distance between two 100D vectors.
-    private double computeEuclideanDistance(Vector100Dtype v1, Vector100Dtype v2) {
-        short[] dims1 = v1.getDimension();
-        short[] dims2 = v2.getDimension();
-        double sum = 0.0;
-        for (int i = 0; i < 100; i++) {
-            double diff = dims1[i] - dims2[i];
-            sum += diff * diff;
+    /*
+     * Synchronous ascend of the LSH Forest (Bawa et al., WWW 2005). The scan
+     * starts at the longest prefix that any layer shares with the query, and
+     * every level drops one more bit in all layers together. Each layer keeps
+     * the signature range it has read already, so a level reads only the
+     * entries the wider prefix adds, and no leaf entry is read twice.
+     */
+    private class Ascent {
+        // bits of the signatures ignored at the current level
+        int ignoreBits;
+        // index entries read so far, over all levels and layers
+        int scanned;
+        // range of each layer read so far; unread while read[layer] is false
+        private final long[] readLo = new long[L];
+        private final long[] readHi = new long[L];
+        private final boolean[] read = new boolean[L];
+
+        Ascent() throws ScanIteratorException {
+            int prefix = 0;
+            int[] prefixes = forEachLayer(new LayerTask() {
+                public int run(int layer) throws ScanIteratorException {
+                    return longestPrefix(layer);
+                }
+            });
+            for (int layer = 0; layer < L; layer++) {
+                prefix = Math.max(prefix, prefixes[layer]);
+            }
+            ignoreBits = h - prefix;
+        }
+
+        /*
+         * Add to rids the records of every layer whose signature shares the
+         * query's signature in that layer once ignoreBits bits are dropped,
+         * skipping those in seen (which get added to it), until seen holds
+         * `limit` records.
+         */
+        void readLevel(final RIDSet seen, final List<RID> rids, final int limit) throws ScanIteratorException {
+            if (DEBUG) {
+                System.out.println("[LSHFFileScan] ignoreBits: " + ignoreBits);
+            }
+            int[] read = forEachLayer(new LayerTask() {
+                public int run(int layer) throws ScanIteratorException {
+                    return readLayer(layer, seen, rids, limit);
+                }
+            });
+            for (int layer = 0; layer < L; layer++) {
+                scanned += read[layer];
+            }
+        }
+
+        // Read the entries the current level adds in `layer`; returns how many.
+        private int readLayer(int layer, RIDSet seen, List<RID> rids, int limit) throws ScanIteratorException {
+            if (!hasRoom(seen, limit)) {
+                return 0;
+            }
+            long[] range = getPrefixRange(signatures[layer], ignoreBits);
+            long lo = range[0];
+            long hi = range[1];
+            int scanned = 0;
+            if (!read[layer]) {
+                scanned += scanLayer(layer, lo, hi, seen, rids, limit);
+            } else {
+                // the ranges nest, so only the two ends can be new
+                if (lo < readLo[layer]) {
+                    scanned += scanLayer(layer, lo, readLo[layer] - 1, seen, rids, limit);
+                }
+                if (hi > readHi[layer]) {
+                    scanned += scanLayer(layer, readHi[layer] + 1, hi, seen, rids, limit);
+                }
+            }
+            readLo[layer] = lo;
+            readHi[layer] = hi;
+            read[layer] = true;
+            return scanned;
+        }
+
+        // Length of the longest prefix of the query's signature that some
+        // entry of `layer` shares, by binary search on the prefix length.
+        private int longestPrefix(int layer) throws ScanIteratorException {
+            int shortest = 0;   // always shared, unless the layer is empty
+            int longest = h;
+            while (shortest < longest) {
+                int prefix = (shortest + longest + 1) / 2;
+                long[] range = getPrefixRange(signatures[layer], h - prefix);
+                if (hasEntries(layer, range[0], range[1])) {
+                    shortest = prefix;
+                } else {
+                    longest = prefix - 1;
+                }
+            }
+            return shortest;
         }
-        return Math.sqrt(sum);
     }
-    
-    private Tuple fetchTuple(KeyDataEntry entry) throws ScanIteratorException {
-        if (entry == null || entry.data == null) {
-            throw new ScanIteratorException(null, "Entry or its data is null.");
+
+    // Whether `layer` has an entry with a signature in [lo, hi].
+    private boolean hasEntries(int layer, long lo, long hi) throws ScanIteratorException {
+        try {
+            BTreeFile btree = lshfIndexFile.getTree(layer);
+            BTFileScan treeScan = (BTFileScan) btree.new_scan(
+                lshfIndexFile.signatureKey(lo), lshfIndexFile.signatureKey(hi));
+            if (treeScan == null) {
+                return false;
+            }
+            boolean found = treeScan.get_next() != null;
+            treeScan.DestroyBTreeFileScan();
+            return found;
+        } catch (Exception e) {
+            throw new ScanIteratorException(e, "Error scanning layer " + layer);
         }
-    
-        if (!(entry.data instanceof LeafData)) {
-            throw new ScanIteratorException(null, "Entry does not contain a RID; it's not a leaf entry.");
+    }
+
+    /*
+     * Run task for every layer and return its results by layer: on the
+     * layer executor if one is set, else in turn in this thread.
+     */
+    private int[] forEachLayer(final LayerTask task) throws ScanIteratorException {
+        int[] results = new int[L];
+        if (layerExecutor == null || L < 2) {
+            for (int layer = 0; layer < L; layer++) {
+                results[layer] = task.run(layer);
+            }
+            return results;
         }
-    
-        RID rid = ((LeafData)entry.data).getData();
-        // RID rid = (entry.data).getData();
+
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(L);
+        for (int layer = 0; layer < L; layer++) {
+            final int l = layer;
+            futures.add(layerExecutor.submit(new Callable<Integer>() {
+                public Integer call() throws ScanIteratorException {
+                    return task.run(l);
+                }
+            }));
+        }
+        ScanIteratorException failure = null;
+        for (int layer = 0; layer < L; layer++) {
+            // wait for every task, so none is left using the buffer pool
+            try {
+                results[layer] = futures.get(layer).get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                if (failure == null) {
+                    failure = cause instanceof ScanIteratorException
+                        ? (ScanIteratorException) cause
+                        : new ScanIteratorException((Exception) cause, "Error scanning layer " + layer);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (failure == null) {
+                    failure = new ScanIteratorException(e, "Interrupted scanning layer " + layer);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    // Whether seen holds fewer than `limit` records. seen and the candidate
+    // list it goes with are guarded by seen's lock.
+    private static boolean hasRoom(RIDSet seen, int limit) {
+        synchronized (seen) {
+            return seen.size() < limit;
+        }
+    }
+
+    // Add rid to rids unless it is in seen; returns hasRoom afterwards.
+    private static boolean addCandidate(RID rid, RIDSet seen, List<RID> rids, int limit) {
+        synchronized (seen) {
+            if (seen.add(rid)) {
+                rids.add(new RID(new PageId(rid.pageNo.pid), rid.slotNo));
+            }
+            return seen.size() < limit;
+        }
+    }
+
+    /*
+     * Add to rids the records of `layer` with a signature in [lo, hi] that
+     * are not in seen (which they get added to), stopping once seen holds
+     * `limit` records. Returns the number of index entries read.
+     */
+    private int scanLayer(int layer, long lo, long hi, RIDSet seen, List<RID> rids, int limit)
+        throws ScanIteratorException {
+        int scanned = 0;
         try {
-            // System.out.println("RID of tuple" + rid.toString());
-            return dataHeapFile.getRecord(rid);
+            BTreeFile btree = lshfIndexFile.getTree(layer);
+            KeyClass loKey = lshfIndexFile.signatureKey(lo);
+            KeyClass hiKey = lshfIndexFile.signatureKey(hi);
+            BTFileScan treeScan = (BTFileScan) btree.new_scan(loKey, hiKey);
+            if (treeScan == null) {
+                return 0;
+            }
+            KeyDataEntry entry;
+            boolean more = hasRoom(seen, limit);
+            while (more && (entry = treeScan.get_next()) != null) {
+                scanned++;
+                // Skip if we've seen this tuple already.
+                more = addCandidate(((LeafData)entry.data).getData(), seen, rids, limit);
+            }
+            treeScan.DestroyBTreeFileScan();
         } catch (Exception e) {
-            throw new ScanIteratorException(e, "Error fetching tuple for RID: " + rid);
+            throw new ScanIteratorException(e, "Error scanning layer " + layer);
         }
+        return scanned;
     }
-    
-    /**
-     * Given a bit string and a number of bits to ignore at the end, compute
-     * the prefix range as lower and upper bounds.
-     * This is the same helper method provided.
-     * @param bitString the bit string representing the hash key.
-     * @param ignoreBits the number of bits to ignore from the end.
-     * @return an int array of length 2: {lowerBound, upperBound}.
+
+    /*
+     * Pin the data page of rids[from] once and pass every candidate of
+     * rids, from `from` on, that lies on it and within the visitor's bound
+     * to the visitor, with its squared distance to the query. rids must be
+     * in page order. Returns the index of the first candidate on a later
+     * page.
      */
-    public static int[] getPrefixRange(String bitString, int ignoreBits) {
+    private int visitPage(List<RID> rids, int from, AttrType[] type, int queryField, CandidateVisitor visitor)
+        throws ScanIteratorException {
+        short[] strSizes = new short[1];
+        strSizes[0] = 30;
 
-        if (DEBUG) {
-            System.out.println("[Range Search Test] bitString: " + bitString);
+        PageId pageNo = new PageId(rids.get(from).pageNo.pid);
+        Page page = new Page();
+        try {
+            SystemDefs.JavabaseBM.pinPage(pageNo, page, false);
+        } catch (Exception e) {
+            throw new ScanIteratorException(e, "Error pinning data page " + pageNo.pid);
+        }
+        int i = from;
+        try {
+            HFPage dataPage = new HFPage(page);
+            for (; i < rids.size() && rids.get(i).pageNo.pid == pageNo.pid; i++) {
+                RID rid = rids.get(i);
+                Tuple tup;
+                try {
+                    tup = dataPage.getRecord(rid);
+                    tup.setHdr((short) type.length, type, strSizes);
+                    long bound = visitor.bound();
+                    long dist2 = tup.distanceTo(queryField, queryDims, bound);
+                    if (dist2 <= bound) {
+                        visitor.visit(rid, tup, dist2);
+                    }
+                } catch (ScanIteratorException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new ScanIteratorException(e, "Error fetching tuple for RID: " + rid);
+                }
+            }
+        } finally {
+            try {
+                SystemDefs.JavabaseBM.unpinPage(pageNo, false);
+            } catch (Exception e) {
+                throw new ScanIteratorException(e, "Error unpinning data page " + pageNo.pid);
+            }
         }
+        return i;
+    }
 
-        int prefixLength = bitString.length() - ignoreBits;
-        if (prefixLength < 0) {
-            throw new IllegalArgumentException("Cannot ignore more bits than the string length.");
+    /**
+     * Given a packed signature and a number of low-order bits to ignore,
+     * compute the prefix range as lower and upper bounds.
+     * @param signature the packed signature of the query.
+     * @param ignoreBits the number of bits to ignore from the end.
+     * @return a long array of length 2: {lowerBound, upperBound}.
+     */
+    public static long[] getPrefixRange(long signature, int ignoreBits) {
+        if (ignoreBits < 0 || ignoreBits > 64) {
+            throw new IllegalArgumentException("Cannot ignore " + ignoreBits + " bits of a 64-bit signature.");
         }
-        // Create prefix by keeping the first (length - ignoreBits) bits
-        String prefix = bitString.substring(0, prefixLength);
-        // Compute range by appending all 0s (for lower bound) and all 1s (for upper bound)
-        int lowerBound = Integer.parseInt(prefix + "0".repeat(ignoreBits), 2);
-        int upperBound = Integer.parseInt(prefix + "1".repeat(ignoreBits), 2);
-        return new int[]{lowerBound, upperBound};
+        if (ignoreBits == 64) {
+            // every bit ignored, including the sign bit of a full-width signature
+            return new long[]{Long.MIN_VALUE, Long.MAX_VALUE};
+        }
+        long mask = (1L << ignoreBits) - 1;
+        long lowerBound = signature & ~mask;
+        long upperBound = lowerBound | mask;
+        return new long[]{lowerBound, upperBound};
     }
-    
-    // Class to pair a tuple with its computed distance.
-    private class TupleDistance {
-        Tuple tuple;
-        double distance;
-        TupleDistance(Tuple tuple, double distance) {
-            this.tuple = tuple;
-            this.distance = distance;
+
+    // A candidate of the NN scan: a record and its squared distance to the query.
+    private static class RidDistance {
+        RID rid;
+        long dist2;
+        RidDistance(RID rid, long dist2) {
+            this.rid = new RID(new PageId(rid.pageNo.pid), rid.slotNo);
+            this.dist2 = dist2;
         }
     }
 }
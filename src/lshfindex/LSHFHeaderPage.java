@@ -11,6 +11,10 @@ import java.io.*;
  * - Number of layers (L) and number of hash functions (h)
  * - An array of header page IDs (one per layer, each as an int, 4 bytes)
  * - For each layer and each hash function, 100 a values (stored as bytes)
+ *
+ * When L * h * 100 a values do not fit on the page (wide signatures, h up to 64),
+ * the page is written with SEEDED_MAGIC_VALUE and holds an 8-byte random seed in
+ * place of the a values; the index regenerates them from that seed on open.
  */
 public class LSHFHeaderPage extends HFPage {
 
@@ -19,6 +23,8 @@ public class LSHFHeaderPage extends HFPage {
     public static final int OFFSET_CUSTOM = DPFIXED;       // DPFIXED (usually 20) reserved for HFPage’s own header
     public static final int OFFSET_MAGIC = OFFSET_CUSTOM;    // Use the first 4 bytes for the magic number
     public static final int MAGIC_VALUE = 1989;              // Same magic number as used in BTreeHeaderPage
+    public static final int SEEDED_MAGIC_VALUE = 1990;       // a values replaced by a seed
+    public static final int SEED_SIZE = 8;
 
     public static final int OFFSET_L = OFFSET_MAGIC + 4;     // store L (num of layers)
     public static final int OFFSET_h = OFFSET_L + 4;           // store h (num of hash functions)
@@ -40,6 +46,11 @@ public class LSHFHeaderPage extends HFPage {
     
     // We assume that the overall space (from OFFSET_CUSTOM up to MAX_SPACE) is sufficient.
 
+    // Whether the a values of an L x h forest with nAttrs attributes can be stored inline.
+    public static boolean fitsInline(int L, int h, int nAttrs) {
+        return OFFSET_LAYER_PAGEIDS + L * 4 + L * h * 100 + 4 + nAttrs * 4 <= MAX_SPACE;
+    }
+
     // Constructor to create a new LSHFHeaderPage with given L and h
     public LSHFHeaderPage(/*PageId pageNo,*/ int L, int h, int nAttrs, AttrType[] attrTypes) throws Exception {
         super();
@@ -60,10 +71,11 @@ public class LSHFHeaderPage extends HFPage {
         // }
 
         // Write magic number first.
+        int magic = fitsInline(L, h, nAttrs) ? MAGIC_VALUE : SEEDED_MAGIC_VALUE;
         if (DEBUG) {
-            System.out.println("[LSHFHeaderPage] Setting magic to: " + MAGIC_VALUE);
+            System.out.println("[LSHFHeaderPage] Setting magic to: " + magic);
         }
-        Convert.setIntValue(MAGIC_VALUE, OFFSET_MAGIC, data);
+        Convert.setIntValue(magic, OFFSET_MAGIC, data);
 
         // Write the number of layers and h.
         if (DEBUG) {
@@ -95,9 +107,9 @@ public class LSHFHeaderPage extends HFPage {
             offset += 4;
         }
 
-        // Initialize the area for a values to zero.
+        // Initialize the area for a values (or the seed) to zero.
         int offsetA = OFFSET_LAYER_PAGEIDS + L * 4;
-        int totalABytes = L * h * 100;  // total bytes for a values.
+        int totalABytes = getAValueBytes();  // total bytes for a values.
         for (int i = 0; i < totalABytes; i++) {
             data[offsetA + i] = 0;
         }
@@ -148,7 +160,7 @@ public class LSHFHeaderPage extends HFPage {
 
         // Check magic number
         int magic = Convert.getIntValue(OFFSET_MAGIC, data);
-        if (magic != MAGIC_VALUE) {
+        if (magic != MAGIC_VALUE && magic != SEEDED_MAGIC_VALUE) {
             throw new IOException("Header page not in expected format. Magic number mismatch: " + magic);
         }
 
@@ -173,6 +185,30 @@ public class LSHFHeaderPage extends HFPage {
         return Convert.getIntValue(OFFSET_h, data);
     }
 
+    // Whether the a values are derived from a stored seed instead of stored inline.
+    public boolean isSeeded() throws IOException {
+        return Convert.getIntValue(OFFSET_MAGIC, data) == SEEDED_MAGIC_VALUE;
+    }
+
+    // Size of the block after the layer IDs: the inline a values, or the seed.
+    private int getAValueBytes() throws IOException {
+        return isSeeded() ? SEED_SIZE : getNumLayers() * getNumHashFunctions() * 100;
+    }
+
+    // Get the seed the a values are generated from (seeded pages only).
+    public long getSeed() throws IOException {
+        if (!isSeeded())
+            throw new IllegalStateException("a values are stored inline");
+        return Convert.getLongValue(OFFSET_LAYER_PAGEIDS + getNumLayers() * 4, data);
+    }
+
+    // Set the seed the a values are generated from (seeded pages only).
+    public void setSeed(long seed) throws IOException {
+        if (!isSeeded())
+            throw new IllegalStateException("a values are stored inline");
+        Convert.setLongValue(seed, OFFSET_LAYER_PAGEIDS + getNumLayers() * 4, data);
+    }
+
     // Get the header page ID for a given layer.
     public PageId getLayerHeaderPageId(int layer) throws IOException {
         int L = getNumLayers();
@@ -200,6 +236,8 @@ public class LSHFHeaderPage extends HFPage {
         int h = getNumHashFunctions();
         if (layer < 0 || layer >= L || hashIndex < 0 || hashIndex >= h || j < 0 || j >= 100)
             throw new IllegalArgumentException("Index out of range");
+        if (isSeeded())
+            throw new IllegalStateException("a values are generated from the seed");
         int offsetA = OFFSET_LAYER_PAGEIDS + L * 4;
         int pos = offsetA + (layer * h * 100) + (hashIndex * 100) + j;
         return data[pos];
@@ -211,6 +249,8 @@ public class LSHFHeaderPage extends HFPage {
         int h = getNumHashFunctions();
         if (layer < 0 || layer >= L || hashIndex < 0 || hashIndex >= h || j < 0 || j >= 100)
             throw new IllegalArgumentException("Index out of range");
+        if (isSeeded())
+            throw new IllegalStateException("a values are generated from the seed");
         int offsetA = OFFSET_LAYER_PAGEIDS + L * 4;
         int pos = offsetA + (layer * h * 100) + (hashIndex * 100) + j;
         data[pos] = value;
@@ -223,6 +263,8 @@ public class LSHFHeaderPage extends HFPage {
         int h = getNumHashFunctions();
         if (layer < 0 || layer >= L || hashIndex < 0 || hashIndex >= h)
             throw new IllegalArgumentException("Index out of range");
+        if (isSeeded())
+            throw new IllegalStateException("a values are generated from the seed");
         byte[] arr = new byte[100];
         int offsetA = OFFSET_LAYER_PAGEIDS + L * 4;
         int basePos = offsetA + (layer * h * 100) + (hashIndex * 100);
@@ -238,6 +280,8 @@ public class LSHFHeaderPage extends HFPage {
         int h = getNumHashFunctions();
         if (layer < 0 || layer >= L || hashIndex < 0 || hashIndex >= h)
             throw new IllegalArgumentException("Index out of range");
+        if (isSeeded())
+            throw new IllegalStateException("a values are generated from the seed");
         int offsetA = OFFSET_LAYER_PAGEIDS + L * 4;
         int basePos = offsetA + (layer * h * 100) + (hashIndex * 100);
         System.arraycopy(arr, 0, data, basePos, 100);
@@ -247,7 +291,7 @@ public class LSHFHeaderPage extends HFPage {
     public int getAttrCount() throws IOException {
         int numLayers = getNumLayers();
         int numHashFuncs = getNumHashFunctions();
-        int offsetAttrCount = OFFSET_LAYER_PAGEIDS + (numLayers * 4) + (numLayers * numHashFuncs * 100);
+        int offsetAttrCount = OFFSET_LAYER_PAGEIDS + (numLayers * 4) + getAValueBytes();
         return Convert.getIntValue(offsetAttrCount, data);
     }
     
@@ -257,7 +301,7 @@ public class LSHFHeaderPage extends HFPage {
         int[] types = new int[nAttrs];
         int numLayers = getNumLayers();
         int numHashFuncs = getNumHashFunctions();
-        int offset = OFFSET_LAYER_PAGEIDS + (numLayers * 4) + 4; // after attr count field
+        int offset = OFFSET_LAYER_PAGEIDS + (numLayers * 4) + getAValueBytes() + 4; // after attr count field
         for (int i = 0; i < nAttrs; i++) {
             types[i] = Convert.getIntValue(offset, data);
             offset += 4;
@@ -270,7 +314,7 @@ public class LSHFHeaderPage extends HFPage {
         int nAttrs = attrTypes.length;
         int numLayers = getNumLayers();
         int numHashFuncs = getNumHashFunctions();
-        int offset = OFFSET_LAYER_PAGEIDS + (numLayers * 4) + 0; // first write attr count here
+        int offset = OFFSET_LAYER_PAGEIDS + (numLayers * 4) + getAValueBytes(); // first write attr count here
         Convert.setIntValue(nAttrs, offset, data);
         offset += 4;
         for (int i = 0; i < nAttrs; i++) {
@@ -12,6 +12,7 @@ import global.PageId;
 import global.RID;
 import global.SystemDefs;
 import global.Vector100Dtype;
+import iterator.KeyDataSort;
 import java.io.IOException;
 import java.util.Random;
 
@@ -32,7 +33,7 @@ public class LSHFIndexFile {
     private static boolean DEBUG = true;
 
     private String fileName;
-    private int h;        // number of hash functions per layer (i.e., number of hash values to concatenate)
+    private int h;        // number of hash functions per layer (i.e., number of hash values to concatenate), at most 64
     private int L;        // number of layers
     private BTreeFile[] prefixTrees;  // one prefix tree per layer
 
@@ -41,6 +42,18 @@ public class LSHFIndexFile {
     //   h(x) = floor((a * x + b) / W)
     // aValues[layer][i] is a 100-dimensional vector (array of doubles)
     private byte[][][] aValues;
+    // projections[layer] holds the a values of a layer as one column-major
+    // block for the projection kernel (see ProjectionKernel), padded to stride.
+    private int[][] projections;
+    private int stride;
+    // Projections of computeSignature, which only keeps their signs: one
+    // buffer per thread, as layers may be hashed on the layer executor.
+    // project() hands out fresh arrays, which probe sequences keep.
+    private final ThreadLocal<int[]> scratch = new ThreadLocal<int[]>() {
+        protected int[] initialValue() {
+            return new int[stride];
+        }
+    };
     // bOffsets[layer][i] is the offset for the i-th hash function in the given layer.
     // private double[][] bOffsets;
 
@@ -49,6 +62,16 @@ public class LSHFIndexFile {
 
     private Random rand;
 
+    // Signatures of up to this many bits are stored as IntegerKey; wider ones as LongKey.
+    private static final int MAX_INT_KEY_BITS = 31;
+    private static final int MAX_HASH_FUNCTIONS = 64;
+
+    // SIMD kernel when jdk.incubator.vector is present, scalar loops otherwise.
+    private static final ProjectionKernel KERNEL = loadKernel();
+
+    // String length assumed for string attributes of indexed relations.
+    private static final short DEFAULT_STR_SIZE = 30;
+
     private static int M = 127;        // max magnitude we allow (fits in signed byte)
     private static double scale = 20;  // 20σ → most values land in [-60,60]
 
@@ -68,30 +91,16 @@ public class LSHFIndexFile {
         this.L = L;
         this.rand = new Random();
 
+        if (h < 1 || h > MAX_HASH_FUNCTIONS) {
+            throw new Exception("Number of hash functions per layer must be between 1 and " + MAX_HASH_FUNCTIONS + ": " + h);
+        }
+
         // Try to get the header page ID from the file entry.
         this.headerPageId = SystemDefs.JavabaseDB.get_file_entry(fileName);
 
         if (this.headerPageId == null) {
             // --- HEADER DOES NOT EXIST: Create a new header page and generate aValues ---
 
-            // Allocate aValues and generate new ones.
-            System.out.println("[Read Header Test] hash function for " + fileName);
-            aValues = new byte[L][h][100];
-            for (int l = 0; l < L; l++) {
-                for (int i = 0; i < h; i++) {
-                    for (int j = 0; j < 100; j++) {
-                        double g = rand.nextGaussian();       // ~N(0,1)
-                        int q = (int)Math.round(g * scale);      // quantize using scale
-                        if (q > M) q = M;
-                        if (q < -M) q = -M;
-                        System.out.print(q + "; ");
-                        aValues[l][i][j] = (byte)q;
-                    }
-                }
-            }
-
-            System.out.println("[Read Header Test] a values generated");
-
             // Create a new header page.
             // headerPageId = new PageId();
             this.headerPage = new LSHFHeaderPage(/*headerPageId,*/ L, h, nAttrs, attrTypes);  // No-arg constructor creates a new page.
@@ -109,14 +118,25 @@ public class LSHFIndexFile {
             Convert.setIntValue(h, LSHFHeaderPage.OFFSET_h, this.headerPage.getHFpageArray());
             // The LSHFHeaderPage constructor (init) should have already created space for L layer IDs and a-values.
 
-            // Now, write the generated aValues into the header page.
-            for (int l = 0; l < L; l++) {
-                for (int i = 0; i < h; i++) {
-                    for (int j = 0; j < 100; j++) {
-                        headerPage.setAValue(l, i, j, aValues[l][i][j]);
+            // Allocate aValues and generate new ones.
+            System.out.println("[Read Header Test] hash function for " + fileName);
+            if (headerPage.isSeeded()) {
+                // Too many a values for the header page: store only the seed.
+                long seed = rand.nextLong();
+                headerPage.setSeed(seed);
+                aValues = generateAValues(new Random(seed), L, h);
+            } else {
+                aValues = generateAValues(rand, L, h);
+
+                // Now, write the generated aValues into the header page.
+                for (int l = 0; l < L; l++) {
+                    for (int i = 0; i < h; i++) {
+                        headerPage.setAValuesForHash(l, i, aValues[l][i]);
                     }
                 }
             }
+
+            System.out.println("[Read Header Test] a values generated");
         } else {
             // --- HEADER EXISTS: Open the header page and read the stored aValues ---
             this.headerPage = new LSHFHeaderPage(this.headerPageId);
@@ -129,23 +149,17 @@ public class LSHFIndexFile {
                 throw new Exception("Mismatch in L or h between catalog and parameters");
             }
 
-            // Allocate aValues array and load from the header page.
-            aValues = new byte[L][h][100];
-            for (int l = 0; l < L; l++) {
-                for (int i = 0; i < h; i++) {
-                    for (int j = 0; j < 100; j++) {
-                        aValues[l][i][j] = this.headerPage.getAValue(l, i, j);
-                    }
-                }
-            }
+            loadAValues();
         }
 
+        buildProjections();
+
         // Now, initialize one prefix tree (BTreeFile) per layer.
         prefixTrees = new BTreeFile[L];
         for (int l = 0; l < L; l++) {
             // Each prefix tree uses a unique file name (e.g., fileName_layer0, fileName_layer1, ...).
             String layerName = fileName + "_layer" + l;
-            this.prefixTrees[l] = new BTreeFile(layerName, AttrType.attrInteger, 4, 1);
+            this.prefixTrees[l] = new BTreeFile(layerName, getKeyType(), getKeySize(), 1);
 
             // Get this B-tree's header page ID.
             PageId btHeaderId = prefixTrees[l].getHeaderPage().getCurPage();
@@ -193,14 +207,8 @@ public class LSHFIndexFile {
         System.out.println("[Read Header Test] numHashFuncs: " + this.h);
 
         // Allocate the in-memory array for aValues and load them from the header page.
-        aValues = new byte[numLayers][numHashFuncs][100];
-        for (int l = 0; l < numLayers; l++) {
-            for (int i = 0; i < numHashFuncs; i++) {
-                for (int j = 0; j < 100; j++) {
-                    aValues[l][i][j] = headerPage.getAValue(l, i, j);
-                }
-            }
-        }
+        loadAValues();
+        buildProjections();
 
         // Open the prefix trees for each layer.
         prefixTrees = new BTreeFile[numLayers];
@@ -218,69 +226,173 @@ public class LSHFIndexFile {
     }
 
     /**
-     * Computes the concatenated hash for a given vector on a specific layer using a specified prefix length.
-     * The computed key is a string concatenation of h_i(x) values (each an integer bucket)
-     * computed as: floor((a_i * x + b_i) / W)
+     * Draw L * h random projection vectors, each component ~N(0,1) scaled and
+     * quantized to a byte in [-M, M].
+     */
+    private static byte[][][] generateAValues(Random rnd, int L, int h) {
+        byte[][][] a = new byte[L][h][100];
+        for (int l = 0; l < L; l++) {
+            for (int i = 0; i < h; i++) {
+                for (int j = 0; j < 100; j++) {
+                    double g = rnd.nextGaussian();           // ~N(0,1)
+                    int q = (int)Math.round(g * scale);      // quantize using scale
+                    if (q > M) q = M;
+                    if (q < -M) q = -M;
+                    a[l][i][j] = (byte)q;
+                }
+            }
+        }
+        return a;
+    }
+
+    /**
+     * Load aValues from the header page, regenerating them from the stored
+     * seed when the page is too small to hold them inline.
+     */
+    private void loadAValues() throws IOException {
+        if (headerPage.isSeeded()) {
+            aValues = generateAValues(new Random(headerPage.getSeed()), L, h);
+            return;
+        }
+        aValues = new byte[L][h][];
+        for (int l = 0; l < L; l++) {
+            for (int i = 0; i < h; i++) {
+                aValues[l][i] = headerPage.getAValuesForHash(l, i);
+            }
+        }
+    }
+
+    /**
+     * Lay out the a values of every layer as a contiguous column-major block.
+     */
+    private void buildProjections() {
+        int lanes = KERNEL.lanes();
+        stride = (h + lanes - 1) / lanes * lanes;
+        projections = new int[L][100 * stride];
+        for (int l = 0; l < L; l++) {
+            for (int i = 0; i < h; i++) {
+                for (int j = 0; j < 100; j++) {
+                    projections[l][j * stride + i] = aValues[l][i][j];
+                }
+            }
+        }
+    }
+
+    private static ProjectionKernel loadKernel() {
+        try {
+            // Loaded by name: the class is built apart, from vectorapi/, and only
+            // links when the incubator module is resolved.
+            ProjectionKernel kernel = (ProjectionKernel) Class.forName("lshfindex.VectorProjectionKernel")
+                    .getDeclaredConstructor().newInstance();
+            int lanes = ProjectionKernel.LANE_MULTIPLE;
+            kernel.project(new int[100 * lanes], lanes, lanes, new short[100], new int[lanes]);
+            return kernel;
+        } catch (Throwable t) {
+            return new ScalarProjectionKernel();
+        }
+    }
+
+    /**
+     * Compute the LSH signature of `vector` at `layer`, using up to
+     * `prefixLength` hash functions.
+     * Hash function i contributes one bit (1 if a_i * x > 0, else 0); the bit of
+     * the first hash function is the most significant one, so signatures sharing
+     * a prefix form a contiguous key range in the layer's prefix tree.
+     * The projections of all h hash functions are computed in one kernel call.
      *
      * @param vector the 100D vector.
-     * @param layer the layer for which the hash is computed.
-     * @param prefixLength the number of hash functions to use (allows self-tuning).
-     * @return a String representing the concatenated hash value.
+     * @param layer the layer for which the signature is computed.
+     * @param prefixLength the number of hash functions to use.
+     * @return the packed signature, right aligned.
      */
+    public long computeSignature(Vector100Dtype vector, int layer, int prefixLength) {
+        int[] dots = scratch.get();
+        KERNEL.project(projections[layer], stride, h, vector.getDimension(), dots);
+        return signatureOf(dots, prefixLength);
+    }
+
     /**
-    * Compute the LSH hash prefix for `vector` at `layer`,
-    * using up to `prefixLength` hash functions.
-    * aValues[layer][i][j] is a byte in [-127,127].
-    * vector.getDimension()[j] is a short.
-    */
-    public String computeHash(Vector100Dtype vector, int layer, int prefixLength) {
-        short[] dims = vector.getDimension();         // the 100D vector components
-        StringBuilder sb = new StringBuilder();
-        int len = Math.min(prefixLength, h);          // only use up to h hash functions
+     * Compute the projections a_i * x of `vector` for every hash function of
+     * `layer`. Entry i decides bit i of the signature (see computeSignature);
+     * its magnitude is how far the vector is from flipping that bit, which
+     * is what multi-probe queries rank neighbouring buckets by.
+     *
+     * @param vector the 100D vector.
+     * @param layer the layer whose hash functions are used.
+     * @return the projections; entries from h on are padding.
+     */
+    public int[] project(Vector100Dtype vector, int layer) {
+        int[] dots = new int[stride];
+        KERNEL.project(projections[layer], stride, h, vector.getDimension(), dots);
+        return dots;
+    }
 
+    /**
+     * Pack the signs of the first `prefixLength` projections into a signature.
+     */
+    public long signatureOf(int[] dots, int prefixLength) {
+        int len = Math.min(prefixLength, h);          // only use up to h hash functions
+        long sig = 0;
         for (int i = 0; i < len; i++) {
-            int dot = 0;
-            // accumulate in an int; byte*short → int
-            for (int j = 0; j < 100; j++) {
-                dot += aValues[layer][i][j] * dims[j];
-            }
             // bit = 1 if dot > 0, else 0
-            sb.append(dot > 0 ? '1' : '0');
+            sig = (sig << 1) | (dots[i] > 0 ? 1 : 0);
         }
+        return sig;
+    }
 
-        return sb.toString();
+    /**
+     * Compute the full h-bit signature of `vector` at `layer`.
+     */
+    public long computeSignature(Vector100Dtype vector, int layer) {
+        return computeSignature(vector, layer, h);
+    }
+
+    /**
+     * Wrap a signature in the key class used by the prefix trees: IntegerKey
+     * for signatures of up to 31 bits, LongKey for wider ones.
+     */
+    public KeyClass signatureKey(long signature) {
+        if (h <= MAX_INT_KEY_BITS) {
+            return new IntegerKey((int) signature);
+        }
+        return new LongKey(signature);
+    }
+
+    /**
+     * Compute the prefix-tree key of `vector` at `layer`.
+     */
+    public KeyClass computeKey(Vector100Dtype vector, int layer) {
+        return signatureKey(computeSignature(vector, layer));
+    }
+
+    /** Key type of the prefix trees, AttrType.attrInteger or AttrType.attrLong. */
+    public int getKeyType() {
+        return h <= MAX_INT_KEY_BITS ? AttrType.attrInteger : AttrType.attrLong;
     }
 
-    // public String computeHash(Vector100Dtype vector, int layer, int prefixLength) {
-    //     short[] dims = vector.getDimension();
-    //     StringBuilder sb = new StringBuilder();
-    //     int len = Math.min(prefixLength, h);
-
-    //     for (int i = 0; i < len; i++) {
-    //         double dot = 0.0;
-    //         for (int j = 0; j < 100; j++) {
-    //             dot += aValues[layer][i][j] * dims[j];
-    //         }
-    //         // Compute the hash value using floor((dot + b) / W)
-    //         int hashVal = (int)(Math.floor(Math.abs(dot/* + bOffsets[layer][i]*/)));
-    //         sb.append(hashVal);
-    //     }
-
-    //     // double dot = 0.0;
-    //     // for (int j = 0; j < 100; j++) {
-    //     //     dot += aValues[layer][hashno][j] * dims[j];
-    //     // }
-    //     // // Compute the hash value using floor((dot + b) / W)
-    //     // int hashVal = (int)Math.floor((dot + bOffsets[layer][hashno]) / W);
-    //     // sb.append(hashVal);
-
-    //     return sb.toString();
-    // }
+    private int getKeySize() {
+        return h <= MAX_INT_KEY_BITS ? 4 : 8;
+    }
+
+    /**
+     * Compute the LSH hash prefix for `vector` at `layer` as a '0'/'1' string.
+     * Only kept for printing and debugging; index maintenance and scans use
+     * computeSignature.
+     */
+    public String computeHash(Vector100Dtype vector, int layer, int prefixLength) {
+        int len = Math.min(prefixLength, h);
+        long sig = computeSignature(vector, layer, len);
+        StringBuilder sb = new StringBuilder(len);
+        for (int i = len - 1; i >= 0; i--) {
+            sb.append(((sig >>> i) & 1) == 1 ? '1' : '0');
+        }
+        return sb.toString();
+    }
 
     /**
      * Inserts a new 100D vector (with its corresponding RID) into the index.
-     * For each layer, the full h-value hash is computed from the vector, then a Vector100DKey is created
-     * and inserted into that layer's prefix tree.
+     * For each layer, the full h-bit signature is computed from the vector and
+     * inserted into that layer's prefix tree (see signatureKey).
      *
      * @param vector the 100D vector to insert.
      * @param rid the record identifier for the corresponding data tuple.
@@ -288,27 +400,68 @@ public class LSHFIndexFile {
      */
     public void insert(Vector100Dtype vector, RID rid) throws Exception {
         for (int layer = 0; layer < L; layer++) {
-            // Compute the full h-value hash for this layer.
-            String hashVal = computeHash(vector, layer, h);
-            // Create a Vector100DKey using the computed hash string.
-            Vector100DKey key = new Vector100DKey(hashVal);
-            // Insert into the corresponding prefix tree.
-            IntegerKey convertedKey = LSHF.convertKey(key);
-
-            prefixTrees[layer].insert(convertedKey, rid);
+            prefixTrees[layer].insert(computeKey(vector, layer), rid);
         }
     }
 
     public void delete(Vector100Dtype vector, RID rid) throws Exception {
         for (int layer = 0; layer < L; layer++) {
-            // Compute the full h-value hash for this layer.
-            String hashVal = computeHash(vector, layer, h);
-            // Create a Vector100DKey using the computed hash string.
-            Vector100DKey key = new Vector100DKey(hashVal);
-            // Insert into the corresponding prefix tree.
-            IntegerKey convertedKey = LSHF.convertKey(key);
-
-            prefixTrees[layer].Delete(convertedKey, rid);
+            prefixTrees[layer].Delete(computeKey(vector, layer), rid);
+        }
+    }
+
+    /**
+     * Bulk-load every (still empty) layer from the vectors in `column` of `hf`.
+     *
+     * The heap file is scanned once and the signatures of all layers are
+     * computed together. Each layer's (key, rid) entries are sorted by a
+     * KeyDataSort, and the layer's prefix tree is then built bottom-up with
+     * full leaves by BTreeFile.bulkLoad.
+     *
+     * @param hf the indexed relation.
+     * @param column the 1-based number of the vector attribute.
+     * @throws Exception if scanning, sorting or building a layer fails.
+     */
+    public void bulkLoad(Heapfile hf, int column) throws Exception {
+        int[] attrCodes = headerPage.getAttrTypes();
+        AttrType[] types = new AttrType[attrCodes.length];
+        int nStrs = 0;
+        for (int i = 0; i < attrCodes.length; i++) {
+            types[i] = new AttrType(attrCodes[i]);
+            if (attrCodes[i] == AttrType.attrString) nStrs++;
+        }
+        short[] strSizes = new short[nStrs];
+        java.util.Arrays.fill(strSizes, DEFAULT_STR_SIZE);
+
+        // 1. one pass over the relation, spilling every layer's entries
+        KeyDataSort[] sorts = new KeyDataSort[L];
+        for (int l = 0; l < L; l++) {
+            sorts[l] = new KeyDataSort(fileName + "_bulk_layer" + l, getKeyType(), getKeySize());
+        }
+        Scan scan = hf.openScan();
+        RID rid = new RID();
+        Tuple t;
+        while ((t = scan.getNext(rid)) != null) {
+            t.setHdr((short) types.length, types, strSizes);
+            Vector100Dtype v = t.get100DVectFld(column);
+            for (int l = 0; l < L; l++) {
+                sorts[l].add(signatureKey(computeSignature(v, l)), rid);
+            }
+        }
+        scan.closescan();
+
+        // 2. sort each layer's entries and build its tree bottom-up
+        for (int l = 0; l < L; l++) {
+            try {
+                prefixTrees[l].bulkLoad(sorts[l]);
+            } catch (IllegalStateException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            } finally {
+                sorts[l].close();
+            }
         }
     }
 
@@ -373,9 +526,8 @@ public class LSHFIndexFile {
     }
 
     public void printAValues() throws IOException {
-        // Get the number of layers and hash functions from the header page.
-        int numLayers = headerPage.getNumLayers();
-        int numHashFuncs = headerPage.getNumHashFunctions();
+        int numLayers = L;
+        int numHashFuncs = h;
 
         System.out.println("LSH Forest A values:");
         for (int l = 0; l < numLayers; l++) {
@@ -383,8 +535,8 @@ public class LSHFIndexFile {
             for (int i = 0; i < numHashFuncs; i++) {
                 System.out.print("  Hash function " + i + ": ");
                 for (int j = 0; j < 100; j++) {
-                    // Retrieve each a value from the header page.
-                    byte a = headerPage.getAValue(l, i, j);
+                    // Seeded headers do not hold the a values, so print the loaded copy.
+                    byte a = aValues[l][i][j];
                     System.out.print(a + " ");
                 }
                 System.out.println();  // newline after each hash function
@@ -0,0 +1,101 @@
+package lshfindex;
+
+import java.util.PriorityQueue;
+
+/**
+ * ProbeSequence lists the buckets next to a query's bucket in one layer,
+ * most promising first, for multi-probe LSH.
+ *
+ * A neighbouring bucket is the query signature with a set of bits flipped.
+ * Flipping bit i costs proj_i^2, the squared distance of the query from the
+ * hyperplane of hash function i, and a set costs the sum of its bits. The
+ * sets are generated in ascending cost with the shift / expand scheme of
+ * Lv et al. (multi-probe LSH, VLDB 2007): bits are sorted by cost, and each
+ * set popped from a min-heap pushes the set with its largest bit replaced by
+ * the next one (shift) and the set with the next bit added (expand). Every
+ * non-empty set comes out exactly once.
+ */
+class ProbeSequence {
+
+    // flip mask of the i-th cheapest bit, and its cost
+    private final long[] mask;
+    private final long[] cost;
+    private final PriorityQueue<Probe> heap;
+
+    /**
+     * @param projections the query's projections in this layer (see
+     *        LSHFIndexFile.project); entry i decides signature bit h-1-i.
+     * @param h the number of hash functions of the layer.
+     */
+    ProbeSequence(int[] projections, int h) {
+        Integer[] order = new Integer[h];
+        for (int i = 0; i < h; i++) {
+            order[i] = i;
+        }
+        final long[] bitCost = new long[h];
+        for (int i = 0; i < h; i++) {
+            long p = projections[i];
+            bitCost[i] = p * p;
+        }
+        java.util.Arrays.sort(order, new java.util.Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+                return Long.compare(bitCost[a], bitCost[b]);
+            }
+        });
+
+        mask = new long[h];
+        cost = new long[h];
+        for (int r = 0; r < h; r++) {
+            mask[r] = 1L << (h - 1 - order[r]);
+            cost[r] = bitCost[order[r]];
+        }
+
+        heap = new PriorityQueue<Probe>();
+        if (h > 0) {
+            heap.add(new Probe(mask[0], cost[0], 0));
+        }
+    }
+
+    boolean hasNext() {
+        return !heap.isEmpty();
+    }
+
+    /** Cost of the set next() returns; only valid while hasNext(). */
+    long peekCost() {
+        return heap.peek().cost;
+    }
+
+    /**
+     * @return the bits to flip in the query signature for the next bucket.
+     */
+    long next() {
+        Probe p = heap.poll();
+        int last = p.last;
+        if (last + 1 < mask.length) {
+            // shift: replace the largest bit by the next one
+            heap.add(new Probe(p.flips ^ mask[last] ^ mask[last + 1],
+                               p.cost - cost[last] + cost[last + 1], last + 1));
+            // expand: add the next bit
+            heap.add(new Probe(p.flips | mask[last + 1],
+                               p.cost + cost[last + 1], last + 1));
+        }
+        return p.flips;
+    }
+
+    // A set of flipped bits; last is the rank of its most expensive bit.
+    private static class Probe implements Comparable<Probe> {
+        final long flips;
+        final long cost;
+        final int last;
+
+        Probe(long flips, long cost, int last) {
+            this.flips = flips;
+            this.cost = cost;
+            this.last = last;
+        }
+
+        public int compareTo(Probe o) {
+            return Long.compare(cost, o.cost);
+        }
+    }
+}
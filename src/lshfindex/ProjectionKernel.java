@@ -0,0 +1,36 @@
+package lshfindex;
+
+/**
+ * ProjectionKernel computes the random projections a_i * x of one LSH layer.
+ *
+ * The projection vectors of a layer are kept as one contiguous int[] block in
+ * column-major order: block[j * stride + i] is component j of projection i.
+ * stride is the number of hash functions h rounded up to a multiple of the
+ * kernel's lanes(); the padding rows are zero. Laying the block out this way
+ * lets every hash function of the layer be accumulated side by side, one
+ * vector component at a time.
+ */
+public interface ProjectionKernel {
+
+    /** The widest int vector (512 bits); a lane kernel's stride is a multiple of this. */
+    int LANE_MULTIPLE = 16;
+
+    /**
+     * The multiple the block of a layer is padded to: LANE_MULTIPLE for a
+     * kernel that computes a whole lane group at a time, 1 for one that
+     * computes only the h projections asked for.
+     */
+    int lanes();
+
+    /**
+     * Compute out[i] = sum_j block[j * stride + i] * x[j] for all i < h. A
+     * lane kernel also fills the padding entries, from h up to stride.
+     *
+     * @param block the column-major projection block of a layer.
+     * @param stride the padded number of projections in the block.
+     * @param h the number of projections wanted.
+     * @param x the vector components.
+     * @param out receives the projections; holds stride entries.
+     */
+    void project(int[] block, int stride, int h, short[] x, int[] out);
+}
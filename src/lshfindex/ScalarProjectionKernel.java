@@ -0,0 +1,26 @@
+package lshfindex;
+
+/**
+ * ScalarProjectionKernel: plain Java loops over the column-major block.
+ * Used whenever the jdk.incubator.vector module is not available. It
+ * computes only the h projections of a layer, so its blocks are not padded.
+ */
+public class ScalarProjectionKernel implements ProjectionKernel {
+
+    public int lanes() {
+        return 1;
+    }
+
+    public void project(int[] block, int stride, int h, short[] x, int[] out) {
+        for (int i = 0; i < h; i++) {
+            out[i] = 0;
+        }
+        for (int j = 0; j < x.length; j++) {
+            int xj = x[j];
+            int base = j * stride;
+            for (int i = 0; i < h; i++) {
+                out[i] += block[base + i] * xj;
+            }
+        }
+    }
+}
@@ -12,9 +12,9 @@ import java.util.Arrays;
 public class query {
 
   public static void main(String[] args) {
-    // Expecting: query DBNAME QSNAME INDEXOPTION NUMBUF
+    // Expecting: query DBNAME QSNAME INDEXOPTION NUMBUF, INDEXOPTION one of Y, N, M
     if (args.length != 4) {
-      System.err.println("Usage: query DBNAME QSNAME INDEXOPTION NUMBUF");
+      System.err.println("Usage: query DBNAME QSNAME INDEXOPTION(Y/N/M) NUMBUF");
       System.exit(1);
     }
 
@@ -55,23 +55,29 @@ public class query {
 
 
       // TODO: LSH Query
-      if (indexOption.equalsIgnoreCase("Y")) {
+      // Y: LSH forest ascent, M: multi-probe LSH on the same index
+      boolean multiProbe = indexOption.equalsIgnoreCase("M");
+      if (indexOption.equalsIgnoreCase("Y") || multiProbe) {
         String indexFileName = "batch_index_file";
         LSHFIndexFile lshf = new LSHFIndexFile(indexFileName);
         // Heapfile hf = new Heapfile("batch_file");
         LSHFFileScan scan = new LSHFFileScan(lshf, heapFile, targetVector);
-        String keyStr = lshf.computeHash(targetVector, 0, lshf.getH());
-        Vector100DKey key = new Vector100DKey(keyStr);
         if (qs.getQueryType() == QueryType.RANGE) {
           
-          // IntegerKey convertedKey = LSHF.convertKey(key);
-          Tuple[] results = scan.LSHFFileRangeScan(key, qs.getThreshold(), attrTypes, qs.getQueryField());
+          Tuple[] results = multiProbe
+            ? scan.LSHFFileMultiProbeRangeScan(qs.getThreshold(), 0, attrTypes, qs.getQueryField())
+            : scan.LSHFFileRangeScan(qs.getThreshold(), attrTypes, qs.getQueryField());
           
           if (results != null && results.length != 0) {
             System.out.println("Range Search Test: " + results[0]);
           }
         } else if (qs.getQueryType() == QueryType.NN) {
-          Tuple[] results = scan.LSHFFileNNScan(key, qs.getThreshold(), attrTypes, qs.getQueryField());
+          // candidates to read, by the number of neighbours
+          int budget = scan.candidateBudgetFor(qs.getThreshold());
+          scan.setCandidateBudget(budget);
+          Tuple[] results = multiProbe
+            ? scan.LSHFFileMultiProbeNNScan(qs.getThreshold(), budget, attrTypes, qs.getQueryField())
+            : scan.LSHFFileNNScan(qs.getThreshold(), attrTypes, qs.getQueryField());
           
           if (results != null && results.length != 0) {
             System.out.println("Range Search Test: " + results[0]);
@@ -104,11 +110,7 @@ public class query {
           fileScan.close();
         }
         else if (qs.getQueryType() == QueryType.NN) {
-          // **File Scan and Sort for NN (using Sort iterator)**
-          TupleOrder[] order = new TupleOrder[2];
-          order[0] = new TupleOrder(TupleOrder.Ascending);
-          order[1] = new TupleOrder(TupleOrder.Descending);
-
+          // **File Scan and Top-K by distance for NN**
           // print outputAttrTypes
 //          for (int i = 0; i < outAttrTypes.length; i++) {
 //            System.out.println(outAttrTypes[i].attrType);
@@ -116,8 +118,8 @@ public class query {
 
           FileScan fileScan = new FileScan("batch_file", attrTypes, Ssizes, (short)attrTypes.length, outAttrTypes, qs.getOutputFields().length, projlist, null);
 
-          Sort sortIterator = new Sort(outAttrTypes, (short) outAttrTypes.length, Ssizes,
-                  fileScan, qs.getQueryField(), order[0], 32, 500, targetVector, qs.getThreshold());
+          TopKDistance sortIterator = new TopKDistance(outAttrTypes, (short) outAttrTypes.length, Ssizes,
+                  fileScan, qs.getQueryField(), targetVector, qs.getThreshold(), 500);
 
           Tuple resultTuple;
           System.out.println("Result Tuple:");
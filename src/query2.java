@@ -7,7 +7,6 @@ import heap.Tuple;
 import iterator.*;
 import lshfindex.LSHFFileScan;
 import lshfindex.LSHFIndexFile;
-import lshfindex.Vector100DKey;
 import btree.*;
 
 import java.io.BufferedReader;
@@ -129,11 +128,10 @@ public class query2 {
             // open rel1’s LSH index
             LSHFIndexFile idx1 = new LSHFIndexFile(relName1 + "_" + QA1);
             LSHFFileScan  scan1 = new LSHFFileScan(idx1, heapFile1, targetVector);
-            // compute the starting bit‐string key for the rel1 range
-            KeyClass startKey1 = new Vector100DKey(idx1.computeHash(targetVector, 0, idx1.getH()));
+            // compute the starting signature key for the rel1 range
             // fetch all rel1 tuples within D1 of target
             Tuple[] outerTuples = scan1.LSHFFileRangeScan(
-                                    startKey1, D1, attrTypes1, QA1);
+                                    D1, attrTypes1, QA1);
             System.out.println("outer scan done. outer tuple number: " + outerTuples.length);
 
             // 2) for each outer tuple, probe rel2 by LSH range on its join‐vector
@@ -144,11 +142,10 @@ public class query2 {
               // open rel2’s LSH index
               LSHFIndexFile idx2 = new LSHFIndexFile(relName2 + "_" + QA2);
               LSHFFileScan  scan2 = new LSHFFileScan(idx2, heapFile2, v1);
-              KeyClass startKey2 = new Vector100DKey(idx2.computeHash(v1, 0, idx2.getH()));
               // fetch rel2 tuples whose vector is within D2 of v1
               System.out.println("start inner scan.");
               Tuple[] innerTuples = scan2.LSHFFileRangeScan(
-                                      startKey2, D2, attrTypes2, QA2);
+                                      D2, attrTypes2, QA2);
 
               // 3) join each matching inner tuple with t1 and output
               for (Tuple t2 : innerTuples) {
@@ -323,18 +320,17 @@ public class query2 {
             // 1) get top‐K rel1 tuples nearest target
             LSHFIndexFile idx1 = new LSHFIndexFile(relName1 + "_" + QA1);
             LSHFFileScan  scan1 = new LSHFFileScan(idx1, heapFile1, targetVector);
-            KeyClass startKey1 = new Vector100DKey(idx1.computeHash(targetVector, 0, idx1.getH()));
+            scan1.setCandidateBudget(scan1.candidateBudgetFor(K1));
             Tuple[] outerTuples = scan1.LSHFFileNNScan(
-                startKey1, K1, attrTypes1, QA1);
+                K1, attrTypes1, QA1);
 
             // 2) for each outer, do LSH range on rel2
             for (Tuple t1 : outerTuples) {
               Vector100Dtype v1 = t1.get100DVectFld(QA1);
               LSHFIndexFile idx2 = new LSHFIndexFile(relName2 + "_" + QA2);
               LSHFFileScan  scan2 = new LSHFFileScan(idx2, heapFile2, v1);
-              KeyClass startKey2 = new Vector100DKey(idx2.computeHash(v1, 0, idx2.getH()));
               Tuple[] innerTuples = scan2.LSHFFileRangeScan(
-                  startKey2, D2, attrTypes2, QA2);
+                  D2, attrTypes2, QA2);
               // Tuple[] innerTuples = scan2.LSHFFileNNScan(
               //   startKey2, D2, attrTypes2, QA2);
 
@@ -374,7 +370,7 @@ public class query2 {
             }
           } else if (!qs.getUseIndex() && qs2.getUseIndex()) {
             // nn NH
-            // **File Scan and Sort for NN (using Sort iterator)**
+            // **File Scan and Top-K by distance for NN**
             CondExpr[] outFilter = new CondExpr[2];
             outFilter[0] = new CondExpr();
             outFilter[0].next = null;
@@ -392,10 +388,6 @@ public class query2 {
             outFilter[0].distance = qs2.getThreshold();
             outFilter[1] = null;
 
-            TupleOrder[] order = new TupleOrder[2];
-            order[0] = new TupleOrder(TupleOrder.Ascending);
-            order[1] = new TupleOrder(TupleOrder.Descending);
-
             FileScan am = new FileScan(
               relName1,
               attrTypes1,
@@ -407,17 +399,15 @@ public class query2 {
               null
             );
 
-            Sort sortIterator = new Sort(
+            TopKDistance sortIterator = new TopKDistance(
               attrTypes1,
               (short) attrTypes1.length,
               Ssizes,
               am,
               qs.getQueryField(),
-              order[0],
-              32,
-              500,
               targetVector,
-              qs.getThreshold()
+              qs.getThreshold(),
+              500
             );
             
             System.out.println("Not using index for DJOIN query on first query, using index for DJOIN query on second query...");
@@ -430,10 +420,8 @@ public class query2 {
             String indexFileName = relName2 + "_" + QA2;
             LSHFIndexFile lshf = new LSHFIndexFile(indexFileName);
             LSHFFileScan scan = new LSHFFileScan(lshf, heapFile2, targetVector);
-            String keyStr = lshf.computeHash(targetVector, 0, lshf.getH());
-            Vector100DKey key = new Vector100DKey(keyStr);
 
-            Tuple[] results = scan.LSHFFileRangeScan(key, D2, attrTypes2, QA2);
+            Tuple[] results = scan.LSHFFileRangeScan(D2, attrTypes2, QA2);
 
             Tuple outerTuple;
             System.out.println("DJOIN(NN) NH Result Tuples:");
@@ -491,10 +479,6 @@ public class query2 {
             outFilter[0].distance = qs2.getThreshold();
             outFilter[1] = null;
 
-            TupleOrder[] order = new TupleOrder[2];
-            order[0] = new TupleOrder(TupleOrder.Ascending);
-            order[1] = new TupleOrder(TupleOrder.Descending);
-
             FileScan am = new FileScan(
               relName1,
               attrTypes1,
@@ -506,17 +490,15 @@ public class query2 {
               null
             );
 
-            Sort sortIterator = new Sort(
+            TopKDistance sortIterator = new TopKDistance(
               attrTypes1,
               (short) attrTypes1.length,
               Ssizes,
               am,
               qs.getQueryField(),
-              order[0],
-              32,
-              500,
               targetVector,
-              qs.getThreshold()
+              qs.getThreshold(),
+              500
             );
 
             NestedLoopsJoins inl = null;
@@ -765,10 +747,10 @@ public class query2 {
           String indexFileName = relName1 + "_" + qs.getQueryField();
           LSHFIndexFile lshf = new LSHFIndexFile(indexFileName);
           LSHFFileScan scan = new LSHFFileScan(lshf, heapFile1, targetVector);
-          String keyStr = lshf.computeHash(targetVector, 0, lshf.getH());
-          Vector100DKey key = new Vector100DKey(keyStr);
 
-          Tuple[] results = scan.LSHFFileRangeScan(key, qs.getThreshold(), attrTypes1, qs.getQueryField());
+          Tuple[] results = qs.getMultiProbe()
+            ? scan.LSHFFileMultiProbeRangeScan(qs.getThreshold(), 0, attrTypes1, qs.getQueryField())
+            : scan.LSHFFileRangeScan(qs.getThreshold(), attrTypes1, qs.getQueryField());
           System.out.println("Result Tuple:");
           for (Tuple tuple1 : results) {
             // project the output tuple
@@ -824,10 +806,13 @@ public class query2 {
           String indexFileName = relName1 + "_" + qs.getQueryField();
           LSHFIndexFile lshf = new LSHFIndexFile(indexFileName);
           LSHFFileScan scan = new LSHFFileScan(lshf, heapFile1, targetVector);
-          String keyStr = lshf.computeHash(targetVector, 0, lshf.getH());
-          Vector100DKey key = new Vector100DKey(keyStr);
 
-          Tuple[] results = scan.LSHFFileNNScan(key, qs.getThreshold(), attrTypes1, qs.getQueryField());
+          // candidates to read, by the number of neighbours
+          int budget = scan.candidateBudgetFor(qs.getThreshold());
+          scan.setCandidateBudget(budget);
+          Tuple[] results = qs.getMultiProbe()
+            ? scan.LSHFFileMultiProbeNNScan(qs.getThreshold(), budget, attrTypes1, qs.getQueryField())
+            : scan.LSHFFileNNScan(qs.getThreshold(), attrTypes1, qs.getQueryField());
           System.out.println("Result Tuple:");
           for (Tuple tuple1 : results) {
             // project the output tuple
@@ -841,11 +826,7 @@ public class query2 {
           }
         } else {
           System.out.println("Using file scan for NN query...");
-          // **File Scan and Sort for NN (using Sort iterator)**
-          TupleOrder[] order = new TupleOrder[2];
-          order[0] = new TupleOrder(TupleOrder.Ascending);
-          order[1] = new TupleOrder(TupleOrder.Descending);
-
+          // **File Scan and Top-K by distance for NN**
           FileScan fileScan = new FileScan(
             relName1,
             attrTypes1,
@@ -857,17 +838,15 @@ public class query2 {
             null
           );
 
-          Sort sortIterator = new Sort(
+          TopKDistance sortIterator = new TopKDistance(
             outAttrTypes,
             (short) outAttrTypes.length,
             Ssizes,
             fileScan,
             qs.getQueryField(),
-            order[0],
-            32,
-            500,
             targetVector,
-            qs.getThreshold()
+            qs.getThreshold(),
+            500
           );
 
           Tuple resultTuple;
@@ -944,7 +923,8 @@ public class query2 {
       qs[0].setQueryField(Integer.parseInt(tokens[0])); // QA
       qs[0].setTargetFileName(tokens[1]); // T: target vector file name
       qs[0].setThreshold(Integer.parseInt(tokens[2])); // D: distance threshold
-      qs[0].setUseIndex(tokens[3].equals("H")); // Use index or not
+      qs[0].setUseIndex(tokens[3].equals("H") || tokens[3].equals("M")); // Use index or not
+      qs[0].setMultiProbe(tokens[3].equals("M")); // M: multi-probe the index
       int numOut = tokens.length - 4;
       int[] outFields = new int[numOut];
       for (int i = 0; i < numOut; i++) {
@@ -961,7 +941,8 @@ public class query2 {
       qs[0].setQueryField(Integer.parseInt(tokens[0])); // QA
       qs[0].setTargetFileName(tokens[1]); // T: target vector file name
       qs[0].setThreshold(Integer.parseInt(tokens[2])); // K: number of nearest neighbors
-      qs[0].setUseIndex(tokens[3].equals("H")); // Use index or not
+      qs[0].setUseIndex(tokens[3].equals("H") || tokens[3].equals("M")); // Use index or not
+      qs[0].setMultiProbe(tokens[3].equals("M")); // M: multi-probe the index
       int numOut = tokens.length - 4;
       int[] outFields = new int[numOut];
       for (int i = 0; i < numOut; i++) {
@@ -38,7 +38,8 @@ class BMDriver extends TestDriver implements GlobalConst {
     System.out.print ("\n" + "Running " + testName() + " tests...." + "\n");
     
     try {
-      SystemDefs sysdef = new SystemDefs( dbpath, NUMBUF+20, NUMBUF, "Clock" );
+      // tests 4 on need pages of their own, test 6 more than the pool
+      SystemDefs sysdef = new SystemDefs( dbpath, 3*NUMBUF, NUMBUF, "Clock" );
     }
     
     catch (Exception e) {
@@ -110,13 +111,15 @@ class BMDriver extends TestDriver implements GlobalConst {
     
     //The following runs all the test functions 
     
-    //Running test1() to test6()
+    //Running test1() to test8()
     if (!test1()) { _passAll = FAIL; }    
     if (!test2()) { _passAll = FAIL; }
     if (!test3()) { _passAll = FAIL; }
     if (!test4()) { _passAll = FAIL; }
     if (!test5()) { _passAll = FAIL; }
     if (!test6()) { _passAll = FAIL; }
+    if (!test7()) { _passAll = FAIL; }
+    if (!test8()) { _passAll = FAIL; }
     
     return _passAll;
   }
@@ -575,35 +578,699 @@ class BMDriver extends TestDriver implements GlobalConst {
   }
 
   /**
-   * overrides the test4 function in TestDriver
+   * overrides the test4 function in TestDriver.  It tests that the
+   * write-behind writes dirty pages back once more than its limit are
+   * dirty, and that they stay in the pool.
    *
    * @return whether test4 has passed
    */
   protected boolean test4 () {
+
     PCounter.initialize();
-    return true;
+
+    System.out.print("\n  Test 4 exercises the write-behind:\n");
+
+    boolean status = OK;
+    int maxDirty = 20;
+    int numPages = 5 * maxDirty;
+    Page pg = new Page();
+    PageId pid = new PageId();
+    PageId firstPid = new PageId();
+
+    SystemDefs.JavabaseBM.setWriteBehind(maxDirty);
+
+    System.out.print("  - Dirty " + numPages + " new pages, with at most "
+            + maxDirty + " dirty at a time\n");
+
+    try {
+      firstPid = SystemDefs.JavabaseBM.newPage(pg, numPages);
+      SystemDefs.JavabaseBM.unpinPage(firstPid, false /*not dirty*/);
+    }
+    catch (Exception e) {
+      System.err.print("*** Could not allocate " + numPages);
+      System.err.print(" new pages in the database.\n");
+      e.printStackTrace();
+      SystemDefs.JavabaseBM.setWriteBehind(0);
+      return false;
+    }
+
+    for (pid.pid = firstPid.pid; status == OK && pid.pid < firstPid.pid + numPages;
+         pid.pid = pid.pid + 1) {
+      try {
+        SystemDefs.JavabaseBM.pinPage(pid, pg, /*emptyPage:*/ true);
+        Convert.setIntValue(pid.pid + 99999, 0, pg.getpage());
+        SystemDefs.JavabaseBM.unpinPage(pid, /*dirty:*/ true);
+      }
+      catch (Exception e) {
+        status = FAIL;
+        System.err.print("*** Could not write page " + pid.pid + "\n");
+        e.printStackTrace();
+      }
+    }
+
+    // the write-behind runs in the background; give it time
+    int dirty = SystemDefs.JavabaseBM.getNumDirtyBuffers();
+    for (int wait = 0; status == OK && dirty > maxDirty && wait < 100; wait++) {
+      try {
+        Thread.sleep(50);
+      }
+      catch (InterruptedException e) {
+        break;
+      }
+      dirty = SystemDefs.JavabaseBM.getNumDirtyBuffers();
+    }
+
+    if (status == OK && dirty > maxDirty) {
+      status = FAIL;
+      System.err.print("*** " + dirty + " frames still dirty, more than "
+              + maxDirty + "\n");
+    }
+    if (status == OK && PCounter.wcounter < numPages - maxDirty) {
+      status = FAIL;
+      System.err.print("*** Only " + PCounter.wcounter + " pages written back\n");
+    }
+
+    if (status == OK)
+      System.out.print("  - Read the pages back from the pool\n");
+
+    int reads = PCounter.rcounter;
+    for (pid.pid = firstPid.pid; status == OK && pid.pid < firstPid.pid + numPages;
+         pid.pid = pid.pid + 1) {
+      try {
+        SystemDefs.JavabaseBM.pinPage(pid, pg, /*emptyPage:*/ false);
+        if (Convert.getIntValue(0, pg.getpage()) != pid.pid + 99999) {
+          status = FAIL;
+          System.err.print("*** Read wrong data back from page " + pid.pid + "\n");
+        }
+        SystemDefs.JavabaseBM.unpinPage(pid, /*dirty:*/ false);
+      }
+      catch (Exception e) {
+        status = FAIL;
+        System.err.print("*** Could not read page " + pid.pid + "\n");
+        e.printStackTrace();
+      }
+    }
+    if (status == OK && PCounter.rcounter != reads) {
+      status = FAIL;
+      System.err.print("*** Pages written back were dropped from the pool\n");
+    }
+
+    SystemDefs.JavabaseBM.setWriteBehind(0);
+
+    for (pid.pid = firstPid.pid; pid.pid < firstPid.pid + numPages;
+         pid.pid = pid.pid + 1) {
+      try {
+        SystemDefs.JavabaseBM.freePage(pid);
+      }
+      catch (Exception e) {
+        status = FAIL;
+        System.err.print("*** Error freeing page " + pid.pid + "\n");
+        e.printStackTrace();
+      }
+    }
+
+    if (status == OK)
+      System.out.print("  Test 4 completed successfully.\n");
+
+    return status;
   }
 
   /**
-   * overrides the test5 function in TestDriver
+   * overrides the test5 function in TestDriver.  It tests that pages
+   * asked for with prefetchPage are read into the pool, unpinned, only
+   * when reading ahead is on.
    *
    * @return whether test5 has passed
    */
   protected boolean test5 () {
+
     PCounter.initialize();
-    return true;
+
+    System.out.print("\n  Test 5 exercises the read-ahead:\n");
+
+    boolean status = OK;
+    int numPages = 30;
+    Page pg = new Page();
+    PageId pid = new PageId();
+    PageId firstPid = new PageId();
+
+    System.out.print("  - Write " + numPages + " new pages and flush them "
+            + "out of the pool\n");
+
+    try {
+      firstPid = SystemDefs.JavabaseBM.newPage(pg, numPages);
+      SystemDefs.JavabaseBM.unpinPage(firstPid, false /*not dirty*/);
+      for (pid.pid = firstPid.pid; pid.pid < firstPid.pid + numPages;
+           pid.pid = pid.pid + 1) {
+        SystemDefs.JavabaseBM.pinPage(pid, pg, /*emptyPage:*/ true);
+        Convert.setIntValue(pid.pid + 99999, 0, pg.getpage());
+        SystemDefs.JavabaseBM.unpinPage(pid, /*dirty:*/ true);
+        SystemDefs.JavabaseBM.flushPage(pid);
+      }
+    }
+    catch (Exception e) {
+      System.err.print("*** Could not write the pages\n");
+      e.printStackTrace();
+      return false;
+    }
+
+    int unpinned = SystemDefs.JavabaseBM.getNumUnpinnedBuffers();
+
+    System.out.print("  - Ask for them with reading ahead off\n");
+
+    SystemDefs.JavabaseBM.setReadAhead(false);
+    int reads = PCounter.rcounter;
+    for (pid.pid = firstPid.pid; pid.pid < firstPid.pid + numPages;
+         pid.pid = pid.pid + 1)
+      SystemDefs.JavabaseBM.prefetchPage(pid);
+    // waits for the prefetcher, were it reading
+    SystemDefs.JavabaseBM.getNumUnpinnedBuffers();
+    if (PCounter.rcounter != reads) {
+      status = FAIL;
+      System.err.print("*** " + (PCounter.rcounter - reads)
+              + " pages read ahead with reading ahead off\n");
+    }
+
+    if (status == OK)
+      System.out.print("  - Ask for them with reading ahead on\n");
+
+    SystemDefs.JavabaseBM.setReadAhead(true);
+    for (pid.pid = firstPid.pid; status == OK && pid.pid < firstPid.pid + numPages;
+         pid.pid = pid.pid + 1)
+      SystemDefs.JavabaseBM.prefetchPage(pid);
+    if (status == OK && SystemDefs.JavabaseBM.getNumUnpinnedBuffers() != unpinned) {
+      status = FAIL;
+      System.err.print("*** The read-ahead left pages pinned\n");
+    }
+    if (status == OK && PCounter.rcounter != reads + numPages) {
+      status = FAIL;
+      System.err.print("*** " + (PCounter.rcounter - reads) + " pages read ahead, not "
+              + numPages + "\n");
+    }
+    SystemDefs.JavabaseBM.setReadAhead(SystemDefs.JavabaseReadAhead);
+
+    if (status == OK)
+      System.out.print("  - Pin them, which reads nothing more\n");
+
+    reads = PCounter.rcounter;
+    for (pid.pid = firstPid.pid; status == OK && pid.pid < firstPid.pid + numPages;
+         pid.pid = pid.pid + 1) {
+      try {
+        SystemDefs.JavabaseBM.pinPage(pid, pg, /*emptyPage:*/ false);
+        if (Convert.getIntValue(0, pg.getpage()) != pid.pid + 99999) {
+          status = FAIL;
+          System.err.print("*** Read wrong data back from page " + pid.pid + "\n");
+        }
+        SystemDefs.JavabaseBM.unpinPage(pid, /*dirty:*/ false);
+      }
+      catch (Exception e) {
+        status = FAIL;
+        System.err.print("*** Could not pin page " + pid.pid + "\n");
+        e.printStackTrace();
+      }
+    }
+    if (status == OK && PCounter.rcounter != reads) {
+      status = FAIL;
+      System.err.print("*** " + (PCounter.rcounter - reads)
+              + " pages read again after reading ahead\n");
+    }
+
+    for (pid.pid = firstPid.pid; pid.pid < firstPid.pid + numPages;
+         pid.pid = pid.pid + 1) {
+      try {
+        SystemDefs.JavabaseBM.freePage(pid);
+      }
+      catch (Exception e) {
+        status = FAIL;
+        System.err.print("*** Error freeing page " + pid.pid + "\n");
+        e.printStackTrace();
+      }
+    }
+
+    if (status == OK)
+      System.out.print("  Test 5 completed successfully.\n");
+
+    return status;
   }
 
   /**
-   * overrides the test6 function in TestDriver
+   * overrides the test6 function in TestDriver.  It tests that several
+   * threads can pin, change and unpin pages at the same time, half as
+   * many again as there are free frames, and that no change or pin is
+   * lost while the pool evicts them and the write-behind writes them
+   * back.
    *
    * @return whether test6 has passed
    */
   protected boolean test6 () {
+
     PCounter.initialize();
-    return true;
+
+    System.out.print("\n  Test 6 pins pages from several threads at once:\n");
+
+    boolean status = OK;
+    final int numThreads = 8;
+    final int numOps = 3000;
+    final int unpinned = SystemDefs.JavabaseBM.getNumUnpinnedBuffers();
+    final int numPages = unpinned + unpinned / 2;
+    Page pg = new Page();
+    PageId pid = new PageId();
+    PageId firstPid = new PageId();
+
+    System.out.print("  - Allocate " + numPages + " pages and write something on each one\n");
+
+    try {
+      firstPid = SystemDefs.JavabaseBM.newPage(pg, numPages);
+      SystemDefs.JavabaseBM.unpinPage(firstPid, false /*not dirty*/);
+      for (pid.pid = firstPid.pid; pid.pid < firstPid.pid + numPages;
+           pid.pid = pid.pid + 1) {
+        SystemDefs.JavabaseBM.pinPage(pid, pg, /*emptyPage:*/ true);
+        Convert.setIntValue(pid.pid + 99999, 0, pg.getpage());
+        for (int t = 0; t < numThreads; t++)
+          Convert.setIntValue(0, 4 + 4 * t, pg.getpage());
+        SystemDefs.JavabaseBM.unpinPage(pid, /*dirty:*/ true);
+      }
+    }
+    catch (Exception e) {
+      System.err.print("*** Could not write the pages\n");
+      e.printStackTrace();
+      return false;
+    }
+
+    System.out.print("  - " + numThreads + " threads pin random pages "
+            + numOps + " times each, and count in their own word of some\n");
+
+    // the write-behind reads the frames unlatched, looking for dirty ones
+    SystemDefs.JavabaseBM.setWriteBehind(64);
+
+    // thread t counts its changes to page i in counts[t][i]
+    final int[][] counts = new int[numThreads][numPages];
+    final List<String> errors = Collections.synchronizedList(new ArrayList<String>());
+    final int first = firstPid.pid;
+    Thread[] threads = new Thread[numThreads];
+    for (int t = 0; t < numThreads; t++) {
+      final int me = t;
+      threads[t] = new Thread() {
+        public void run() {
+          Random random = new Random(me);
+          Page page = new Page();
+          PageId id = new PageId();
+          try {
+            for (int op = 0; op < numOps && errors.isEmpty(); op++) {
+              int i = random.nextInt(numPages);
+              id.pid = first + i;
+              SystemDefs.JavabaseBM.pinPage(id, page, /*emptyPage:*/ false);
+              if (Convert.getIntValue(0, page.getpage()) != id.pid + 99999)
+                errors.add("Read wrong data back from page " + id.pid);
+              boolean dirty = random.nextInt(4) == 0;
+              if (dirty) {
+                int word = 4 + 4 * me;
+                Convert.setIntValue(Convert.getIntValue(word, page.getpage()) + 1,
+                                    word, page.getpage());
+                counts[me][i]++;
+              }
+              SystemDefs.JavabaseBM.unpinPage(id, dirty);
+            }
+          }
+          catch (Exception e) {
+            errors.add("Thread " + me + " failed on page " + id.pid + ": " + e);
+            e.printStackTrace();
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (int t = 0; t < numThreads; t++) {
+      try {
+        threads[t].join();
+      }
+      catch (InterruptedException e) {
+        errors.add("Interrupted waiting for thread " + t);
+      }
+    }
+    SystemDefs.JavabaseBM.setWriteBehind(0);
+    for (String error : errors) {
+      status = FAIL;
+      System.err.print("*** " + error + "\n");
+    }
+
+    if (status == OK && SystemDefs.JavabaseBM.getNumUnpinnedBuffers() != unpinned) {
+      status = FAIL;
+      System.err.print("*** " + (unpinned - SystemDefs.JavabaseBM.getNumUnpinnedBuffers())
+              + " pins left by the threads\n");
+    }
+    if (status == OK && PCounter.rcounter == 0) {
+      status = FAIL;
+      System.err.print("*** No page was evicted and read again\n");
+    }
+
+    if (status == OK)
+      System.out.print("  - Read every count back\n");
+
+    for (pid.pid = firstPid.pid; status == OK && pid.pid < firstPid.pid + numPages;
+         pid.pid = pid.pid + 1) {
+      try {
+        SystemDefs.JavabaseBM.pinPage(pid, pg, /*emptyPage:*/ false);
+        if (Convert.getIntValue(0, pg.getpage()) != pid.pid + 99999) {
+          status = FAIL;
+          System.err.print("*** Read wrong data back from page " + pid.pid + "\n");
+        }
+        for (int t = 0; status == OK && t < numThreads; t++) {
+          int count = Convert.getIntValue(4 + 4 * t, pg.getpage());
+          if (count != counts[t][pid.pid - firstPid.pid]) {
+            status = FAIL;
+            System.err.print("*** Page " + pid.pid + " counts " + count + " for thread "
+                    + t + ", not " + counts[t][pid.pid - firstPid.pid] + "\n");
+          }
+        }
+        SystemDefs.JavabaseBM.unpinPage(pid, /*dirty:*/ false);
+      }
+      catch (Exception e) {
+        status = FAIL;
+        System.err.print("*** Could not read page " + pid.pid + "\n");
+        e.printStackTrace();
+      }
+    }
+
+    for (pid.pid = firstPid.pid; pid.pid < firstPid.pid + numPages;
+         pid.pid = pid.pid + 1) {
+      try {
+        SystemDefs.JavabaseBM.freePage(pid);
+      }
+      catch (Exception e) {
+        status = FAIL;
+        System.err.print("*** Error freeing page " + pid.pid + "\n");
+        e.printStackTrace();
+      }
+    }
+
+    if (status == OK)
+      System.out.print("  Test 6 completed successfully.\n");
+
+    return status;
+  }
+
+  /**
+   * Reads one pass of a mixed workload through a pool of its own:
+   * each step pins the next page of a cyclic scan, then a random page
+   * of a small hot set.
+   *
+   * @return the number of pages read
+   */
+  protected int mixedReads (String policy, int firstPid, int numScan,
+                            int numHot, int numSteps) throws Exception {
+
+    BufMgr bm = new BufMgr(MIXED_POOL, policy);
+    Random random = new Random(7);
+    Page pg = new Page();
+    PageId pid = new PageId();
+
+    PCounter.initialize();
+    for (int step = 0; step < numSteps; step++) {
+      pid.pid = firstPid + numHot + step % numScan;
+      bm.pinPage(pid, pg, /*emptyPage:*/ false);
+      bm.unpinPage(pid, /*dirty:*/ false);
+      pid.pid = firstPid + random.nextInt(numHot);
+      bm.pinPage(pid, pg, /*emptyPage:*/ false);
+      if (Convert.getIntValue(0, pg.getpage()) != pid.pid + 99999)
+        throw new Exception("Read wrong data back from page " + pid.pid);
+      bm.unpinPage(pid, /*dirty:*/ false);
+    }
+    if (bm.getNumUnpinnedBuffers() != MIXED_POOL)
+      throw new Exception((MIXED_POOL - bm.getNumUnpinnedBuffers())
+              + " pins left in the " + policy + " pool");
+    return PCounter.rcounter;
   }
 
+  private static final int MIXED_POOL = 100;
+
+  /**
+   * Test 7 compares the pages read by 2Q, LRU and Clock for a scan
+   * mixed with a hot set that fits in the pool: the scan pushes the
+   * hot pages out of an LRU or Clock pool, but only goes through A1in
+   * in a 2Q one.
+   *
+   * @return whether test7 has passed
+   */
+  protected boolean test7 () {
+
+    System.out.print("\n  Test 7 compares 2Q with LRU and Clock on a scan mixed "
+            + "with a hot set:\n");
+
+    boolean status = OK;
+    final int numScan = 1000;
+    final int numHot = 60;
+    final int numSteps = 20000;
+    final int numPages = numHot + numScan;
+    Page pg = new Page();
+    PageId pid = new PageId();
+    PageId firstPid = new PageId();
+
+    System.out.print("  - Write " + numHot + " hot pages and " + numScan
+            + " scan pages to disk\n");
+
+    try {
+      firstPid = SystemDefs.JavabaseBM.newPage(pg, numPages);
+      SystemDefs.JavabaseBM.unpinPage(firstPid, false /*not dirty*/);
+      for (pid.pid = firstPid.pid; pid.pid < firstPid.pid + numPages;
+           pid.pid = pid.pid + 1) {
+        SystemDefs.JavabaseBM.pinPage(pid, pg, /*emptyPage:*/ true);
+        Convert.setIntValue(pid.pid + 99999, 0, pg.getpage());
+        SystemDefs.JavabaseBM.unpinPage(pid, /*dirty:*/ true);
+        SystemDefs.JavabaseBM.flushPage(pid);
+      }
+    }
+    catch (Exception e) {
+      System.err.print("*** Could not write the pages\n");
+      e.printStackTrace();
+      return false;
+    }
+
+    System.out.print("  - Run " + numSteps + " steps through a pool of "
+            + MIXED_POOL + " frames for each policy\n");
+
+    String[] policies = { "2Q", "LRU", "Clock" };
+    int[] reads = new int[policies.length];
+    try {
+      for (int i = 0; i < policies.length; i++) {
+        reads[i] = mixedReads(policies[i], firstPid.pid, numScan, numHot, numSteps);
+        System.out.print("    " + policies[i] + ": " + reads[i] + " pages read\n");
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      System.err.print("*** " + e.getMessage() + "\n");
+      e.printStackTrace();
+    }
+
+    for (int i = 1; status == OK && i < policies.length; i++) {
+      if (reads[0] >= reads[i]) {
+        status = FAIL;
+        System.err.print("*** 2Q read " + reads[0] + " pages, no fewer than "
+                + policies[i] + "'s " + reads[i] + "\n");
+      }
+    }
+
+    for (pid.pid = firstPid.pid; pid.pid < firstPid.pid + numPages;
+         pid.pid = pid.pid + 1) {
+      try {
+        SystemDefs.JavabaseBM.freePage(pid);
+      }
+      catch (Exception e) {
+        status = FAIL;
+        System.err.print("*** Error freeing page " + pid.pid + "\n");
+        e.printStackTrace();
+      }
+    }
+
+    if (status == OK)
+      System.out.print("  Test 7 completed successfully.\n");
+
+    return status;
+  }
+
+  /**
+   * Checks the page an LRU or MRU pool of four frames evicts, and that
+   * it refuses a fifth page while all four are pinned.  Pages 0 to 3
+   * are unpinned in order and page 0 is pinned and unpinned again,
+   * before page 4 takes a frame; pinning a page still in the pool
+   * reads nothing.
+   *
+   * @param victim the page the policy should evict, from 0 to 3
+   */
+  protected void checkVictim (String policy, int firstPid, int victim)
+    throws Exception {
+
+    BufMgr bm = new BufMgr(4, policy);
+    Page pg = new Page();
+    PageId pid = new PageId();
+
+    for (pid.pid = firstPid; pid.pid < firstPid + 4; pid.pid = pid.pid + 1)
+      bm.pinPage(pid, pg, /*emptyPage:*/ false);
+
+    pid.pid = firstPid + 4;
+    try {
+      bm.pinPage(pid, pg, /*emptyPage:*/ false);
+      throw new Exception("The " + policy + " pool took a fifth page with four pinned");
+    }
+    catch (BufferPoolExceededException e) {
+      System.out.print("    " + policy + ": a fifth page was refused, as expected\n");
+    }
+
+    for (pid.pid = firstPid; pid.pid < firstPid + 4; pid.pid = pid.pid + 1)
+      bm.unpinPage(pid, /*dirty:*/ false);
+    pid.pid = firstPid;
+    bm.pinPage(pid, pg, /*emptyPage:*/ false);
+    bm.unpinPage(pid, /*dirty:*/ false);
+
+    pid.pid = firstPid + 4;
+    bm.pinPage(pid, pg, /*emptyPage:*/ false);
+    bm.unpinPage(pid, /*dirty:*/ false);
+
+    PCounter.initialize();
+    for (int i = 0; i < 4; i++) {
+      if (i == victim)
+        continue;
+      pid.pid = firstPid + i;
+      bm.pinPage(pid, pg, /*emptyPage:*/ false);
+      bm.unpinPage(pid, /*dirty:*/ false);
+      if (PCounter.rcounter != 0)
+        throw new Exception(policy + " evicted page " + i + ", not " + victim);
+    }
+    pid.pid = firstPid + victim;
+    bm.pinPage(pid, pg, /*emptyPage:*/ false);
+    bm.unpinPage(pid, /*dirty:*/ false);
+    if (PCounter.rcounter != 1)
+      throw new Exception(policy + " did not evict page " + victim);
+    System.out.print("    " + policy + ": page " + victim + " was evicted, as expected\n");
+
+    if (bm.getNumUnpinnedBuffers() != 4)
+      throw new Exception((4 - bm.getNumUnpinnedBuffers())
+              + " pins left in the " + policy + " pool");
+  }
+
+  /**
+   * Reads a relation of numPages pages numPasses times over, in order,
+   * through a pool of its own.
+   *
+   * @return the number of pages read
+   */
+  protected int cyclicReads (String policy, int firstPid, int numPages,
+                             int numPasses) throws Exception {
+
+    BufMgr bm = new BufMgr(MIXED_POOL, policy);
+    Page pg = new Page();
+    PageId pid = new PageId();
+
+    PCounter.initialize();
+    for (int pass = 0; pass < numPasses; pass++) {
+      for (pid.pid = firstPid; pid.pid < firstPid + numPages; pid.pid = pid.pid + 1) {
+        bm.pinPage(pid, pg, /*emptyPage:*/ false);
+        if (Convert.getIntValue(0, pg.getpage()) != pid.pid + 99999)
+          throw new Exception("Read wrong data back from page " + pid.pid);
+        bm.unpinPage(pid, /*dirty:*/ false);
+      }
+    }
+    return PCounter.rcounter;
+  }
+
+  /**
+   * Test 8 checks the victims LRU and MRU choose, and that both refuse
+   * a page when every frame is pinned.  It then reads a relation 20%
+   * larger than the pool again and again: LRU reads every page each
+   * time, while MRU keeps most of the relation in the pool.
+   *
+   * @return whether test8 has passed
+   */
+  protected boolean test8 () {
+
+    System.out.print("\n  Test 8 checks the victims of LRU and MRU:\n");
+
+    boolean status = OK;
+    final int numPages = MIXED_POOL + MIXED_POOL / 5;
+    final int numPasses = 500;
+    Page pg = new Page();
+    PageId pid = new PageId();
+    PageId firstPid = new PageId();
+
+    try {
+      firstPid = SystemDefs.JavabaseBM.newPage(pg, numPages);
+      SystemDefs.JavabaseBM.unpinPage(firstPid, false /*not dirty*/);
+      for (pid.pid = firstPid.pid; pid.pid < firstPid.pid + numPages;
+           pid.pid = pid.pid + 1) {
+        SystemDefs.JavabaseBM.pinPage(pid, pg, /*emptyPage:*/ true);
+        Convert.setIntValue(pid.pid + 99999, 0, pg.getpage());
+        SystemDefs.JavabaseBM.unpinPage(pid, /*dirty:*/ true);
+        SystemDefs.JavabaseBM.flushPage(pid);
+      }
+    }
+    catch (Exception e) {
+      System.err.print("*** Could not write the pages\n");
+      e.printStackTrace();
+      return false;
+    }
+
+    int first = firstPid.pid;
+    try {
+      // LRU evicts the page unpinned longest ago, MRU the latest
+      checkVictim("LRU", first, 1);
+      checkVictim("MRU", first, 0);
+    }
+    catch (Exception e) {
+      status = FAIL;
+      System.err.print("*** " + e.getMessage() + "\n");
+      e.printStackTrace();
+    }
+
+    if (status == OK)
+      System.out.print("  - Read " + numPages + " pages " + numPasses
+              + " times through a pool of " + MIXED_POOL + " frames\n");
+
+    try {
+      int lruReads = status == OK ? cyclicReads("LRU", first, numPages, numPasses) : 0;
+      int mruReads = status == OK ? cyclicReads("MRU", first, numPages, numPasses) : 0;
+      if (status == OK) {
+        System.out.print("    LRU: " + lruReads + " pages read, MRU: " + mruReads + "\n");
+        if (lruReads != numPages * numPasses) {
+          status = FAIL;
+          System.err.print("*** LRU read " + lruReads + " pages, not "
+                  + numPages * numPasses + "\n");
+        }
+        if (mruReads != CYCLIC_MRU_READS) {
+          status = FAIL;
+          System.err.print("*** MRU read " + mruReads + " pages, not "
+                  + CYCLIC_MRU_READS + "\n");
+        }
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      System.err.print("*** " + e.getMessage() + "\n");
+      e.printStackTrace();
+    }
+
+    for (pid.pid = firstPid.pid; pid.pid < firstPid.pid + numPages;
+         pid.pid = pid.pid + 1) {
+      try {
+        SystemDefs.JavabaseBM.freePage(pid);
+      }
+      catch (Exception e) {
+        status = FAIL;
+        System.err.print("*** Error freeing page " + pid.pid + "\n");
+        e.printStackTrace();
+      }
+    }
+
+    if (status == OK)
+      System.out.print("  Test 8 completed successfully.\n");
+
+    return status;
+  }
+
+  // Pages MRU reads for 500 passes over 120 pages in 100 frames: the
+  // first pass, then about 20 a pass.
+  private static final int CYCLIC_MRU_READS = 10180;
+
   /**
    * overrides the testName function in TestDriver
    *
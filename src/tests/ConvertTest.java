@@ -0,0 +1,289 @@
+package tests;
+
+import java.io.*;
+import java.util.*;
+import global.*;
+
+/**
+ * This class tests Convert against the bytes DataOutputStream writes and
+ * the values DataInputStream reads, at aligned and unaligned offsets.
+ */
+class CONVERTDriver extends TestDriver {
+
+  private static int BUF_SIZE = 256;
+  private static byte FILL = (byte) 0x5a;     // bytes Convert must leave alone
+  private static int[] OFFSETS = { 0, 1, 2, 3, 5, 7, 13 };
+
+  public CONVERTDriver() {
+    super("converttest");
+  }
+
+  /** A buffer of FILL bytes with expected copied in at off. */
+  private static byte[] placed(byte[] expected, int off) {
+    byte[] buf = new byte[BUF_SIZE];
+    Arrays.fill(buf, FILL);
+    System.arraycopy(expected, 0, buf, off, expected.length);
+    return buf;
+  }
+
+  private static byte[] blank() {
+    byte[] buf = new byte[BUF_SIZE];
+    Arrays.fill(buf, FILL);
+    return buf;
+  }
+
+  /**
+   * Check that Convert wrote expected at off of buf and nothing else.
+   */
+  private boolean wrote(String what, byte[] buf, byte[] expected, int off) {
+    if (!Arrays.equals(buf, placed(expected, off))) {
+      System.err.println ("*** " + what + " at offset " + off
+                          + " differs from DataOutputStream");
+      return FAIL;
+    }
+    return OK;
+  }
+
+  private boolean read(String what, boolean same, int off) {
+    if (!same) {
+      System.err.println ("*** " + what + " at offset " + off
+                          + " differs from DataInputStream");
+      return FAIL;
+    }
+    return OK;
+  }
+
+  /**
+   * Integers, longs, shorts and characters, at their limits, around 0
+   * and at random.
+   */
+  protected boolean test1() {
+    System.out.println("------------------------ TEST 1 --------------------------");
+    System.out.println("  int, long, short and char values");
+    boolean status = OK;
+    Random random = new Random(22);
+    long[] values = { 0, 1, -1, 127, -128, 255, 256, -32768, 32767, 65535,
+                      Integer.MIN_VALUE, Integer.MAX_VALUE,
+                      Long.MIN_VALUE, Long.MAX_VALUE, 0x0102030405060708L,
+                      random.nextLong(), random.nextLong(), random.nextLong() };
+    try {
+      for (int v = 0; v < values.length; v++) {
+        long value = values[v];
+        for (int o = 0; o < OFFSETS.length; o++) {
+          int off = OFFSETS[o];
+
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          new DataOutputStream(bytes).writeInt((int) value);
+          byte[] buf = blank();
+          Convert.setIntValue((int) value, off, buf);
+          status &= wrote("int " + (int) value, buf, bytes.toByteArray(), off);
+          buf = placed(bytes.toByteArray(), off);
+          status &= read("int " + (int) value, Convert.getIntValue(off, buf)
+                         == new DataInputStream(new ByteArrayInputStream(buf, off, 4)).readInt(), off);
+
+          bytes = new ByteArrayOutputStream();
+          new DataOutputStream(bytes).writeLong(value);
+          buf = blank();
+          Convert.setLongValue(value, off, buf);
+          status &= wrote("long " + value, buf, bytes.toByteArray(), off);
+          buf = placed(bytes.toByteArray(), off);
+          status &= read("long " + value, Convert.getLongValue(off, buf)
+                         == new DataInputStream(new ByteArrayInputStream(buf, off, 8)).readLong(), off);
+
+          bytes = new ByteArrayOutputStream();
+          new DataOutputStream(bytes).writeShort((short) value);
+          buf = blank();
+          Convert.setShortValue((short) value, off, buf);
+          status &= wrote("short " + (short) value, buf, bytes.toByteArray(), off);
+          buf = placed(bytes.toByteArray(), off);
+          status &= read("short " + (short) value, Convert.getShortValue(off, buf)
+                         == new DataInputStream(new ByteArrayInputStream(buf, off, 2)).readShort(), off);
+
+          bytes = new ByteArrayOutputStream();
+          new DataOutputStream(bytes).writeChar((char) value);
+          buf = blank();
+          Convert.setCharValue((char) value, off, buf);
+          status &= wrote("char " + (int) (char) value, buf, bytes.toByteArray(), off);
+          buf = placed(bytes.toByteArray(), off);
+          status &= read("char " + (int) (char) value, Convert.getCharValue(off, buf)
+                         == new DataInputStream(new ByteArrayInputStream(buf, off, 2)).readChar(), off);
+        }
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 1 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * Floats, NaNs among them: a NaN is written as the canonical NaN, as
+   * writeFloat does, and read back with its bits as they are.
+   */
+  protected boolean test2() {
+    System.out.println("------------------------ TEST 2 --------------------------");
+    System.out.println("  float values, NaNs, infinities and signed zeros");
+    boolean status = OK;
+    int[] bits = { 0x00000000, 0x80000000, 0x3f800000, 0xbf800000,
+                   0x00000001, 0x007fffff, 0x7f7fffff, 0xff7fffff,
+                   0x7f800000, 0xff800000,                          // infinities
+                   0x7fc00000, 0xffc00000, 0x7fc00001, 0x7f800001 }; // NaNs
+    try {
+      for (int b = 0; b < bits.length; b++) {
+        float value = Float.intBitsToFloat(bits[b]);
+        String what = "float 0x" + Integer.toHexString(bits[b]);
+        for (int o = 0; o < OFFSETS.length; o++) {
+          int off = OFFSETS[o];
+
+          ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+          new DataOutputStream(bytes).writeFloat(value);
+          byte[] buf = blank();
+          Convert.setFloValue(value, off, buf);
+          status &= wrote(what, buf, bytes.toByteArray(), off);
+
+          // the bits as they are, not as writeFloat would canonicalize them
+          bytes = new ByteArrayOutputStream();
+          new DataOutputStream(bytes).writeInt(bits[b]);
+          buf = placed(bytes.toByteArray(), off);
+          float expected = new DataInputStream(new ByteArrayInputStream(buf, off, 4)).readFloat();
+          status &= read(what, Float.floatToRawIntBits(Convert.getFloValue(off, buf))
+                         == Float.floatToRawIntBits(expected), off);
+        }
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 2 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * Runs of short integers, and 100D vectors, which are written as one.
+   */
+  protected boolean test3() {
+    System.out.println("------------------------ TEST 3 --------------------------");
+    System.out.println("  getShortValues, setShortValues and 100D vectors");
+    boolean status = OK;
+    Random random = new Random(23);
+    int[] lengths = { 0, 1, 2, 7, 100 };
+    try {
+      for (int l = 0; l < lengths.length; l++) {
+        short[] values = new short[lengths[l]];
+        for (int i = 0; i < values.length; i++)
+          values[i] = (short) random.nextInt(65536);
+        if (values.length > 2) {
+          values[0] = Short.MIN_VALUE;
+          values[1] = Short.MAX_VALUE;
+          values[2] = -1;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < values.length; i++)
+          out.writeShort(values[i]);
+
+        for (int o = 0; o < OFFSETS.length; o++) {
+          int off = OFFSETS[o];
+          String what = values.length + " shorts";
+
+          byte[] buf = blank();
+          Convert.setShortValues(values, off, buf);
+          status &= wrote(what, buf, bytes.toByteArray(), off);
+
+          buf = placed(bytes.toByteArray(), off);
+          DataInputStream in = new DataInputStream(new ByteArrayInputStream(buf, off, 2 * values.length));
+          short[] expected = new short[values.length];
+          for (int i = 0; i < expected.length; i++)
+            expected[i] = in.readShort();
+          short[] got = new short[values.length];
+          Convert.getShortValues(off, buf, got);
+          status &= read(what, Arrays.equals(got, expected), off);
+
+          if (values.length == 100) {
+            // a vector keeps its values within +-10000
+            Vector100Dtype vector = new Vector100Dtype(values);
+            ByteArrayOutputStream vbytes = new ByteArrayOutputStream();
+            out = new DataOutputStream(vbytes);
+            for (int i = 0; i < 100; i++)
+              out.writeShort(vector.getDimension()[i]);
+
+            buf = blank();
+            Convert.set100DVectorValue(vector, off, buf);
+            status &= wrote("100D vector", buf, vbytes.toByteArray(), off);
+            buf = placed(vbytes.toByteArray(), off);
+            status &= read("100D vector", Convert.get100DVectorValue(off, buf).equals(vector), off);
+          }
+        }
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 3 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * Strings, which are still modified UTF-8 with a 2-byte length.
+   */
+  protected boolean test4() {
+    System.out.println("------------------------ TEST 4 --------------------------");
+    System.out.println("  string values");
+    boolean status = OK;
+    String[] values = { "", "a", "minibase", "café über", "中文",
+                        "nul\u0000inside" };
+    try {
+      for (int v = 0; v < values.length; v++) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeUTF(values[v]);
+        int length = bytes.size();
+        for (int o = 0; o < OFFSETS.length; o++) {
+          int off = OFFSETS[o];
+          String what = "string \"" + values[v] + "\"";
+
+          byte[] buf = blank();
+          Convert.setStrValue(values[v], off, buf);
+          status &= wrote(what, buf, bytes.toByteArray(), off);
+
+          buf = placed(bytes.toByteArray(), off);
+          status &= read(what, Convert.getStrValue(off, buf, length).equals(
+                           new DataInputStream(new ByteArrayInputStream(buf, off, length)).readUTF()), off);
+        }
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 4 completed ---------------------\n");
+    return status;
+  }
+
+  protected String testName()
+  {
+    return "Convert";
+  }
+}
+
+public class ConvertTest
+{
+  public static void main(String argv[])
+  {
+    boolean convertstatus;
+
+    CONVERTDriver convertt = new CONVERTDriver();
+
+    convertstatus = convertt.runTests();
+    if (convertstatus != true) {
+      System.out.println("Error ocurred during Convert tests");
+    }
+    else {
+      System.out.println("Convert tests completed successfully");
+    }
+  }
+}
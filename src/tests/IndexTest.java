@@ -776,10 +776,159 @@ class IndexDriver extends TestDriver
     return status;
   }
     
+  private static int   BULK_RECORDS = 1500;
+  private static int   BULK_KEYS = 200;      // distinct keys
+  private static int   BULK_HEAVY = 400;     // copies of one key, over several leaves
+
+  // Key number k of the given type: ints and longs on both sides of 0,
+  // longs beyond 32 bits.
+  private KeyClass bulkKey(int keyType, int k)
+  {
+    switch (keyType) {
+    case AttrType.attrInteger:
+      return new IntegerKey(7 * (k - BULK_KEYS / 2));
+    case AttrType.attrString:
+      return new StringKey("key" + k);
+    default:
+      return new LongKey((k - BULK_KEYS / 2) * 0x100000001L);
+    }
+  }
+
+  private String describe(KeyDataEntry e)
+  {
+    RID rid = ((LeafData) e.data).getData();
+    return e.key + " " + rid.pageNo.pid + "." + rid.slotNo;
+  }
+
+  /**
+   * The entries of tree btf from lo to hi, or "" if they do not come
+   * in ascending key order.
+   */
+  private String scanTree(BTreeFile btf, KeyClass lo, KeyClass hi)
+    throws Exception
+  {
+    java.util.ArrayList<String> found = new java.util.ArrayList<String>();
+    BTFileScan scan = btf.new_scan(lo, hi);
+    KeyClass last = null;
+    boolean ordered = true;
+    KeyDataEntry e;
+    while ((e = scan.get_next()) != null) {
+      if (last != null && BT.keyCompare(e.key, last) < 0)
+        ordered = false;
+      last = e.key;
+      found.add(describe(e));
+    }
+    scan.DestroyBTreeFileScan();
+    java.util.Collections.sort(found);
+    return ordered ? found.toString() : "";
+  }
+
+  /**
+   * Builds a tree of the given key type by inserts and another by bulk
+   * load, from the same entries, and compares their scans.
+   */
+  private boolean compareBulkLoad(int keyType, int keySize, String name)
+    throws Exception
+  {
+    boolean status = OK;
+    Random random = new Random(keyType);
+    KeyDataEntry[] entries = new KeyDataEntry[BULK_RECORDS];
+    for (int i = 0; i < BULK_RECORDS; i++) {
+      int k = i < BULK_HEAVY ? BULK_KEYS / 3 : random.nextInt(BULK_KEYS);
+      entries[i] = new KeyDataEntry(bulkKey(keyType, k),
+                                    new RID(new PageId(1000 + i / 50), i % 50));
+    }
+
+    BTreeFile inserted = new BTreeFile(name + "Inserted", keyType, keySize, 1/*delete*/);
+    for (int i = 0; i < BULK_RECORDS; i++)
+      inserted.insert(entries[i].key, ((LeafData) entries[i].data).getData());
+
+    BTreeFile loaded = new BTreeFile(name + "Loaded", keyType, keySize, 1/*delete*/);
+    KeyDataSort sorted = new KeyDataSort(name + "Run", keyType,
+                                         keyType == AttrType.attrString ? keySize - 2 : keySize);
+    try {
+      for (int i = 0; i < BULK_RECORDS; i++)
+        sorted.add(entries[i].key, ((LeafData) entries[i].data).getData());
+      loaded.bulkLoad(sorted);
+    } finally {
+      sorted.close();
+    }
+
+    // everything, a range, the key copied over several leaves, and
+    // ranges open at one end
+    KeyClass[][] ranges = {
+      { null, null },
+      { bulkKey(keyType, 20), bulkKey(keyType, 120) },
+      { bulkKey(keyType, BULK_KEYS / 3), bulkKey(keyType, BULK_KEYS / 3) },
+      { null, bulkKey(keyType, 50) },
+      { bulkKey(keyType, 150), null }
+    };
+    for (int r = 0; r < ranges.length; r++) {
+      KeyClass lo = ranges[r][0];
+      KeyClass hi = ranges[r][1];
+      java.util.ArrayList<String> expected = new java.util.ArrayList<String>();
+      for (int i = 0; i < BULK_RECORDS; i++)
+        if ((lo == null || BT.keyCompare(entries[i].key, lo) >= 0)
+            && (hi == null || BT.keyCompare(entries[i].key, hi) <= 0))
+          expected.add(describe(entries[i]));
+      java.util.Collections.sort(expected);
+
+      String byInsert = scanTree(inserted, lo, hi);
+      String byLoad = scanTree(loaded, lo, hi);
+      if (!byInsert.equals(expected.toString())) {
+        System.err.println("Test4 -- OOPS! " + name + " tree built by inserts scans "
+                           + lo + " to " + hi + " wrong");
+        status = FAIL;
+      }
+      if (!byLoad.equals(byInsert)) {
+        System.err.println("Test4 -- OOPS! bulk-loaded " + name + " tree scans "
+                           + lo + " to " + hi + " differently");
+        status = FAIL;
+      }
+    }
+
+    inserted.destroyFile();
+    loaded.destroyFile();
+    return status;
+  }
+
+  /**
+   * A bulk-loaded B+ tree answers scans as one built by inserts, with
+   * integer, string and long keys.
+   */
   protected boolean test4()
   {
     PCounter.initialize();
-    return true;
+
+    System.out.println("------------------------ TEST 4 --------------------------");
+
+    boolean status = OK;
+    int unpinned = SystemDefs.JavabaseBM.getNumUnpinnedBuffers();
+
+    try {
+      if (!compareBulkLoad(AttrType.attrInteger, 4, "BulkInt"))
+        status = FAIL;
+      if (!compareBulkLoad(AttrType.attrString, 10 + 2, "BulkString"))
+        status = FAIL;
+      if (!compareBulkLoad(AttrType.attrLong, 8, "BulkLong"))
+        status = FAIL;
+    } catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+
+    if (SystemDefs.JavabaseBM.getNumUnpinnedBuffers() != unpinned) {
+      System.err.println("Test4 -- OOPS! "
+                         + (unpinned - SystemDefs.JavabaseBM.getNumUnpinnedBuffers())
+                         + " pages left pinned");
+      status = FAIL;
+    }
+    if (status == OK)
+      System.err.println("Test4 -- Bulk-loaded trees scan as inserted ones");
+
+    System.err.println("------------------- TEST 4 completed ---------------------\n");
+
+    return status;
   }
     
   protected boolean test5()
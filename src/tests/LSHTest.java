@@ -0,0 +1,650 @@
+package tests;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import global.*;
+import bufmgr.*;
+import diskmgr.*;
+import heap.*;
+import iterator.*;
+import index.*;
+import lshfindex.*;
+
+/**
+ * This class tests the LSH forest scans against a brute-force ranking of
+ * the same relation.  The relation holds clusters of vectors and every
+ * query lies in one of them, so its nearest neighbours are what an LSH
+ * index is meant to find; the random hash functions differ from run to
+ * run, so recall is checked against a floor, not an exact figure.
+ */
+class LSHDriver extends TestDriver
+  implements GlobalConst {
+
+  private static int   NUM_CLUSTERS = 20;
+  private static int   CLUSTER_SIZE = 100;
+  private static int   NUM_RECORDS = NUM_CLUSTERS * CLUSTER_SIZE;
+  private static int   NUM_QUERIES = 10;
+  private static int   K = 10;
+  private static int   IN_RANGE = 20;      // records within a range query
+  private static int   BUDGET = 20 * K;    // multi-probe candidates
+  private static double MIN_RECALL = 0.7;
+  private static String RELNAME = "lsh.in";
+  private static String INDNAME = "lsh.in_2";
+
+  private AttrType[] attrType = {
+    new AttrType(AttrType.attrInteger),
+    new AttrType(AttrType.attrVector100D)
+  };
+
+  private short[][] vectors;   // by id
+  private short[][] queries;
+  private LSHFIndexFile lshIndex;
+  private Heapfile relation;
+  private int pinnedByIndex;   // header pages the open index keeps pinned
+
+  public LSHDriver() {
+    super("lshtest");
+  }
+
+  protected boolean runAllTests() {
+
+    try {
+      SystemDefs sysdef = new SystemDefs( dbpath, 8000, 1000, "Clock" );
+      load();
+    }
+    catch (Exception e) {
+      System.err.println ("*** Could not set up the relation and its index\n" + e);
+      e.printStackTrace();
+      return FAIL;
+    }
+
+    boolean status = super.runAllTests();
+    if (!test7()) { status = FAIL; }
+    if (!test8()) { status = FAIL; }
+    return status;
+  }
+
+  /**
+   * Fill the relation with clusters of vectors around random centres,
+   * index it with 5 layers of 8 hash functions, and draw one query near
+   * the centre of each of NUM_QUERIES clusters.
+   */
+  private void load() throws Exception {
+    Random random = new Random(10);
+    short[][] centres = new short[NUM_CLUSTERS][100];
+    for (int c = 0; c < NUM_CLUSTERS; c++)
+      for (int i = 0; i < 100; i++)
+        centres[c][i] = (short) (random.nextInt(2001) - 1000);
+
+    Tuple t = new Tuple();
+    t.setHdr((short) 2, attrType, null);
+    int size = t.size();
+    relation = new Heapfile(RELNAME);
+    lshIndex = new LSHFIndexFile(INDNAME, 8, 5, 2, attrType);
+    vectors = new short[NUM_RECORDS][];
+
+    for (int id = 0; id < NUM_RECORDS; id++) {
+      vectors[id] = near(centres[id % NUM_CLUSTERS], random);
+      t = new Tuple(size);
+      t.setHdr((short) 2, attrType, null);
+      t.setIntFld(1, id);
+      t.set100DVectFld(2, new Vector100Dtype(vectors[id]));
+      RID rid = relation.insertRecord(t.getTupleByteArray());
+      lshIndex.insert(new Vector100Dtype(vectors[id]), rid);
+    }
+
+    queries = new short[NUM_QUERIES][];
+    for (int q = 0; q < NUM_QUERIES; q++)
+      queries[q] = near(centres[q], random);
+    pinnedByIndex = SystemDefs.JavabaseBM.getNumBuffers()
+      - SystemDefs.JavabaseBM.getNumUnpinnedBuffers();
+  }
+
+  private static short[] near(short[] centre, Random random) {
+    short[] v = new short[100];
+    for (int i = 0; i < 100; i++)
+      v[i] = (short) (centre[i] + Math.round(random.nextGaussian() * 150));
+    return v;
+  }
+
+  private long dist2(short[] v, short[] q) {
+    long sum = 0;
+    for (int i = 0; i < 100; i++) {
+      long d = v[i] - q[i];
+      sum += d * d;
+    }
+    return sum;
+  }
+
+  /** The squared distances of every record to q, ascending. */
+  private long[] ranked(short[] q) {
+    long[] d = new long[NUM_RECORDS];
+    for (int id = 0; id < NUM_RECORDS; id++)
+      d[id] = dist2(vectors[id], q);
+    Arrays.sort(d);
+    return d;
+  }
+
+  /** The distance bound of a range query that IN_RANGE or so records meet. */
+  private int rangeOf(short[] q) {
+    return (int) Math.ceil(Math.sqrt(ranked(q)[IN_RANGE - 1])) + 1;
+  }
+
+  /** The number of records within dist of q. */
+  private int inRange(short[] q, int dist) {
+    long[] d = ranked(q);
+    int n = 0;
+    while (n < d.length && Math.sqrt(d[n]) < dist)
+      n++;
+    return n;
+  }
+
+  private LSHFFileScan scan(short[] q) throws Exception {
+    return new LSHFFileScan(lshIndex, relation, new Vector100Dtype(q));
+  }
+
+  /**
+   * Check an NN answer for query q: each tuple once, nearest first, at the
+   * distance of its record.  Returns how many of the true k nearest it
+   * holds, or -1 if it is malformed.
+   */
+  private int checkNN(Tuple[] results, short[] q, int k) throws Exception {
+    long[] d = ranked(q);
+    boolean[] seen = new boolean[NUM_RECORDS];
+    long last = -1;
+    int hits = 0;
+    if (results.length > k) {
+      System.err.println ("*** " + results.length + " tuples for k = " + k);
+      return -1;
+    }
+    for (int i = 0; i < results.length; i++) {
+      results[i].setHdr((short) 2, attrType, null);
+      int id = results[i].getIntFld(1);
+      long dist = results[i].distanceTo(2, q);
+      if (seen[id] || dist < last || dist != dist2(vectors[id], q)) {
+        System.err.println ("*** Tuple " + i + " (id " + id + ") out of place");
+        return -1;
+      }
+      seen[id] = true;
+      last = dist;
+      if (dist <= d[k - 1])
+        hits++;
+    }
+    return hits;
+  }
+
+  /**
+   * Check a range answer for query q and bound dist: each tuple once and
+   * within the bound.  Returns how many tuples it holds, or -1 if it is
+   * malformed.
+   */
+  private int checkRange(Tuple[] results, short[] q, int dist) throws Exception {
+    boolean[] seen = new boolean[NUM_RECORDS];
+    for (int i = 0; i < results.length; i++) {
+      results[i].setHdr((short) 2, attrType, null);
+      int id = results[i].getIntFld(1);
+      if (seen[id] || Math.sqrt(dist2(vectors[id], q)) >= dist) {
+        System.err.println ("*** Tuple " + i + " (id " + id + ") out of range or repeated");
+        return -1;
+      }
+      seen[id] = true;
+    }
+    return results.length;
+  }
+
+  private boolean recallOK(String what, int hits, int expected) {
+    double recall = (double) hits / expected;
+    System.out.println("  " + what + " recall: " + hits + " of " + expected
+                       + " (" + Math.round(recall * 100) + "%)");
+    if (recall < MIN_RECALL) {
+      System.err.println ("*** " + what + " recall below " + MIN_RECALL);
+      return FAIL;
+    }
+    return OK;
+  }
+
+  /**
+   * Multi-probe and forest NN scans find most of the true nearest
+   * neighbours.
+   */
+  protected boolean test1() {
+    System.out.println("------------------------ TEST 1 --------------------------");
+    System.out.println("  NN recall against brute force, k = " + K);
+    boolean status = OK;
+    try {
+      int multiProbe = 0, budgeted = 0, forest = 0;
+      for (int q = 0; q < NUM_QUERIES && status == OK; q++) {
+        LSHFFileScan s = scan(queries[q]);
+        int mp = checkNN(s.LSHFFileMultiProbeNNScan(K, 0, attrType, 2), queries[q], K);
+        int bu = checkNN(s.LSHFFileMultiProbeNNScan(K, BUDGET, attrType, 2), queries[q], K);
+        int fo = checkNN(s.LSHFFileNNScan(K, attrType, 2), queries[q], K);
+        if (mp < 0 || bu < 0 || fo < 0)
+          status = FAIL;
+        multiProbe += mp;
+        budgeted += bu;
+        forest += fo;
+      }
+      if (status == OK) {
+        status = recallOK("multi-probe NN", multiProbe, NUM_QUERIES * K);
+        if (!recallOK("multi-probe NN, " + BUDGET + " candidates", budgeted, NUM_QUERIES * K))
+          status = FAIL;
+        if (!recallOK("forest NN", forest, NUM_QUERIES * K))
+          status = FAIL;
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 1 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * Multi-probe and forest range scans find most of the records in range;
+   * a multi-probe budget of 0 means no budget.
+   */
+  protected boolean test2() {
+    System.out.println("------------------------ TEST 2 --------------------------");
+    System.out.println("  range recall against brute force, about " + IN_RANGE + " in range");
+    boolean status = OK;
+    try {
+      int multiProbe = 0, forest = 0, expected = 0;
+      for (int q = 0; q < NUM_QUERIES && status == OK; q++) {
+        LSHFFileScan s = scan(queries[q]);
+        int dist = rangeOf(queries[q]);
+        expected += inRange(queries[q], dist);
+        int mp = checkRange(s.LSHFFileMultiProbeRangeScan(dist, 0, attrType, 2), queries[q], dist);
+        int fo = checkRange(s.LSHFFileRangeScan(dist, attrType, 2), queries[q], dist);
+        if (mp < 0 || fo < 0)
+          status = FAIL;
+        multiProbe += mp;
+        forest += fo;
+      }
+      if (status == OK) {
+        status = recallOK("multi-probe range", multiProbe, expected);
+        if (!recallOK("forest range", forest, expected))
+          status = FAIL;
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 2 completed ---------------------\n");
+    return status;
+  }
+
+  /** The ids of the tuples of iter, in order. */
+  private List<Integer> ids(LSHFIndexScan iter) throws Exception {
+    List<Integer> ids = new ArrayList<Integer>();
+    Tuple t;
+    while ((t = iter.get_next()) != null)
+      ids.add(t.getIntFld(1));
+    iter.close();
+    return ids;
+  }
+
+  private List<Integer> ids(Tuple[] results) throws Exception {
+    List<Integer> ids = new ArrayList<Integer>();
+    for (int i = 0; i < results.length; i++) {
+      results[i].setHdr((short) 2, attrType, null);
+      ids.add(results[i].getIntFld(1));
+    }
+    return ids;
+  }
+
+  private LSHFIndexScan indexScan(short[] q, int searchType, int threshold)
+    throws Exception {
+    FldSpec[] projlist = {
+      new FldSpec(new RelSpec(RelSpec.outer), 1),
+      new FldSpec(new RelSpec(RelSpec.outer), 2)
+    };
+    return new LSHFIndexScan(new IndexType(IndexType.LSHFIndex), RELNAME, INDNAME,
+                                   attrType, null, 2, 2, projlist, null, 2,
+                                   new Vector100Dtype(q), searchType, threshold);
+  }
+
+  /**
+   * The MULTIPROBE search types of LSHFIndexScan return what the
+   * multi-probe scans of LSHFFileScan do, with the budget of k for NN.
+   */
+  protected boolean test3() {
+    System.out.println("------------------------ TEST 3 --------------------------");
+    System.out.println("  multi-probe index scans");
+    boolean status = OK;
+    try {
+      for (int q = 0; q < NUM_QUERIES && status == OK; q++) {
+        int dist = rangeOf(queries[q]);
+        List<Integer> nn = ids(indexScan(queries[q], LSHFIndexScan.MULTIPROBE_NN, K));
+        List<Integer> range = ids(indexScan(queries[q], LSHFIndexScan.MULTIPROBE_RANGE, dist));
+        LSHFFileScan s = scan(queries[q]);
+        if (!nn.equals(ids(s.LSHFFileMultiProbeNNScan(K, s.candidateBudgetFor(K), attrType, 2)))) {
+          System.err.println ("*** MULTIPROBE_NN differs for query " + q);
+          status = FAIL;
+        }
+        if (!range.equals(ids(s.LSHFFileMultiProbeRangeScan(dist, 0, attrType, 2)))) {
+          System.err.println ("*** MULTIPROBE_RANGE differs for query " + q);
+          status = FAIL;
+        }
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 3 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * A forest NN scan with the candidate budget of k reads that many
+   * candidates, finds most of the nearest neighbours, and is what an NN
+   * LSHFIndexScan returns.
+   */
+  protected boolean test4() {
+    System.out.println("------------------------ TEST 4 --------------------------");
+    System.out.println("  forest NN scans with the candidate budget of k");
+    boolean status = OK;
+    try {
+      int hits = 0;
+      for (int q = 0; q < NUM_QUERIES && status == OK; q++) {
+        LSHFFileScan s = scan(queries[q]);
+        int budget = s.candidateBudgetFor(K);
+        if (budget != LSHFFileScan.CANDIDATES_PER_NEIGHBOUR * K * lshIndex.getL()) {
+          System.err.println ("*** Budget " + budget + " for k = " + K);
+          status = FAIL;
+        }
+        s.setCandidateBudget(budget);
+        Tuple[] results = s.LSHFFileNNScan(K, attrType, 2);
+        int h = checkNN(results, queries[q], K);
+        if (h < 0)
+          status = FAIL;
+        hits += h;
+        if (!ids(indexScan(queries[q], LSHFIndexScan.NN, K)).equals(ids(results))) {
+          System.err.println ("*** NN index scan differs for query " + q);
+          status = FAIL;
+        }
+      }
+      if (status == OK)
+        status = recallOK("forest NN, " + LSHFFileScan.CANDIDATES_PER_NEIGHBOUR
+                          + " candidates per neighbour and layer", hits, NUM_QUERIES * K);
+
+      // a budget below k still returns k
+      LSHFFileScan s = scan(queries[0]);
+      s.setCandidateBudget(1);
+      if (status == OK && checkNN(s.LSHFFileNNScan(K, attrType, 2), queries[0], K) < 0)
+        status = FAIL;
+      if (status == OK && s.LSHFFileNNScan(K, attrType, 2).length != K) {
+        System.err.println ("*** A budget of 1 cut the NN scan short of k");
+        status = FAIL;
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 4 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * Scans whose layers are probed on the executor of
+   * SystemDefs.JavabaseLSHExecutor return what the scans probing them in
+   * turn do.
+   */
+  protected boolean test5() {
+    System.out.println("------------------------ TEST 5 --------------------------");
+    System.out.println("  layers probed by 4 threads against in turn");
+    boolean status = OK;
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      for (int q = 0; q < NUM_QUERIES && status == OK; q++) {
+        int dist = rangeOf(queries[q]);
+        LSHFFileScan s = scan(queries[q]);
+        List<List<Integer>> inTurn = new ArrayList<List<Integer>>();
+        inTurn.add(ids(s.LSHFFileNNScan(K, attrType, 2)));
+        inTurn.add(ids(s.LSHFFileRangeScan(dist, attrType, 2)));
+        inTurn.add(ids(s.LSHFFileMultiProbeNNScan(K, 0, attrType, 2)));
+        inTurn.add(ids(s.LSHFFileMultiProbeRangeScan(dist, 0, attrType, 2)));
+
+        SystemDefs.JavabaseLSHExecutor = pool;
+        try {
+          s = scan(queries[q]);
+        }
+        finally {
+          SystemDefs.JavabaseLSHExecutor = null;
+        }
+        List<List<Integer>> together = new ArrayList<List<Integer>>();
+        together.add(ids(s.LSHFFileNNScan(K, attrType, 2)));
+        together.add(ids(s.LSHFFileRangeScan(dist, attrType, 2)));
+        together.add(ids(s.LSHFFileMultiProbeNNScan(K, 0, attrType, 2)));
+        together.add(ids(s.LSHFFileMultiProbeRangeScan(dist, 0, attrType, 2)));
+
+        if (!together.equals(inTurn)) {
+          System.err.println ("*** The scans of query " + q + " differ with the executor");
+          status = FAIL;
+        }
+      }
+      if (status == OK && SystemDefs.JavabaseBM.getNumUnpinnedBuffers()
+          != SystemDefs.JavabaseBM.getNumBuffers() - pinnedByIndex) {
+        System.err.println ("*** The probe threads left pages pinned");
+        status = FAIL;
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    finally {
+      pool.shutdown();
+    }
+    System.out.println("------------------- TEST 5 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * An index bulk-loaded from the relation holds every record, as the
+   * one built by inserts does, and its NN scans find most of the true
+   * nearest neighbours.  Its hash functions are drawn anew, so its
+   * answers are not those of the other index.
+   */
+  protected boolean test6() {
+    System.out.println("------------------------ TEST 6 --------------------------");
+    System.out.println("  a bulk-loaded index against brute force and the inserted one");
+    boolean status = OK;
+    try {
+      LSHFIndexFile bulk = new LSHFIndexFile(INDNAME + "_bulk", 8, 5, 2, attrType);
+      bulk.bulkLoad(relation, 2);
+
+      int forest = 0;
+      for (int q = 0; q < NUM_QUERIES && status == OK; q++) {
+        LSHFFileScan s = new LSHFFileScan(bulk, relation, new Vector100Dtype(queries[q]));
+        int fo = checkNN(s.LSHFFileNNScan(K, attrType, 2), queries[q], K);
+        if (fo < 0)
+          status = FAIL;
+        forest += fo;
+      }
+      if (status == OK)
+        status = recallOK("bulk-loaded forest NN", forest, NUM_QUERIES * K);
+
+      // asking for every record reads every leaf of a layer
+      List<Integer> all = new ArrayList<Integer>();
+      for (int id = 0; id < NUM_RECORDS; id++)
+        all.add(id);
+      List<Integer> byLoad = ids(new LSHFFileScan(bulk, relation, new Vector100Dtype(queries[0]))
+                                 .LSHFFileNNScan(NUM_RECORDS, attrType, 2));
+      List<Integer> byInsert = ids(scan(queries[0]).LSHFFileNNScan(NUM_RECORDS, attrType, 2));
+      Collections.sort(byLoad);
+      Collections.sort(byInsert);
+      if (!byLoad.equals(all) || !byInsert.equals(all)) {
+        System.err.println ("*** The indexes return " + byLoad.size() + " and " + byInsert.size()
+                            + " records, not each of the " + NUM_RECORDS + " once");
+        status = FAIL;
+      }
+
+      bulk.close();
+      if (SystemDefs.JavabaseBM.getNumUnpinnedBuffers()
+          != SystemDefs.JavabaseBM.getNumBuffers() - pinnedByIndex) {
+        System.err.println ("*** The bulk load left pages pinned");
+        status = FAIL;
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 6 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * An index scan opens the index file itself and closes it with the
+   * scan, so once every scan is closed, closing the driver's own index
+   * leaves no page pinned.  Runs last, as it closes that index.
+   */
+  protected boolean test7() {
+    System.out.println("------------------------ TEST 7 --------------------------");
+    System.out.println("  index scans unpin the index when closed");
+    boolean status = OK;
+    try {
+      int dist = rangeOf(queries[0]);
+      for (int round = 0; round < 3; round++) {
+        ids(indexScan(queries[0], LSHFIndexScan.RANGE, dist));
+        ids(indexScan(queries[0], LSHFIndexScan.NN, K));
+        ids(indexScan(queries[0], LSHFIndexScan.MULTIPROBE_RANGE, dist));
+        ids(indexScan(queries[0], LSHFIndexScan.MULTIPROBE_NN, K));
+        // closed before its first tuple
+        indexScan(queries[0], LSHFIndexScan.RANGE, dist).close();
+      }
+
+      lshIndex.close();
+      if (SystemDefs.JavabaseBM.getNumUnpinnedBuffers()
+          != SystemDefs.JavabaseBM.getNumBuffers()) {
+        System.err.println ("*** " + (SystemDefs.JavabaseBM.getNumBuffers()
+                                      - SystemDefs.JavabaseBM.getNumUnpinnedBuffers())
+                            + " pages left pinned by index scans");
+        status = FAIL;
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 7 completed ---------------------\n");
+    return status;
+  }
+
+  private static final long SEED = 0x0102030405060708L;
+
+  /**
+   * Check the attribute types of a header page, and that its a values,
+   * all equal to a, or its seed are still there.
+   */
+  private boolean headerOK(LSHFHeaderPage page, boolean seeded, int[] codes,
+                           byte[] a, String what) throws IOException {
+    if (page.isSeeded() != seeded) {
+      System.err.println ("*** The header is " + (seeded ? "not " : "") + "seeded " + what);
+      return FAIL;
+    }
+    if (page.getAttrCount() != codes.length || !Arrays.equals(page.getAttrTypes(), codes)) {
+      System.err.println ("*** The attribute types of the " + (seeded ? "seeded" : "inline")
+                          + " header differ " + what + ": " + Arrays.toString(page.getAttrTypes()));
+      return FAIL;
+    }
+    if (seeded ? page.getSeed() != SEED
+        : !Arrays.equals(page.getAValuesForHash(page.getNumLayers() - 1,
+                                                page.getNumHashFunctions() - 1), a)
+          || !Arrays.equals(page.getAValuesForHash(0, 0), a)) {
+      System.err.println ("*** The " + (seeded ? "seed" : "a values") + " changed " + what);
+      return FAIL;
+    }
+    return OK;
+  }
+
+  /**
+   * The attribute types of a header page read back as written: after the
+   * a values of an inline page and after the seed of a seeded one.
+   * Setting them again leaves the a values or the seed alone.
+   */
+  protected boolean test8() {
+    System.out.println("------------------------ TEST 8 --------------------------");
+    System.out.println("  attribute types of inline and seeded header pages");
+    boolean status = OK;
+    AttrType[] types = {
+      new AttrType(AttrType.attrInteger), new AttrType(AttrType.attrVector100D),
+      new AttrType(AttrType.attrString), new AttrType(AttrType.attrReal)
+    };
+    int[] codes = new int[types.length];
+    for (int i = 0; i < types.length; i++)
+      codes[i] = types[i].attrType;
+    int[] others = { AttrType.attrReal, AttrType.attrVector100D, AttrType.attrLong };
+    int[][] shapes = { { 2, 3 }, { 10, 64 } };   // L and h: inline, then seeded
+    byte[] a = new byte[100];
+    Arrays.fill(a, (byte) -7);
+
+    try {
+      for (int i = 0; i < shapes.length && status == OK; i++) {
+        int L = shapes[i][0];
+        int h = shapes[i][1];
+        boolean seeded = !LSHFHeaderPage.fitsInline(L, h, types.length);
+        if (seeded != (i == 1)) {
+          System.err.println ("*** " + L + " layers of " + h + " hash functions are"
+                              + (seeded ? "" : " not") + " seeded");
+          status = FAIL;
+          break;
+        }
+
+        LSHFHeaderPage page = new LSHFHeaderPage(L, h, types.length, types);
+        PageId pid = page.getCurPage();
+        if (seeded)
+          page.setSeed(SEED);
+        else
+          for (int l = 0; l < L; l++)
+            for (int j = 0; j < h; j++)
+              page.setAValuesForHash(l, j, a);
+        SystemDefs.JavabaseBM.unpinPage(pid, true);
+
+        page = new LSHFHeaderPage(pid);
+        status &= headerOK(page, seeded, codes, a, "as built");
+        page.setAttrTypes(others);
+        SystemDefs.JavabaseBM.unpinPage(pid, true);
+
+        page = new LSHFHeaderPage(pid);
+        status &= headerOK(page, seeded, others, a, "once set");
+        SystemDefs.JavabaseBM.unpinPage(pid, false);
+        SystemDefs.JavabaseBM.freePage(pid);
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 8 completed ---------------------\n");
+    return status;
+  }
+
+  protected String testName()
+  {
+    return "LSH forest scans";
+  }
+}
+
+public class LSHTest
+{
+  public static void main(String argv[])
+  {
+    boolean lshstatus;
+
+    LSHDriver lsht = new LSHDriver();
+
+    lshstatus = lsht.runTests();
+    if (lshstatus != true) {
+      System.out.println("Error ocurred during LSH tests");
+    }
+    else {
+      System.out.println("LSH tests completed successfully");
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package tests;
+
+import java.util.*;
+import global.*;
+
+/**
+ * This class tests RIDSet against a java.util.HashSet of the same RIDs.
+ */
+class RIDSETDriver extends TestDriver {
+
+  private static int NUM_RIDS = 20000;
+
+  public RIDSETDriver() {
+    super("ridsettest");
+  }
+
+  private static RID rid(int pid, int slot) {
+    return new RID(new PageId(pid), slot);
+  }
+
+  /**
+   * Random RIDs, many added twice, from a set sized too small so that it
+   * grows; every answer of add() and contains() is checked.
+   */
+  protected boolean test1() {
+    System.out.println("------------------------ TEST 1 --------------------------");
+    System.out.println("  add and contains against a HashSet, growing from 16");
+    boolean status = OK;
+    Random random = new Random(9);
+    RIDSet set = new RIDSet();
+    Set<Long> expected = new HashSet<Long>();
+
+    for (int i = 0; i < NUM_RIDS && status == OK; i++) {
+      RID r = rid(random.nextInt(500) - 100, random.nextInt(60) - 10);
+      boolean added = set.add(r);
+      if (added != expected.add(RIDSet.pack(r)) || !set.contains(r)) {
+        System.err.println ("*** RID " + r.pageNo.pid + "." + r.slotNo
+                            + (added ? " added twice" : " lost"));
+        status = FAIL;
+      }
+    }
+    if (status == OK && set.size() != expected.size()) {
+      System.err.println ("*** " + set.size() + " RIDs, not " + expected.size());
+      status = FAIL;
+    }
+    for (int i = 0; i < NUM_RIDS && status == OK; i++) {
+      RID r = rid(random.nextInt(1000) - 300, random.nextInt(100) - 20);
+      if (set.contains(r) != expected.contains(RIDSet.pack(r))) {
+        System.err.println ("*** contains() is wrong for " + r.pageNo.pid + "." + r.slotNo);
+        status = FAIL;
+      }
+    }
+
+    set.clear();
+    if (status == OK && (set.size() != 0 || set.contains(rid(0, 0)))) {
+      System.err.println ("*** RIDs left after clear()");
+      status = FAIL;
+    }
+    System.out.println("------------------- TEST 1 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * The RID that packs to the key marking free slots is a member like
+   * any other.
+   */
+  protected boolean test2() {
+    System.out.println("------------------------ TEST 2 --------------------------");
+    System.out.println("  the RID packed to Long.MIN_VALUE");
+    boolean status = OK;
+    RID free = rid(Integer.MIN_VALUE, 0);
+    RID other = rid(0, 0);
+    RIDSet set = new RIDSet(4);
+
+    if (RIDSet.pack(free) != Long.MIN_VALUE) {
+      System.err.println ("*** The RID does not pack to Long.MIN_VALUE");
+      status = FAIL;
+    }
+    if (status == OK && (set.contains(free) || !set.add(free) || set.add(free)
+                         || !set.contains(free) || set.contains(other))) {
+      System.err.println ("*** The RID packed to Long.MIN_VALUE is not added once");
+      status = FAIL;
+    }
+    if (status == OK && (!set.add(other) || set.size() != 2)) {
+      System.err.println ("*** " + set.size() + " RIDs, not 2");
+      status = FAIL;
+    }
+    set.clear();
+    if (status == OK && (set.contains(free) || !set.add(free))) {
+      System.err.println ("*** The RID packed to Long.MIN_VALUE survives clear()");
+      status = FAIL;
+    }
+    System.out.println("------------------- TEST 2 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * Sizes past the largest table are refused, not wrapped to a small one.
+   */
+  protected boolean test3() {
+    System.out.println("------------------------ TEST 3 --------------------------");
+    System.out.println("  expected sizes out of range");
+    boolean status = OK;
+    int[] sizes = { -1, (1 << 29) + 1, Integer.MAX_VALUE };
+    for (int i = 0; i < sizes.length; i++) {
+      try {
+        new RIDSet(sizes[i]);
+        System.err.println ("*** A set for " + sizes[i] + " RIDs was made");
+        status = FAIL;
+      }
+      catch (IllegalArgumentException e) {
+        System.out.println("  " + sizes[i] + " RIDs refused, as expected");
+      }
+    }
+    System.out.println("------------------- TEST 3 completed ---------------------\n");
+    return status;
+  }
+
+  protected String testName()
+  {
+    return "RIDSet";
+  }
+}
+
+public class RIDSetTest
+{
+  public static void main(String argv[])
+  {
+    boolean ridsetstatus;
+
+    RIDSETDriver ridsett = new RIDSETDriver();
+
+    ridsetstatus = ridsett.runTests();
+    if (ridsetstatus != true) {
+      System.out.println("Error ocurred during RIDSet tests");
+    }
+    else {
+      System.out.println("RIDSet tests completed successfully");
+    }
+  }
+}
@@ -0,0 +1,226 @@
+package tests;
+
+import java.io.*;
+import java.util.*;
+import global.*;
+import bufmgr.*;
+import diskmgr.*;
+import heap.*;
+import iterator.*;
+
+/**
+ * This class tests TopKDistance against a brute-force ranking of the
+ * same relation.
+ */
+class TOPKDriver extends TestDriver
+  implements GlobalConst {
+
+  private static int   NUM_RECORDS = 3000;
+  private static int   SORTPGNUM = 100;
+  private static String RELNAME = "topk.in";
+
+  private AttrType[] attrType = {
+    new AttrType(AttrType.attrInteger),
+    new AttrType(AttrType.attrVector100D)
+  };
+  private FldSpec[] projlist = {
+    new FldSpec(new RelSpec(RelSpec.outer), 1),
+    new FldSpec(new RelSpec(RelSpec.outer), 2)
+  };
+
+  private short[] target = new short[100];
+  private long[] dist2;        // squared distance of each record, by id
+  private long[] ranked;       // the same, ascending
+
+  public TOPKDriver() {
+    super("topktest");
+  }
+
+  protected boolean runAllTests() {
+
+    try {
+      SystemDefs sysdef = new SystemDefs( dbpath, 3000, 500, "Clock" );
+      load();
+    }
+    catch (Exception e) {
+      System.err.println ("*** Could not set up the relation\n" + e);
+      e.printStackTrace();
+      return FAIL;
+    }
+
+    return super.runAllTests();
+  }
+
+  /**
+   * Fill the relation with random vectors; every 97th is the target
+   * itself and every 89th a copy of the one before, so there are ties.
+   */
+  private void load() throws Exception {
+    Random random = new Random(25);
+    for (int i = 0; i < 100; i++)
+      target[i] = (short) (random.nextInt(201) - 100);
+
+    Tuple t = new Tuple();
+    t.setHdr((short) 2, attrType, null);
+    int size = t.size();
+    Heapfile f = new Heapfile(RELNAME);
+    dist2 = new long[NUM_RECORDS];
+
+    short[] v = new short[100];
+    for (int id = 0; id < NUM_RECORDS; id++) {
+      if (id % 97 == 0)
+        v = target.clone();
+      else if (id % 89 != 0) {
+        v = new short[100];
+        for (int i = 0; i < 100; i++)
+          v[i] = (short) (random.nextInt(201) - 100);
+      }
+      t = new Tuple(size);
+      t.setHdr((short) 2, attrType, null);
+      t.setIntFld(1, id);
+      t.set100DVectFld(2, new Vector100Dtype(v));
+      f.insertRecord(t.getTupleByteArray());
+
+      long sum = 0;
+      for (int i = 0; i < 100; i++) {
+        long d = v[i] - target[i];
+        sum += d * d;
+      }
+      dist2[id] = sum;
+    }
+    ranked = dist2.clone();
+    Arrays.sort(ranked);
+    SystemDefs.JavabaseBM.flushAllPages();
+  }
+
+  private TopKDistance open(int k) throws Exception {
+    FileScan scan = new FileScan(RELNAME, attrType, null, (short) 2,
+                                 attrType, 2, projlist, null);
+    return new TopKDistance(attrType, (short) 2, null, scan, 2,
+                            new Vector100Dtype(target), k, SORTPGNUM);
+  }
+
+  /**
+   * Check that the tuples returned for k are the nearest ones, nearest
+   * first, each once.
+   */
+  private boolean check(int k, int expected) throws Exception {
+    TopKDistance topk = open(k);
+    boolean[] seen = new boolean[NUM_RECORDS];
+    Tuple t;
+    int n = 0;
+    boolean status = OK;
+    while ((t = topk.get_next()) != null) {
+      int id = t.getIntFld(1);
+      if (n >= expected || seen[id] || dist2[id] != ranked[n]
+          || t.distanceTo(2, target) != dist2[id]) {
+        System.err.println ("*** Tuple " + n + " (id " + id + ") out of place for k = " + k);
+        status = FAIL;
+        break;
+      }
+      seen[id] = true;
+      n++;
+    }
+    topk.close();
+    if (status == OK && n != expected) {
+      System.err.println ("*** " + n + " tuples for k = " + k + ", expected " + expected);
+      status = FAIL;
+    }
+    return status;
+  }
+
+  /**
+   * k below the size of the relation, and at or past it.
+   */
+  protected boolean test1() {
+    System.out.println("------------------------ TEST 1 --------------------------");
+    System.out.println("  k nearest for k = 1, 10, 100, n and n + 1");
+    boolean status = OK;
+    int[] ks = { 1, 10, 100, NUM_RECORDS, NUM_RECORDS + 1 };
+    try {
+      for (int i = 0; i < ks.length; i++) {
+        PCounter.initialize();
+        if (!check(ks[i], Math.min(ks[i], NUM_RECORDS)))
+          status = FAIL;
+        if (PCounter.wcounter != 0) {
+          System.err.println ("*** " + PCounter.wcounter + " pages written for k = " + ks[i]);
+          status = FAIL;
+        }
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 1 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * k of 0 returns every tuple, as Sort does.
+   */
+  protected boolean test2() {
+    System.out.println("------------------------ TEST 2 --------------------------");
+    System.out.println("  every tuple, nearest first, for k = 0");
+    boolean status = OK;
+    try {
+      status = check(0, NUM_RECORDS);
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 2 completed ---------------------\n");
+    return status;
+  }
+
+  /**
+   * A negative k returns nothing, and only a vector field is accepted.
+   */
+  protected boolean test3() {
+    System.out.println("------------------------ TEST 3 --------------------------");
+    System.out.println("  negative k and a field that is not a vector");
+    boolean status = OK;
+    try {
+      status = check(-1, 0);
+      try {
+        new TopKDistance(attrType, (short) 2, null, null, 1,
+                         new Vector100Dtype(target), 5, SORTPGNUM);
+        System.err.println ("*** An integer field was accepted");
+        status = FAIL;
+      }
+      catch (SortException e) {
+        System.out.println("  An integer field was rejected, as expected");
+      }
+    }
+    catch (Exception e) {
+      status = FAIL;
+      e.printStackTrace();
+    }
+    System.out.println("------------------- TEST 3 completed ---------------------\n");
+    return status;
+  }
+
+  protected String testName()
+  {
+    return "TopKDistance";
+  }
+}
+
+public class TopKTest
+{
+  public static void main(String argv[])
+  {
+    boolean topkstatus;
+
+    TOPKDriver topkt = new TOPKDriver();
+
+    topkstatus = topkt.runTests();
+    if (topkstatus != true) {
+      System.out.println("Error ocurred during top-K tests");
+    }
+    else {
+      System.out.println("Top-K tests completed successfully");
+    }
+  }
+}
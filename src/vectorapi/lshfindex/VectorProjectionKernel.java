@@ -0,0 +1,38 @@
+package lshfindex;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorProjectionKernel computes a whole lane group of projections per
+ * instruction with the JDK Vector API.
+ *
+ * This class needs the incubator module both to compile and to run, so it
+ * lives in its own source root, out of the way of javac lshfindex/*.java.
+ * From src:
+ *   javac --add-modules jdk.incubator.vector -d . vectorapi/lshfindex/VectorProjectionKernel.java
+ *   java  --add-modules jdk.incubator.vector ...
+ * It is only ever loaded by name (see LSHFIndexFile), so the rest of the tree
+ * builds and runs without it or the module, falling back to
+ * ScalarProjectionKernel.
+ */
+public class VectorProjectionKernel implements ProjectionKernel {
+
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    public int lanes() {
+        return LANE_MULTIPLE;
+    }
+
+    public void project(int[] block, int stride, int h, short[] x, int[] out) {
+        // stride is a multiple of LANE_MULTIPLE, hence of every int species length;
+        // the padding lanes cost nothing extra
+        for (int i = 0; i < stride; i += SPECIES.length()) {
+            IntVector acc = IntVector.zero(SPECIES);
+            for (int j = 0; j < x.length; j++) {
+                acc = IntVector.fromArray(SPECIES, block, j * stride + i).mul(x[j]).add(acc);
+            }
+            acc.intoArray(out, i);
+        }
+    }
+}